@@ -0,0 +1,344 @@
+package schaugenau.analytics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import schaugenau.state.game.GazeArchive;
+import schaugenau.state.game.GazeDataReader;
+import schaugenau.state.game.GazeRecord;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Offline fixation analysis of gaze text files and binary gaze segments.
+ * Work is processed in parallel by fork/join, one leaf task per text file or
+ * per range of records of a segment, found through the segment index. A leaf
+ * streams its records through the fixation detector, writes their fixations
+ * and returns per-image aggregates. Aggregates are merged while tasks join
+ * and written as table of dwell times and as heatmap images.
+ *
+ * @author agent
+ *
+ */
+
+public class FixationAnalysis {
+
+	/** defines **/
+	public static final int defaultCellSize = 16;
+	protected static final int recordsPerPart = 256;
+	protected static final String fixationsDirectory = "fixations";
+	protected static final String heatmapsDirectory = "heatmaps";
+	protected static final String summaryFile = "images.csv";
+	protected static final String fixationsHeader = "MediaName,RecordingTimestamp,FixationIndex,GazeEventDuration,"
+			+ "FixationPointX (MCSpx),FixationPointY (MCSpx)";
+
+	/** fields **/
+	protected final FixationDetector detector;
+	protected final int cellSize;
+	protected final File output;
+	protected final ForkJoinPool pool;
+
+	/* statistics */
+	protected final AtomicLong records = new AtomicLong();
+	protected final AtomicLong samples = new AtomicLong();
+	protected final AtomicLong fixations = new AtomicLong();
+	protected final AtomicLong failures = new AtomicLong();
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(FixationAnalysis.class);
+
+	/** methods **/
+
+	/* constructor, fixations of each file are written into output directory */
+	public FixationAnalysis(FixationDetector detector, int cellSize, File output, int threads) {
+		this.detector = detector;
+		this.cellSize = cellSize;
+		this.output = output;
+		this.pool = new ForkJoinPool(Math.max(1, threads));
+	}
+
+	/* gaze text files and binary segments of directory */
+	public static List<File> listGazeFiles(File directory) {
+		List<File> files = new ArrayList<File>();
+		File[] entries = directory.listFiles();
+		if (entries == null) {
+			return files;
+		}
+		Arrays.sort(entries);
+		for (File file : entries) {
+			if (!file.isFile()) {
+				continue;
+			}
+			String name = file.getName();
+			if (GazeTextReader.fileNamePattern.matcher(name).matches()
+					|| (name.startsWith(GazeDataReader.segmentTitle) && name.endsWith(GazeDataReader.segmentPostfix))) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+	/* analyze files, returns aggregates by image ID */
+	public Map<Integer, ImageAnalysis> analyze(List<File> files) {
+		new File(output, fixationsDirectory).mkdirs();
+		long start = System.nanoTime();
+		List<Part> parts = split(files);
+		Map<Integer, ImageAnalysis> images = parts.isEmpty() ? new HashMap<Integer, ImageAnalysis>()
+				: pool.invoke(new PartTask(parts, 0, parts.size()));
+		long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+		logger.info("Analyzed " + files.size() + " files in " + parts.size() + " parts with " + records.get()
+				+ " records and " + samples.get() + " samples in " + millis + "ms ("
+				+ (samples.get() * 1000 / millis) + " samples/s), found " + fixations.get() + " fixations, "
+				+ failures.get() + " parts failed");
+		return images;
+	}
+
+	/* text files as whole, segments in ranges of records of their index */
+	protected List<Part> split(List<File> files) {
+		List<Part> parts = new ArrayList<Part>();
+		for (File file : files) {
+			if (!file.getName().endsWith(GazeDataReader.segmentPostfix)) {
+				parts.add(new Part(file, null, 0, 0, null, null));
+				continue;
+			}
+			List<GazeArchive.Entry> entries;
+			try {
+				entries = GazeArchive.readIndex(file);
+			} catch (IOException e) {
+				failures.incrementAndGet();
+				logger.error("Could not read index of " + file.getPath(), e);
+				continue;
+			}
+
+			/* records are numbered per image within segment like users of former converter */
+			int[] ordinals = new int[entries.size()];
+			Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+			for (int i = 0; i < ordinals.length; i++) {
+				Integer count = counts.get(entries.get(i).getImageID());
+				ordinals[i] = count == null ? 1 : count + 1;
+				counts.put(entries.get(i).getImageID(), ordinals[i]);
+			}
+			String suffix = null;
+			for (int from = 0; from < entries.size(); from += recordsPerPart) {
+				if (entries.size() > recordsPerPart) {
+					suffix = String.format("%04d", from / recordsPerPart + 1);
+				}
+				parts.add(new Part(file, entries, from, Math.min(entries.size(), from + recordsPerPart), ordinals,
+						suffix));
+			}
+		}
+		return parts;
+	}
+
+	/* write table of images and their heatmaps */
+	public void writeResults(Map<Integer, ImageAnalysis> images) throws IOException {
+		File heatmaps = new File(output, heatmapsDirectory);
+		heatmaps.mkdirs();
+		CSVWriter writer = new CSVWriter(new FileWriter(new File(output, summaryFile)));
+		try {
+			writer.writeNext(new String[] { "ImageID", "Records", "DisplayedAsCorrect", "Chosen", "Samples",
+					"Fixations", "DwellMillis", "MeanFixationMillis", "PresentationMillis" });
+			for (ImageAnalysis image : new TreeMap<Integer, ImageAnalysis>(images).values()) {
+				long meanFixation = image.getFixations() == 0 ? 0
+						: Math.round(image.getDwellMillis() / image.getFixations());
+				writer.writeNext(new String[] { Integer.toString(image.getImageID()),
+						Integer.toString(image.getRecords()), Integer.toString(image.getDisplayedAsCorrect()),
+						Integer.toString(image.getChosen()), Long.toString(image.getSamples()),
+						Long.toString(image.getFixations()), Long.toString(Math.round(image.getDwellMillis())),
+						Long.toString(meanFixation), Long.toString(Math.round(image.getPresentationMillis())) });
+				image.getHeatmap().writeImage(
+						new File(heatmaps, "Image" + String.format("%04d", image.getImageID()) + ".png"));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/* stop worker threads */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/* analyze one part, failures are logged and yield what was read until then */
+	protected Map<Integer, ImageAnalysis> analyzePart(Part part) {
+		Map<Integer, ImageAnalysis> images = new HashMap<Integer, ImageAnalysis>();
+		Fixations recordFixations = new Fixations(256);
+		StringBuilder line = new StringBuilder(64);
+		try {
+			BufferedWriter writer = new BufferedWriter(
+					new FileWriter(new File(new File(output, fixationsDirectory), part.getOutputName())), 64 * 1024);
+			try {
+				writer.write(fixationsHeader);
+				writer.newLine();
+				GazeRecord record;
+				if (part.entries != null) {
+					GazeDataReader reader = new GazeDataReader(part.file, part.entries.get(part.from).getOffset());
+					try {
+						for (int i = part.from; i < part.to && (record = reader.next()) != null; i++) {
+							analyzeRecord(record, part.ordinals[i], recordFixations, images, writer, line);
+						}
+					} finally {
+						reader.close();
+					}
+				} else {
+					Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+					GazeTextReader reader = new GazeTextReader(part.file);
+					try {
+						while ((record = reader.next()) != null) {
+							Integer count = counts.get(record.getImageID());
+							count = count == null ? 1 : count + 1;
+							counts.put(record.getImageID(), count);
+							analyzeRecord(record, count, recordFixations, images, writer, line);
+						}
+					} finally {
+						reader.close();
+					}
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			failures.incrementAndGet();
+			logger.error("Could not analyze " + part.getOutputName(), e);
+		}
+		return images;
+	}
+
+	/* detect fixations of record, write them and add them to aggregate of image */
+	protected void analyzeRecord(GazeRecord record, int ordinal, Fixations recordFixations,
+			Map<Integer, ImageAnalysis> images, BufferedWriter writer, StringBuilder line) throws IOException {
+		detector.detect(record.getSamples(), recordFixations);
+		records.incrementAndGet();
+		samples.addAndGet(record.getSamples().size());
+		fixations.addAndGet(recordFixations.size());
+
+		ImageAnalysis image = images.get(record.getImageID());
+		if (image == null) {
+			image = new ImageAnalysis(record.getImageID(), cellSize);
+			images.put(record.getImageID(), image);
+		}
+		image.add(record, recordFixations);
+
+		if (recordFixations.size() == 0) {
+			return;
+		}
+		String mediaName = "Image" + String.format("%04d", record.getImageID()) + "_" + ordinal;
+		for (int i = 0; i < recordFixations.size(); i++) {
+			line.setLength(0);
+			line.append(mediaName).append(',');
+			line.append(Math.round(recordFixations.getStart(i))).append(',');
+			line.append(i + 1).append(',');
+			line.append(Math.round(recordFixations.getDuration(i))).append(',');
+			line.append(Math.round(recordFixations.getX(i))).append(',');
+			line.append(Math.round(recordFixations.getY(i)));
+			writer.append(line);
+			writer.newLine();
+		}
+	}
+
+	/* merge aggregates of right into left */
+	protected static Map<Integer, ImageAnalysis> merge(Map<Integer, ImageAnalysis> left,
+			Map<Integer, ImageAnalysis> right) {
+		for (ImageAnalysis image : right.values()) {
+			ImageAnalysis existing = left.get(image.getImageID());
+			if (existing == null) {
+				left.put(image.getImageID(), image);
+			} else {
+				existing.merge(image);
+			}
+		}
+		return left;
+	}
+
+	/* analysis, arguments are gaze directory, output directory and optionally count of threads */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: FixationAnalysis <gaze directory> <output directory> [threads]");
+			return;
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		FixationAnalysis analysis = new FixationAnalysis(new FixationDetector(), defaultCellSize, new File(args[1]),
+				threads);
+		try {
+			analysis.writeResults(analysis.analyze(listGazeFiles(new File(args[0]))));
+		} finally {
+			analysis.shutdown();
+		}
+	}
+
+	/** inner classes **/
+
+	/* text file or range of records of segment */
+	protected static class Part {
+
+		protected final File file;
+		protected final List<GazeArchive.Entry> entries;
+		protected final int from;
+		protected final int to;
+
+		/* number of each record among records of its image within segment */
+		protected final int[] ordinals;
+
+		/* suffix of output file if segment is split, null otherwise */
+		protected final String suffix;
+
+		protected Part(File file, List<GazeArchive.Entry> entries, int from, int to, int[] ordinals,
+				String suffix) {
+			this.file = file;
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
+			this.ordinals = ordinals;
+			this.suffix = suffix;
+		}
+
+		/* name of file of fixations */
+		protected String getOutputName() {
+			return file.getName() + (suffix == null ? "" : "." + suffix) + ".csv";
+		}
+	}
+
+	/* parts from (inclusive) to (exclusive), split in halves until one part is left */
+	protected class PartTask extends RecursiveTask<Map<Integer, ImageAnalysis>> {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final List<Part> parts;
+		protected final int from;
+		protected final int to;
+
+		protected PartTask(List<Part> parts, int from, int to) {
+			this.parts = parts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Map<Integer, ImageAnalysis> compute() {
+			if (to - from == 1) {
+				return analyzePart(parts.get(from));
+			}
+			int middle = (from + to) / 2;
+			PartTask left = new PartTask(parts, from, middle);
+			PartTask right = new PartTask(parts, middle, to);
+			left.fork();
+			Map<Integer, ImageAnalysis> rightImages = right.compute();
+			return merge(left.join(), rightImages);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package schaugenau.analytics;
+
+import schaugenau.state.game.GazeSampleBuffer;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Dispersion-threshold (I-DT) fixation detection. A window of at least the
+ * minimal duration becomes a fixation if its dispersion, width plus height
+ * of its bounding box, is within the threshold, and is then extended as long
+ * as it stays within. Samples are split into gazes where time since start
+ * of gaze restarts, windows never span two gazes.
+ *
+ * @author agent
+ *
+ */
+
+public class FixationDetector {
+
+	/** defines **/
+
+	/* former converter kept samples within +-30 px of first one, so boxes up to 58 px wide and high */
+	public static final float defaultMaxDispersion = 116;
+	public static final float defaultMinDuration = 0.1f;
+
+	/** fields **/
+	protected final float maxDispersion;
+	protected final float minDuration;
+
+	/** methods **/
+
+	/* constructor with defaults */
+	public FixationDetector() {
+		this(defaultMaxDispersion, defaultMinDuration);
+	}
+
+	/* constructor, dispersion in pixels, duration in seconds */
+	public FixationDetector(float maxDispersion, float minDuration) {
+		this.maxDispersion = maxDispersion;
+		this.minDuration = minDuration;
+	}
+
+	/* detect fixations of all gazes in samples, start is relative to first gaze */
+	public void detect(GazeSampleBuffer samples, Fixations fixations) {
+		fixations.clear();
+		int size = samples.size();
+		float offset = 0;
+		int from = 0;
+		for (int i = 1; i <= size; i++) {
+			if (i == size || samples.getTime(i) == 0 || samples.getTime(i) < samples.getTime(i - 1)) {
+				detect(samples, from, i, offset, fixations);
+
+				/* next gaze follows last one */
+				offset += samples.getTime(i - 1);
+				from = i;
+			}
+		}
+	}
+
+	/* detect fixations of samples from (inclusive) to (exclusive) of one gaze */
+	protected void detect(GazeSampleBuffer samples, int from, int to, float offset, Fixations fixations) {
+		int i = from;
+		while (i < to) {
+
+			/* smallest window covering minimal duration */
+			float startTime = samples.getTime(i);
+			int minX = samples.getX(i);
+			int maxX = minX;
+			int minY = samples.getY(i);
+			int maxY = minY;
+			int j = i;
+			while (j + 1 < to && samples.getTime(j) - startTime < minDuration) {
+				j++;
+				minX = Math.min(minX, samples.getX(j));
+				maxX = Math.max(maxX, samples.getX(j));
+				minY = Math.min(minY, samples.getY(j));
+				maxY = Math.max(maxY, samples.getY(j));
+			}
+			if (samples.getTime(j) - startTime < minDuration) {
+
+				/* rest of gaze is too short */
+				return;
+			}
+			if ((maxX - minX) + (maxY - minY) > maxDispersion) {
+				i++;
+				continue;
+			}
+
+			/* extend window while dispersion stays within threshold */
+			while (j + 1 < to) {
+				int x = samples.getX(j + 1);
+				int y = samples.getY(j + 1);
+				if ((Math.max(maxX, x) - Math.min(minX, x)) + (Math.max(maxY, y) - Math.min(minY, y)) > maxDispersion) {
+					break;
+				}
+				minX = Math.min(minX, x);
+				maxX = Math.max(maxX, x);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+				j++;
+			}
+
+			/* centroid of window */
+			long sumX = 0;
+			long sumY = 0;
+			for (int k = i; k <= j; k++) {
+				sumX += samples.getX(k);
+				sumY += samples.getY(k);
+			}
+			int count = j - i + 1;
+			fixations.add((float) sumX / count, (float) sumY / count, 1000 * (offset + startTime),
+					1000 * (samples.getTime(j) - startTime));
+			i = j + 1;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package schaugenau.analytics;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Fixations of one record in primitive arrays: centroid in image pixels,
+ * start since begin of record and duration in milliseconds. Cleared and
+ * reused for every record.
+ *
+ * @author agent
+ *
+ */
+
+public class Fixations {
+
+	/** fields **/
+	protected float[] x;
+	protected float[] y;
+	protected float[] start;
+	protected float[] duration;
+	protected int size;
+
+	/** methods **/
+
+	/* constructor */
+	public Fixations(int capacity) {
+		this.x = new float[Math.max(1, capacity)];
+		this.y = new float[x.length];
+		this.start = new float[x.length];
+		this.duration = new float[x.length];
+		this.size = 0;
+	}
+
+	/* add fixation */
+	public void add(float fixationX, float fixationY, float startMillis, float durationMillis) {
+		if (size == x.length) {
+			grow();
+		}
+		x[size] = fixationX;
+		y[size] = fixationY;
+		start[size] = startMillis;
+		duration[size] = durationMillis;
+		size++;
+	}
+
+	/* forget fixations, keeps arrays */
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public float getX(int index) {
+		return x[index];
+	}
+
+	public float getY(int index) {
+		return y[index];
+	}
+
+	public float getStart(int index) {
+		return start[index];
+	}
+
+	public float getDuration(int index) {
+		return duration[index];
+	}
+
+	/* sum of durations in milliseconds */
+	public float getDwellTime() {
+		float dwell = 0;
+		for (int i = 0; i < size; i++) {
+			dwell += duration[i];
+		}
+		return dwell;
+	}
+
+	/* double capacity */
+	protected void grow() {
+		int capacity = x.length * 2;
+		float[] grownX = new float[capacity];
+		float[] grownY = new float[capacity];
+		float[] grownStart = new float[capacity];
+		float[] grownDuration = new float[capacity];
+		System.arraycopy(x, 0, grownX, 0, size);
+		System.arraycopy(y, 0, grownY, 0, size);
+		System.arraycopy(start, 0, grownStart, 0, size);
+		System.arraycopy(duration, 0, grownDuration, 0, size);
+		x = grownX;
+		y = grownY;
+		start = grownStart;
+		duration = grownDuration;
+	}
+}
@@ -0,0 +1,179 @@
+package schaugenau.analytics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+
+import org.apache.log4j.Logger;
+
+import schaugenau.state.game.GazeDataWriter;
+import schaugenau.state.game.GazeRecord;
+import schaugenau.state.game.GazeSegmentWriter;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Converts text gaze files into indexed gaze segments. Records go into the
+ * segment of the month in their file name. Name, length and count of records
+ * of imported files are kept in a list within the archive, so running the
+ * import again picks up new files and the records appended to known ones.
+ * The directory the game writes its segments to is refused as archive.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeArchiveImport {
+
+	/** defines **/
+	protected static final String importedList = "imported.lst";
+	protected static final String separator = "\t";
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(GazeArchiveImport.class);
+
+	/** methods **/
+
+	/* import text files of directory into archive, returns count of records */
+	public static int importText(File textDirectory, File archiveDirectory) throws IOException {
+		long start = System.nanoTime();
+		if (archiveDirectory.getCanonicalFile().equals(new File(GazeDataWriter.directory).getCanonicalFile())) {
+			throw new IOException(archiveDirectory.getPath() + " is written by the game, choose another archive");
+		}
+		archiveDirectory.mkdirs();
+		File list = new File(archiveDirectory, importedList);
+		Map<String, Imported> imported = readImported(list);
+
+		/* month -> file names, so each segment is opened once */
+		Map<String, Set<String>> months = new TreeMap<String, Set<String>>();
+		File[] files = textDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				Matcher matcher = GazeTextReader.fileNamePattern.matcher(file.getName());
+				if (!file.isFile() || !matcher.matches()) {
+					continue;
+				}
+				Imported known = imported.get(file.getName());
+				if (known != null && file.length() <= known.length) {
+					if (file.length() < known.length) {
+						logger.warn(file.getName() + " is shorter than when it was imported, skipping it");
+					}
+					continue;
+				}
+				Set<String> names = months.get(matcher.group(2));
+				if (names == null) {
+					names = new TreeSet<String>();
+					months.put(matcher.group(2), names);
+				}
+				names.add(file.getName());
+			}
+		}
+
+		int records = 0;
+		int fileCount = 0;
+		PrintWriter listWriter = new PrintWriter(new FileWriter(list, true));
+		try {
+			for (Map.Entry<String, Set<String>> month : months.entrySet()) {
+				GazeSegmentWriter writer = new GazeSegmentWriter(archiveDirectory, month.getKey());
+				try {
+					for (String name : month.getValue()) {
+						File file = new File(textDirectory, name);
+						long length = file.length();
+						Imported known = imported.get(name);
+						int skip = known == null ? 0 : known.records;
+						int count = 0;
+						GazeTextReader reader = new GazeTextReader(file);
+						try {
+
+							/* records imported before are read again but not appended */
+							GazeRecord record;
+							while ((record = reader.next()) != null) {
+								if (count++ >= skip) {
+									writer.append(record);
+									records++;
+								}
+							}
+						} finally {
+							reader.close();
+						}
+
+						/* file counts as imported up to this length once its records are on disk */
+						writer.flush();
+						listWriter.println(name + separator + length + separator + count);
+						listWriter.flush();
+						fileCount++;
+					}
+				} finally {
+					writer.close();
+				}
+			}
+		} finally {
+			listWriter.close();
+		}
+		logger.info("Imported " + records + " gaze records of " + fileCount + " files into " + months.size()
+				+ " segments in " + (System.nanoTime() - start) / 1000000 + "ms");
+		return records;
+	}
+
+	/* already imported files by name, later lines of a name replace earlier ones */
+	protected static Map<String, Imported> readImported(File list) throws IOException {
+		Map<String, Imported> imported = new HashMap<String, Imported>();
+		if (!list.exists()) {
+			return imported;
+		}
+		BufferedReader reader = new BufferedReader(new FileReader(list));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(separator);
+				if (fields[0].isEmpty()) {
+					continue;
+				}
+				try {
+
+					/* lines of name only are from imports which did not resume, taken as complete */
+					imported.put(fields[0], fields.length < 3 ? new Imported(Long.MAX_VALUE, 0)
+							: new Imported(Long.parseLong(fields[1]), Integer.parseInt(fields[2])));
+				} catch (NumberFormatException e) {
+					logger.warn("Skipping broken line of " + list.getName() + ": " + line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return imported;
+	}
+
+	/* import, arguments are directory of text files and archive directory */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: GazeArchiveImport <text directory> <archive directory>");
+			return;
+		}
+		importText(new File(args[0]), new File(args[1]));
+	}
+
+	/** inner classes **/
+
+	/* length and count of records of file when it was imported */
+	protected static class Imported {
+
+		protected final long length;
+		protected final int records;
+
+		protected Imported(long length, int records) {
+			this.length = length;
+			this.records = records;
+		}
+	}
+}
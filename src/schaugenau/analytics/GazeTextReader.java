@@ -0,0 +1,212 @@
+package schaugenau.analytics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import schaugenau.state.game.GazeRecord;
+import schaugenau.state.game.GazeSampleBuffer;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Reads text gaze files (ImageNNNN.yyyy-MM.txt) block by block. Sample lines
+ * are parsed by hand into primitive buffers, so a line costs no more than
+ * the string read from file. Image ID is taken from the file name, text
+ * files know no session, it is zero.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeTextReader {
+
+	/** defines **/
+	public static final Pattern fileNamePattern = Pattern.compile("Image(\\d+)\\.(\\d{4}-\\d{2})\\.txt");
+	protected static final String dateFormat = "dd-MM-yyyy_HH-mm-ssZ";
+	protected static final String resolutionPrefix = "Display resolution: ";
+	protected static final String coveredPrefix = "Screen covered by image: ";
+	protected static final String presentationPrefix = "Seconds of presentation: ";
+	protected static final String displayedPrefix = "Image displayed as: ";
+	protected static final String chosenLine = "Image was chosen by user";
+	protected static final String samplesPrefix = "Following:";
+
+	/** fields **/
+	protected final File file;
+	protected final int imageID;
+	protected final BufferedReader reader;
+	protected final SimpleDateFormat format;
+	protected int line;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(GazeTextReader.class);
+
+	/** methods **/
+
+	/* constructor, opens file */
+	public GazeTextReader(File file) throws IOException {
+		Matcher matcher = fileNamePattern.matcher(file.getName());
+		if (!matcher.matches()) {
+			throw new IOException(file.getName() + " is no name of a gaze file");
+		}
+		this.file = file;
+		this.imageID = Integer.parseInt(matcher.group(1));
+		this.reader = new BufferedReader(new FileReader(file), 64 * 1024);
+		this.format = new SimpleDateFormat(dateFormat);
+		this.line = 0;
+	}
+
+	public int getImageID() {
+		return imageID;
+	}
+
+	/* next block, null at end of file */
+	public GazeRecord next() throws IOException {
+
+		/* first line of block is date, blank lines between blocks are skipped */
+		String text;
+		do {
+			text = readLine();
+			if (text == null) {
+				return null;
+			}
+		} while (text.isEmpty());
+		long date = 0;
+		try {
+			date = format.parse(text).getTime();
+		} catch (ParseException e) {
+			logger.warn("Unknown date in line " + line + " of " + file.getName());
+		}
+
+		/* header */
+		int displayWidth = 0;
+		int displayHeight = 0;
+		float screenCovered = 0;
+		float presentationTime = 0;
+		boolean displayedAsCorrect = false;
+		boolean chosen = false;
+		while ((text = readLine()) != null && !text.startsWith(samplesPrefix)) {
+			if (text.isEmpty()) {
+
+				/* block without samples */
+				break;
+			}
+			try {
+				if (text.startsWith(resolutionPrefix)) {
+					String resolution = text.substring(resolutionPrefix.length());
+					int separator = resolution.indexOf('x');
+					displayWidth = Integer.parseInt(resolution.substring(0, separator));
+					displayHeight = Integer.parseInt(resolution.substring(separator + 1));
+				} else if (text.startsWith(coveredPrefix)) {
+					screenCovered = Float.parseFloat(text.substring(coveredPrefix.length()).replace("%", ""));
+				} else if (text.startsWith(presentationPrefix)) {
+					presentationTime = Float.parseFloat(text.substring(presentationPrefix.length()));
+				} else if (text.startsWith(displayedPrefix)) {
+					displayedAsCorrect = text.endsWith("INCORRECT") ? false : text.endsWith("CORRECT");
+				} else if (text.equals(chosenLine)) {
+					chosen = true;
+				}
+			} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+				logger.warn("Unknown header in line " + line + " of " + file.getName());
+			}
+		}
+
+		/* samples until blank line */
+		GazeSampleBuffer samples = new GazeSampleBuffer(256);
+		if (text != null && !text.isEmpty()) {
+			while ((text = readLine()) != null && !text.isEmpty()) {
+				if (!parseSample(text, samples)) {
+					logger.warn("Skipping sample in line " + line + " of " + file.getName());
+				}
+			}
+		}
+		return new GazeRecord(0, imageID, date, displayWidth, displayHeight, screenCovered, presentationTime,
+				displayedAsCorrect, chosen, samples);
+	}
+
+	/* close file */
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/* read line and count it */
+	protected String readLine() throws IOException {
+		String text = reader.readLine();
+		if (text != null) {
+			line++;
+		}
+		return text;
+	}
+
+	/* parse 'X; Y; Seconds' into samples, returns false if line is malformed */
+	protected static boolean parseSample(String text, GazeSampleBuffer samples) {
+		int length = text.length();
+		int position = 0;
+		int x = 0;
+		int y = 0;
+		for (int field = 0; field < 2; field++) {
+			boolean negative = false;
+			long value = 0;
+			int digits = 0;
+			while (position < length && text.charAt(position) == ' ') {
+				position++;
+			}
+			if (position < length && text.charAt(position) == '-') {
+				negative = true;
+				position++;
+			}
+			while (position < length && text.charAt(position) >= '0' && text.charAt(position) <= '9') {
+				value = value * 10 + (text.charAt(position) - '0');
+				digits++;
+				position++;
+			}
+			if (digits == 0 || position >= length || text.charAt(position) != ';') {
+				return false;
+			}
+			position++;
+			if (field == 0) {
+				x = (int) (negative ? -value : value);
+			} else {
+				y = (int) (negative ? -value : value);
+			}
+		}
+
+		/* seconds with optional fraction */
+		while (position < length && text.charAt(position) == ' ') {
+			position++;
+		}
+		double seconds = 0;
+		double scale = 1;
+		int digits = 0;
+		boolean fraction = false;
+		for (; position < length; position++) {
+			char c = text.charAt(position);
+			if (c == '.' && !fraction) {
+				fraction = true;
+			} else if (c >= '0' && c <= '9') {
+				if (fraction) {
+					scale /= 10;
+					seconds += (c - '0') * scale;
+				} else {
+					seconds = seconds * 10 + (c - '0');
+				}
+				digits++;
+			} else {
+				return false;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		samples.add(x, y, (float) seconds);
+		return true;
+	}
+}
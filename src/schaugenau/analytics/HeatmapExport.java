@@ -0,0 +1,68 @@
+package schaugenau.analytics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+import schaugenau.state.game.GazeHeatmaps;
+import schaugenau.state.game.MappedHeatmap;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Writes the heatmaps which the game accumulates per image as images. The
+ * mapped files are only read, so this works while the game is running.
+ *
+ * @author agent
+ *
+ */
+
+public class HeatmapExport {
+
+	/** defines **/
+	protected static final String heatmapPostfix = ".heatmap";
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(HeatmapExport.class);
+
+	/** methods **/
+
+	/* write image of every heatmap in directory, returns count of images */
+	public static int export(File directory, File output) throws IOException {
+		output.mkdirs();
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		Arrays.sort(files);
+		int exported = 0;
+		for (File file : files) {
+			if (!file.getName().endsWith(heatmapPostfix)) {
+				continue;
+			}
+			MappedHeatmap heatmap = MappedHeatmap.openReadOnly(file);
+			try {
+				String name = file.getName().substring(0, file.getName().length() - heatmapPostfix.length());
+				HeatmapGrid.of(heatmap).writeImage(new File(output, name + ".png"));
+				logger.debug(name + ": " + heatmap.getRounds() + " rounds");
+				exported++;
+			} finally {
+				heatmap.close();
+			}
+		}
+		logger.info("Exported " + exported + " heatmaps of " + directory.getPath());
+		return exported;
+	}
+
+	/* export, arguments are output directory and optionally heatmap directory */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: HeatmapExport <output directory> [heatmap directory]");
+			return;
+		}
+		export(new File(args.length > 1 ? args[1] : GazeHeatmaps.directory), new File(args[0]));
+	}
+}
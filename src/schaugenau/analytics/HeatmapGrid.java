@@ -0,0 +1,136 @@
+package schaugenau.analytics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import schaugenau.state.game.MappedHeatmap;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Attention of one image on a grid of square cells in image pixels. Each
+ * fixation adds its duration to its cell. The grid grows with the largest
+ * coordinate seen, since text gaze files do not know the image resolution.
+ * Heatmaps accumulated by the game are read from their mapped files.
+ *
+ * @author agent
+ *
+ */
+
+public class HeatmapGrid {
+
+	/** defines **/
+	protected static final int maxPixels = 16384;
+
+	/** fields **/
+	protected final int cellSize;
+	protected int width;
+	protected int height;
+	protected float[] cells;
+
+	/** methods **/
+
+	/* constructor, cell size in pixels */
+	public HeatmapGrid(int cellSize) {
+		this.cellSize = Math.max(1, cellSize);
+		this.width = 0;
+		this.height = 0;
+		this.cells = new float[0];
+	}
+
+	/* grid with cells of mapped heatmap */
+	public static HeatmapGrid of(MappedHeatmap heatmap) {
+		HeatmapGrid grid = new HeatmapGrid(heatmap.getCellSize());
+		grid.width = heatmap.getWidth();
+		grid.height = heatmap.getHeight();
+		grid.cells = heatmap.getCells();
+		return grid;
+	}
+
+	/* add weight at pixel, coordinates outside of any image are ignored */
+	public void add(float x, float y, float weight) {
+		if (x < 0 || y < 0 || x >= maxPixels || y >= maxPixels) {
+			return;
+		}
+		int cellX = (int) x / cellSize;
+		int cellY = (int) y / cellSize;
+		if (cellX >= width || cellY >= height) {
+			resize(Math.max(width, cellX + 1), Math.max(height, cellY + 1));
+		}
+		cells[cellY * width + cellX] += weight;
+	}
+
+	/* add all cells of other grid of same cell size */
+	public void merge(HeatmapGrid other) {
+		if (other.cellSize != cellSize) {
+			throw new IllegalArgumentException("Heatmaps of different cell size");
+		}
+		if (other.width > width || other.height > height) {
+			resize(Math.max(width, other.width), Math.max(height, other.height));
+		}
+		for (int y = 0; y < other.height; y++) {
+			for (int x = 0; x < other.width; x++) {
+				cells[y * width + x] += other.cells[y * other.width + x];
+			}
+		}
+	}
+
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/* width in cells */
+	public int getWidth() {
+		return width;
+	}
+
+	/* height in cells */
+	public int getHeight() {
+		return height;
+	}
+
+	/* value of cell */
+	public float get(int x, int y) {
+		return cells[y * width + x];
+	}
+
+	/* highest value of all cells */
+	public float getMax() {
+		float max = 0;
+		for (float value : cells) {
+			max = Math.max(max, value);
+		}
+		return max;
+	}
+
+	/* write as grayscale image, one pixel per cell, white is highest value */
+	public void writeImage(File file) throws IOException {
+		BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height),
+				BufferedImage.TYPE_BYTE_GRAY);
+		float max = getMax();
+		if (max > 0) {
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int gray = (int) (255 * cells[y * width + x] / max);
+					image.getRaster().setSample(x, y, 0, gray);
+				}
+			}
+		}
+		ImageIO.write(image, "png", file);
+	}
+
+	/* copy cells into grid of new size */
+	protected void resize(int newWidth, int newHeight) {
+		float[] resized = new float[newWidth * newHeight];
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(cells, y * width, resized, y * newWidth, width);
+		}
+		cells = resized;
+		width = newWidth;
+		height = newHeight;
+	}
+}
@@ -0,0 +1,102 @@
+package schaugenau.analytics;
+
+import schaugenau.state.game.GazeRecord;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Aggregated gaze of one image over all records: counts, dwell time on
+ * fixations and heatmap. Partial results of several files are merged.
+ *
+ * @author agent
+ *
+ */
+
+public class ImageAnalysis {
+
+	/** fields **/
+	protected final int imageID;
+	protected int records;
+	protected int chosen;
+	protected int displayedAsCorrect;
+	protected long samples;
+	protected long fixations;
+	protected double dwellMillis;
+	protected double presentationMillis;
+	protected final HeatmapGrid heatmap;
+
+	/** methods **/
+
+	/* constructor */
+	public ImageAnalysis(int imageID, int cellSize) {
+		this.imageID = imageID;
+		this.heatmap = new HeatmapGrid(cellSize);
+	}
+
+	/* add record and its fixations */
+	public void add(GazeRecord record, Fixations recordFixations) {
+		records++;
+		if (record.isChosen()) {
+			chosen++;
+		}
+		if (record.isDisplayedAsCorrect()) {
+			displayedAsCorrect++;
+		}
+		samples += record.getSamples().size();
+		presentationMillis += 1000.0 * record.getPresentationTime();
+		fixations += recordFixations.size();
+		for (int i = 0; i < recordFixations.size(); i++) {
+			dwellMillis += recordFixations.getDuration(i);
+			heatmap.add(recordFixations.getX(i), recordFixations.getY(i), recordFixations.getDuration(i));
+		}
+	}
+
+	/* add other partial result of same image */
+	public void merge(ImageAnalysis other) {
+		records += other.records;
+		chosen += other.chosen;
+		displayedAsCorrect += other.displayedAsCorrect;
+		samples += other.samples;
+		fixations += other.fixations;
+		dwellMillis += other.dwellMillis;
+		presentationMillis += other.presentationMillis;
+		heatmap.merge(other.heatmap);
+	}
+
+	public int getImageID() {
+		return imageID;
+	}
+
+	public int getRecords() {
+		return records;
+	}
+
+	public int getChosen() {
+		return chosen;
+	}
+
+	public int getDisplayedAsCorrect() {
+		return displayedAsCorrect;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	public long getFixations() {
+		return fixations;
+	}
+
+	public double getDwellMillis() {
+		return dwellMillis;
+	}
+
+	public double getPresentationMillis() {
+		return presentationMillis;
+	}
+
+	public HeatmapGrid getHeatmap() {
+		return heatmap;
+	}
+}
@@ -21,7 +21,11 @@ import com.jme3.system.AppSettings;
 import schaugenau.core.FadableState;
 import schaugenau.core.SoundManager;
 import schaugenau.core.SoundManager.Sound;
+import schaugenau.database.Access;
+import schaugenau.database.DataService;
 import schaugenau.database.PictureOperations;
+import schaugenau.database.Repositories;
+import schaugenau.database.ScoreOperations;
 import schaugenau.database.SurveyOperations;
 import schaugenau.font.Font;
 import schaugenau.input.DistortedMouseInput;
@@ -30,6 +34,8 @@ import schaugenau.input.Input;
 import schaugenau.input.MouseInput;
 import schaugenau.state.calibration.CalibrationState;
 import schaugenau.state.game.GameState;
+import schaugenau.state.game.GazeDataWriter;
+import schaugenau.state.game.GazeHeatmaps;
 import schaugenau.state.highscore.HighscoreState;
 import schaugenau.state.hyper.HyperState;
 import schaugenau.state.hyper.HyperState.MusicTrack;
@@ -71,6 +77,10 @@ public class App extends Application {
 		ONLINE, OFFLINE
 	}
 
+	public enum DbBackend {
+		MYSQL, EMBEDDED
+	}
+
 	public enum Language {
 		GERMAN, ENGLISH
 	}
@@ -85,6 +95,7 @@ public class App extends Application {
 	protected final boolean forceInvisbleCursor = false;
 	protected final boolean vsync = true;
 	public static final DbConnectivity connectivity = DbConnectivity.ONLINE; // DbConnectivity.OFFLINE;
+	public static final DbBackend backend = DbBackend.MYSQL; // DbBackend.EMBEDDED;
 	protected final Language initialLanguage = Language.ENGLISH;
 	protected final GameStyle initialGameStyle = GameStyle.INDIRECT;
 	protected final boolean loadMusic = false;
@@ -223,6 +234,9 @@ public class App extends Application {
 		/* create necessary folders if not yet exisisting */
 		this.createFolders();
 
+		/* gaze data of this run */
+		GazeDataWriter.start();
+
 		super.start();
 
 		logger.debug("... started");
@@ -521,6 +535,20 @@ public class App extends Application {
 			/* stop input */
 			input.stop();
 
+			/* write pending gaze data and heatmaps */
+			GazeDataWriter.shutdown();
+			GazeHeatmaps.shutdown();
+
+			/* finish queued database calls, then write pending picture statistics and scores */
+			DataService.shutdown();
+			PictureOperations.shutdown();
+			ScoreOperations.shutdown();
+			Repositories.shutdown();
+
+			/* close pooled database connections and log their statistics */
+			Access.shutdown();
+			logger.info(PictureOperations.getCacheStats());
+
 			/* stop audio renderer */
 			this.getAudioRenderer().cleanup();
 
@@ -51,14 +51,47 @@ public abstract class Entity extends BaseObject {
 		this.app = app;
 
 		/* load assets */
-		spatial = app.getAssetManager().loadModel(app.pathModels + model + ".j3o");
-		mat = new Material(app.getAssetManager(), app.pathMaterials + material + ".j3md");
+		loadModelAndMaterial(model, material);
 
 		this.setTexture(texture, texturePath, textureFormat, clampTexture);
 		if (hasLightmap) {
 			this.setLightmap(name, texturePath, textureFormat);
 		}
 
+		setupMaterial(isTransparent, useInGui, isMasked);
+	}
+
+	/* constructor with already loaded texture */
+	public Entity(App app, String name, String model, String material, Texture texture, boolean isTransparent,
+			boolean useInGui, boolean clampTexture, boolean isMasked) {
+		super(name);
+
+		/* save alias of app */
+		this.app = app;
+
+		/* load assets */
+		loadModelAndMaterial(model, material);
+		this.applyTexture(texture, clampTexture);
+
+		setupMaterial(isTransparent, useInGui, isMasked);
+	}
+
+	/* standard construtor */
+	public Entity(App app, String name, String model, String material, String texture, boolean isTransparent,
+			String textureFormat, boolean isGUI, boolean clampTexture, boolean isMasked, boolean hasLightmap) {
+		this(app, name, model, material, texture, app.pathTextures, isTransparent, textureFormat, isGUI, clampTexture,
+				isMasked, hasLightmap);
+	}
+
+	/* load model and create material */
+	protected void loadModelAndMaterial(String model, String material) {
+		spatial = app.getAssetManager().loadModel(app.pathModels + model + ".j3o");
+		mat = new Material(app.getAssetManager(), app.pathMaterials + material + ".j3md");
+	}
+
+	/* set render state of material and attach spatial */
+	protected void setupMaterial(boolean isTransparent, boolean useInGui, boolean isMasked) {
+
 		/* is it transparent */
 		if (isTransparent) {
 			mat.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
@@ -77,13 +110,6 @@ public abstract class Entity extends BaseObject {
 		node.attachChild(spatial);
 	}
 
-	/* standard construtor */
-	public Entity(App app, String name, String model, String material, String texture, boolean isTransparent,
-			String textureFormat, boolean isGUI, boolean clampTexture, boolean isMasked, boolean hasLightmap) {
-		this(app, name, model, material, texture, app.pathTextures, isTransparent, textureFormat, isGUI, clampTexture,
-				isMasked, hasLightmap);
-	}
-
 	/* collide ray with spatial or if available with collision hull */
 	public void collideWith(Ray ray, CollisionResults results) {
 		if (collision == null) {
@@ -124,6 +150,11 @@ public abstract class Entity extends BaseObject {
 		textureKey.setGenerateMips(true);
 
 		Texture tex = app.getAssetManager().loadTexture(textureKey);
+		applyTexture(tex, clamp);
+	}
+
+	/* set loaded texture as color map and remember its size */
+	protected void applyTexture(Texture tex, boolean clamp) {
 		if (clamp) {
 			tex.setWrap(WrapMode.Clamp);
 		} else {
@@ -1,5 +1,7 @@
 package schaugenau.core;
 
+import com.jme3.texture.Texture;
+
 import schaugenau.app.App;
 
 /**
@@ -32,6 +34,13 @@ public class StaticEntity extends Entity {
 				isMasked, hasLightmap);
 	}
 
+	/* constructor with already loaded texture */
+	public StaticEntity(App app, String name, String model, String material, Texture texture,
+			boolean isTransparent, boolean isGUI, boolean clampTexture, boolean isMasked) {
+
+		super(app, name, model, material, texture, isTransparent, isGUI, clampTexture, isMasked);
+	}
+
 	/* simplified constructor */
 	public StaticEntity(App app, String name, String material, boolean isTransparent, String textureFormat,
 			boolean isGUI, boolean clampTexture, boolean isMasked, boolean hasLightmap) {
@@ -0,0 +1,73 @@
+package schaugenau.core;
+
+import java.util.LinkedList;
+
+import org.apache.log4j.Logger;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Spatial;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Upload queue. Spatials are uploaded to the GPU on the render thread before
+ * they are attached, but only as many per frame as fit into a time budget.
+ * At least one spatial is uploaded each frame, so the queue always drains.
+ *
+ * @author agent
+ *
+ */
+
+public class UploadQueue {
+
+	private static Logger logger = Logger.getLogger(UploadQueue.class);
+
+	/** fields **/
+	protected RenderManager renderManager;
+	protected long budgetNanos;
+	protected LinkedList<Spatial> pending;
+
+	/** methods **/
+
+	/* constructor */
+	public UploadQueue(RenderManager renderManager, float budgetMillis) {
+		this.renderManager = renderManager;
+		this.budgetNanos = (long) (budgetMillis * 1000000);
+		this.pending = new LinkedList<Spatial>();
+	}
+
+	/* enqueue spatial for upload, must be called on render thread */
+	public void enqueue(Spatial spatial) {
+		pending.add(spatial);
+	}
+
+	/* upload pending spatials within budget, must be called on render thread */
+	public void update() {
+		long start = System.nanoTime();
+		while (!pending.isEmpty()) {
+			Spatial spatial = pending.poll();
+			long uploadStart = System.nanoTime();
+			renderManager.preloadScene(spatial);
+			logger.debug("Uploaded " + spatial.getName() + " in " + (System.nanoTime() - uploadStart) / 1000 + "us");
+			if (System.nanoTime() - start > budgetNanos) {
+				break;
+			}
+		}
+	}
+
+	/* whether spatial is still waiting for upload */
+	public boolean isPending(Spatial spatial) {
+		return pending.contains(spatial);
+	}
+
+	/* forget pending spatials */
+	public void clear() {
+		pending.clear();
+	}
+
+	/* get count of pending spatials */
+	public int getPendingCount() {
+		return pending.size();
+	}
+}
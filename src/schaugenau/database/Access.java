@@ -1,15 +1,17 @@
 package schaugenau.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.apache.log4j.Logger;
+
 /**
  * Distributed under the MIT License. (See accompanying file LICENSE or copy at
  * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
- * 
+ *
  * @author Kevin Schmidt
  *
  */
@@ -17,33 +19,113 @@ import java.sql.Statement;
 import schaugenau.app.App;
 
 /*
- * class for accessing database
+ * class for accessing database, connections are borrowed from a shared pool
  */
 public class Access {
 
+	/** defines **/
+
+	/* driver and connection ("Server", "Username", "Password") */
+	protected static final String driver = "com.mysql.jdbc.Driver";
+	protected static final String onlineUrl = "url"; // TODO
+	protected static final String offlineUrl = "url"; // TODO
+	protected static final String user = "user"; // TODO
+	protected static final String password = "password"; // TODO
+
+	/* pool */
+	protected static final int maxPoolSize = 4;
+	protected static final long borrowTimeoutMillis = 5000;
+	protected static final long validationIntervalMillis = 30000;
+	protected static final long leakThresholdMillis = 60000;
+
+	/** fields **/
 	public Connection con = null;
 	public Statement st = null;
 	public ResultSet rs = null;
 
-	public void createConnection() throws ClassNotFoundException, SQLException {
+	protected ConnectionPool.PooledConnection pooled = null;
+	protected ConnectionPool borrowedFrom = null;
 
-		if (App.connectivity == App.DbConnectivity.ONLINE) { // online
-			Class.forName("com.mysql.jdbc.Driver");
-			/* Connect with ("Server", "Username", "Password") */
-			con = DriverManager.getConnection("url", "user", "password"); // TODO
-			st = con.createStatement();
-			rs = st.executeQuery("SELECT VERSION()");
+	private static ConnectionPool pool = null;
+	private static Logger logger = Logger.getLogger(Access.class);
+
+	/** methods **/
 
-		} else { // offline
-			Class.forName("com.mysql.jdbc.Driver");
-			/* Connect with ("Server", "Username", "Password") */
-			con = DriverManager.getConnection("url", "user", "password"); // TODO
+	/* borrow connection from pool, has to be given back via closeConnection() */
+	public void createConnection() throws ClassNotFoundException, SQLException {
+		if (pooled != null) {
+			return;
+		}
+		borrowedFrom = getPool();
+		pooled = borrowedFrom.borrow();
+		con = pooled.getConnection();
+		try {
 			st = con.createStatement();
-			rs = st.executeQuery("SELECT VERSION()");
+		} catch (SQLException e) {
+			closeConnection();
+			throw e;
 		}
 	}
 
+	/*
+	 * get prepared statement of borrowed connection, cached by query so it must
+	 * not be closed by the caller
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		if (pooled == null) {
+			throw new SQLException("No connection borrowed");
+		}
+		return pooled.prepare(sql);
+	}
+
+	/* give connection back to pool */
 	public void closeConnection() {
+		if (rs != null) {
+			try {
+				rs.close();
+			} catch (SQLException e) {
+				/* nothing to do */
+			}
+			rs = null;
+		}
+		if (st != null) {
+			try {
+				st.close();
+			} catch (SQLException e) {
+				/* nothing to do */
+			}
+			st = null;
+		}
+		if (pooled != null) {
+			borrowedFrom.release(pooled);
+			pooled = null;
+			borrowedFrom = null;
+		}
+		con = null;
+	}
 
+	/* get statistics of pool, null if no connection was requested yet */
+	public static synchronized ConnectionPool.Stats getPoolStats() {
+		return pool == null ? null : pool.getStats();
+	}
+
+	/* close pool and all idle connections */
+	public static synchronized void shutdown() {
+		if (pool != null) {
+			logger.info("Connection pool: " + pool.getStats());
+			pool.close();
+			pool = null;
+		}
+	}
+
+	/* create pool on first use */
+	protected static synchronized ConnectionPool getPool() throws ClassNotFoundException {
+		if (pool == null) {
+			Class.forName(driver);
+			String url = App.connectivity == App.DbConnectivity.ONLINE ? onlineUrl : offlineUrl;
+			pool = new ConnectionPool(url, user, password, maxPoolSize, borrowTimeoutMillis, validationIntervalMillis,
+					leakThresholdMillis);
+		}
+		return pool;
 	}
-}
\ No newline at end of file
+}
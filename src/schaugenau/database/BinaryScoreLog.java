@@ -0,0 +1,300 @@
+package schaugenau.database;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Append-only binary score log. Every score is a fixed-width record of name
+ * index, score and epoch milliseconds, names are kept once in a dictionary
+ * file. Both files stay open for appending, best scores are found by
+ * scanning the memory-mapped records without any parsing.
+ *
+ * @author agent
+ *
+ */
+
+public class BinaryScoreLog {
+
+	/** defines **/
+	protected static final int recordSize = 4 + 4 + 8;
+	protected static final String namesPostfix = ".names";
+
+	/* format of Date.toString() as written into CSV log */
+	protected static final String csvDateFormat = "EEE MMM dd HH:mm:ss zzz yyyy";
+
+	/** fields **/
+	protected final File recordFile;
+	protected final File namesFile;
+
+	protected RandomAccessFile records;
+	protected FileChannel channel;
+	protected DataOutputStream namesOut;
+
+	/* name dictionary */
+	protected final List<String> names;
+	protected final Map<String, Integer> nameIndices;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(BinaryScoreLog.class);
+
+	/** methods **/
+
+	/* constructor, opens or creates log */
+	public BinaryScoreLog(File recordFile) throws IOException {
+		this.recordFile = recordFile;
+		this.namesFile = new File(recordFile.getPath() + namesPostfix);
+		this.names = new ArrayList<String>();
+		this.nameIndices = new HashMap<String, Integer>();
+
+		File parent = recordFile.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		loadNames();
+		this.namesOut = new DataOutputStream(new FileOutputStream(namesFile, true));
+		this.records = new RandomAccessFile(recordFile, "rw");
+		this.channel = records.getChannel();
+
+		/* cut off torn record, and records whose name did not make it to disk */
+		long valid = channel.size() - channel.size() % recordSize;
+		while (valid > 0) {
+			ByteBuffer last = ByteBuffer.allocate(4);
+			channel.read(last, valid - recordSize);
+			last.flip();
+			if (last.getInt() < names.size()) {
+				break;
+			}
+			valid -= recordSize;
+		}
+		if (valid < channel.size()) {
+			logger.warn("Binary score log has " + (channel.size() - valid) + " broken bytes at end, truncating");
+			channel.truncate(valid);
+		}
+		channel.position(channel.size());
+	}
+
+	/* append score */
+	public synchronized void append(String name, int score, long time) throws IOException {
+		Integer index = nameIndices.get(name);
+		if (index == null) {
+			namesOut.writeUTF(name);
+			namesOut.flush();
+			index = names.size();
+			names.add(name);
+			nameIndices.put(name, index);
+		}
+		ByteBuffer record = ByteBuffer.allocate(recordSize);
+		record.putInt(index);
+		record.putInt(score);
+		record.putLong(time);
+		record.flip();
+		while (record.hasRemaining()) {
+			channel.write(record);
+		}
+	}
+
+	/* best rows, highest score first, earlier row first if equal */
+	public synchronized List<ScoreLogTopK.Row> loadBest(int count) throws IOException {
+		long start = System.nanoTime();
+		List<ScoreLogTopK.Row> best = new ArrayList<ScoreLogTopK.Row>();
+		long size = channel.size();
+		if (count <= 0 || size == 0) {
+			return best;
+		}
+
+		/* heap of record numbers, worst on top */
+		final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		Comparator<Integer> worstFirst = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int scoreA = mapped.getInt(a * recordSize + 4);
+				int scoreB = mapped.getInt(b * recordSize + 4);
+				if (scoreA != scoreB) {
+					return scoreA < scoreB ? -1 : 1;
+				}
+				return b.compareTo(a);
+			}
+		};
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(count, worstFirst);
+		int recordCount = (int) (size / recordSize);
+		for (int i = 0; i < recordCount; i++) {
+			if (heap.size() < count) {
+				heap.add(i);
+			} else if (worstFirst.compare(i, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(i);
+			}
+		}
+
+		List<Integer> sorted = new ArrayList<Integer>(heap);
+		Collections.sort(sorted, Collections.reverseOrder(worstFirst));
+		for (int i : sorted) {
+			int position = i * recordSize;
+			best.add(new ScoreLogTopK.Row(names.get(mapped.getInt(position)), mapped.getInt(position + 4),
+					new Date(mapped.getLong(position + 8)).toString(), i));
+		}
+		logger.debug("Scanned " + recordCount + " scores in " + (System.nanoTime() - start) / 1000 + "us");
+		return best;
+	}
+
+	/* get count of scores */
+	public synchronized long size() throws IOException {
+		return channel.size() / recordSize;
+	}
+
+	/* import rows of CSV log (name, score, date), returns count of imported rows */
+	public int importCsv(File csv) throws IOException {
+		SimpleDateFormat format = new SimpleDateFormat(csvDateFormat, Locale.US);
+		int imported = 0;
+		CSVReader reader = new CSVReader(new FileReader(csv));
+		try {
+			String[] row;
+			while ((row = reader.readNext()) != null) {
+				if (row.length < 2) {
+					continue;
+				}
+				long time = 0;
+				if (row.length > 2) {
+					try {
+						time = format.parse(row[2]).getTime();
+					} catch (ParseException e) {
+						/* keep time zero */
+					}
+				}
+				try {
+					append(row[0], Integer.parseInt(row[1].trim()), time);
+					imported++;
+				} catch (NumberFormatException e) {
+					logger.warn("Skipping score row of " + row[0]);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		channel.force(false);
+		logger.info("Imported " + imported + " scores from " + csv.getPath());
+		return imported;
+	}
+
+	/* create log from CSV log, files are written under temporary names and renamed once complete */
+	public static int createFromCsv(File csv, File recordFile) throws IOException {
+		File temp = new File(recordFile.getPath() + ".tmp");
+		File tempNames = new File(temp.getPath() + namesPostfix);
+		Files.deleteIfExists(temp.toPath());
+		Files.deleteIfExists(tempNames.toPath());
+		int imported;
+		BinaryScoreLog log = new BinaryScoreLog(temp);
+		try {
+			imported = log.importCsv(csv);
+		} catch (IOException | RuntimeException e) {
+			log.close();
+			Files.deleteIfExists(temp.toPath());
+			Files.deleteIfExists(tempNames.toPath());
+			throw e;
+		}
+		log.close();
+
+		/* record file comes last, it marks import as complete */
+		Files.move(tempNames.toPath(), new File(recordFile.getPath() + namesPostfix).toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		Files.move(temp.toPath(), recordFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return imported;
+	}
+
+	/* close files */
+	public synchronized void close() throws IOException {
+		namesOut.close();
+		records.close();
+	}
+
+	/* read name dictionary, a torn name at end is dropped */
+	protected void loadNames() throws IOException {
+		if (!namesFile.exists()) {
+			return;
+		}
+		long valid = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(namesFile)));
+		try {
+			while (true) {
+				String name = in.readUTF();
+				nameIndices.put(name, names.size());
+				names.add(name);
+				valid += 2 + getUTFLength(name);
+			}
+		} catch (EOFException | UTFDataFormatException e) {
+			/* end of dictionary */
+		} finally {
+			in.close();
+		}
+		if (valid < namesFile.length()) {
+			RandomAccessFile file = new RandomAccessFile(namesFile, "rw");
+			try {
+				file.setLength(valid);
+			} finally {
+				file.close();
+			}
+		}
+	}
+
+	/* length of modified UTF-8 as written by writeUTF */
+	protected static int getUTFLength(String text) {
+		int length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				length += 1;
+			} else if (c > 0x07FF) {
+				length += 3;
+			} else {
+				length += 2;
+			}
+		}
+		return length;
+	}
+
+	/* converter from CSV log, arguments are CSV file and binary log */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: BinaryScoreLog <scores.csv> <scores.bin>");
+			return;
+		}
+		BinaryScoreLog log = new BinaryScoreLog(new File(args[1]));
+		try {
+			log.importCsv(new File(args[0]));
+		} finally {
+			log.close();
+		}
+	}
+}
@@ -1,11 +1,11 @@
 package schaugenau.database;
 
-import java.io.FileReader;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 
-import au.com.bytecode.opencsv.CSVReader;
 import au.com.bytecode.opencsv.CSVWriter;
 
 /**
@@ -20,7 +20,38 @@ public class CSV_ScoreOperations {
 
 	static String[] bestScorers;
 
+	/* binary log, imported from CSV log at first use */
+	private static BinaryScoreLog binaryLog = null;
+
+	/* open binary log once, null if not possible, a failed import is tried again next time */
+	protected static synchronized BinaryScoreLog getBinaryLog() {
+		if (binaryLog == null) {
+			File binary = new File("logging/scores.bin");
+			File csv = new File("logging/scores.csv");
+			try {
+				if (!binary.exists() && csv.exists()) {
+					BinaryScoreLog.createFromCsv(csv, binary);
+				}
+				binaryLog = new BinaryScoreLog(binary);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return binaryLog;
+	}
+
 	public static void saveScore(int Score, String Name) {
+		BinaryScoreLog log = getBinaryLog();
+		if (log != null) {
+			try {
+				log.append(Name, Score, System.currentTimeMillis());
+				return;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		/* fall back to CSV log */
 		try {
 			String csv = "logging/scores.csv";
 			// CSVWriter writer = new CSVWriter(new FileWriter(csv));
@@ -36,37 +67,24 @@ public class CSV_ScoreOperations {
 		}
 	}
 
+	/* top scores of log, highest first, binary log is scanned without parsing */
 	public static int[] loadBestScores(int count) {
 		int[] scores = new int[count];
 		String[] scorers = new String[count];
-		String[] dates = new String[count];
 		try {
-			String csvFilename = "logging/scores.csv";
-			CSVReader csvReader = new CSVReader(new FileReader(csvFilename));
-			String[] row = null;
-			while ((row = csvReader.readNext()) != null) {
-				int currentScore = Integer.parseInt(row[1]);
-				String currentScorer = row[0];
-				String currentDate = row[2];
-				// scores = processCSV(currentScorer, currentScore, currentDate,
-				// count);
-				int smallestref = 0;
-				int smallest = scores[0];
-				for (int i = 0; i < count; i++) { // check for smallest score in
-													// scores[]
-					if (scores[i] < smallest) {
-						smallest = scores[i];
-						smallestref = i;
-					}
-					if (smallest < currentScore) { // replace smallest score
-													// with a bigger one
-						scorers[smallestref] = currentScorer;
-						scores[smallestref] = currentScore;
-						dates[smallestref] = currentDate;
-					}
-				}
+			BinaryScoreLog log = getBinaryLog();
+			List<ScoreLogTopK.Row> best;
+			if (log != null) {
+				best = log.loadBest(count);
+			} else {
+
+				/* only rows appended since last call are parsed */
+				best = new ScoreLogTopK(new File("logging/scores.csv"), count).load();
+			}
+			for (int i = 0; i < best.size(); i++) {
+				scores[i] = best.get(i).getScore();
+				scorers[i] = best.get(i).getName();
 			}
-			csvReader.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
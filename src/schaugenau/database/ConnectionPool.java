@@ -0,0 +1,377 @@
+package schaugenau.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Small bounded pool of long-lived JDBC connections. Idle connections are
+ * validated before reuse and borrowed connections which are held too long are
+ * reported as leaks. Every connection caches its prepared statements by SQL
+ * text, so repeated queries are parsed by the server only once.
+ *
+ * @author agent
+ *
+ */
+
+public class ConnectionPool {
+
+	/** defines **/
+
+	/* seconds the driver may take to answer a validation */
+	protected final int validationTimeout = 2;
+
+	/* prepared statements kept open per connection */
+	protected final int maxCachedStatements = 32;
+
+	/** fields **/
+
+	/* connection settings */
+	protected final String url;
+	protected final String user;
+	protected final String password;
+
+	/* pool settings */
+	protected final int maxSize;
+	protected final long borrowTimeoutMillis;
+	protected final long validationIntervalMillis;
+	protected final long leakThresholdMillis;
+
+	/* connections */
+	protected final LinkedBlockingDeque<PooledConnection> idle;
+	protected final Set<PooledConnection> active;
+	protected final Semaphore permits;
+	protected volatile boolean closed;
+
+	/* statistics */
+	protected final AtomicLong borrowCount = new AtomicLong();
+	protected final AtomicLong borrowNanos = new AtomicLong();
+	protected final AtomicLong maxBorrowNanos = new AtomicLong();
+	protected final AtomicLong createdCount = new AtomicLong();
+	protected final AtomicLong discardedCount = new AtomicLong();
+	protected final AtomicLong timeoutCount = new AtomicLong();
+	protected final AtomicLong leakCount = new AtomicLong();
+	protected final AtomicLong statementHitCount = new AtomicLong();
+	protected final AtomicLong statementMissCount = new AtomicLong();
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(ConnectionPool.class);
+
+	/** methods **/
+
+	/* constructor */
+	public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+			long validationIntervalMillis, long leakThresholdMillis) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.maxSize = maxSize;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.validationIntervalMillis = validationIntervalMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+
+		this.idle = new LinkedBlockingDeque<PooledConnection>();
+		this.active = ConcurrentHashMap.newKeySet();
+		this.permits = new Semaphore(maxSize, true);
+		this.closed = false;
+	}
+
+	/* borrow connection, has to be given back via release() */
+	public PooledConnection borrow() throws SQLException {
+		long start = System.nanoTime();
+
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+
+		/* report connections which were never given back */
+		checkForLeaks();
+
+		/* wait for a free slot */
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new SQLException("No connection available after " + borrowTimeoutMillis + "ms (active: "
+						+ active.size() + ", max: " + maxSize + ")");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for connection", e);
+		}
+
+		/* reuse idle connection or open a new one */
+		PooledConnection pooled;
+		try {
+			pooled = takeValidIdle();
+			if (pooled == null) {
+				pooled = new PooledConnection(this, DriverManager.getConnection(url, user, password));
+				createdCount.incrementAndGet();
+			}
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+
+		/* remember borrower for leak detection */
+		pooled.markBorrowed(new Throwable("Connection borrowed here"));
+		active.add(pooled);
+
+		/* statistics */
+		long nanos = System.nanoTime() - start;
+		borrowCount.incrementAndGet();
+		borrowNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxBorrowNanos.get())) {
+			if (maxBorrowNanos.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+
+		return pooled;
+	}
+
+	/* give connection back to pool */
+	public void release(PooledConnection pooled) {
+		if (pooled == null || !active.remove(pooled)) {
+			return;
+		}
+
+		boolean reusable = !closed;
+		try {
+			if (reusable && pooled.getConnection().isClosed()) {
+				reusable = false;
+			}
+			if (reusable && !pooled.getConnection().getAutoCommit()) {
+				pooled.getConnection().rollback();
+				pooled.getConnection().setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			reusable = false;
+		}
+
+		if (reusable) {
+			pooled.markReturned();
+
+			/* most recently used first, so warm connections are taken again */
+			idle.offerFirst(pooled);
+		} else {
+			discard(pooled);
+		}
+		permits.release();
+	}
+
+	/* close all idle connections and refuse further borrowing */
+	public void close() {
+		closed = true;
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			discard(pooled);
+		}
+		if (!active.isEmpty()) {
+			logger.warn("Connection pool closed with " + active.size() + " connection(s) still borrowed");
+		}
+	}
+
+	/* get snapshot of statistics */
+	public Stats getStats() {
+		long borrows = borrowCount.get();
+		return new Stats(borrows, borrows == 0 ? 0 : borrowNanos.get() / borrows, maxBorrowNanos.get(),
+				active.size(), idle.size(), createdCount.get(), discardedCount.get(), timeoutCount.get(),
+				leakCount.get(), statementHitCount.get(), statementMissCount.get());
+	}
+
+	/* take idle connection, validate it if it rested too long */
+	protected PooledConnection takeValidIdle() {
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			if (System.currentTimeMillis() - pooled.getLastReturned() < validationIntervalMillis) {
+				return pooled;
+			}
+			try {
+				if (pooled.getConnection().isValid(validationTimeout)) {
+					return pooled;
+				}
+			} catch (SQLException e) {
+				/* fall through and discard */
+			}
+			logger.debug("Discarding stale pooled connection");
+			discard(pooled);
+		}
+		return null;
+	}
+
+	/* close connection for good */
+	protected void discard(PooledConnection pooled) {
+		discardedCount.incrementAndGet();
+		pooled.closeQuietly();
+	}
+
+	/* log connections which are borrowed longer than threshold */
+	protected void checkForLeaks() {
+		long now = System.currentTimeMillis();
+		for (PooledConnection pooled : active) {
+			if (!pooled.isLeakReported() && now - pooled.getBorrowed() > leakThresholdMillis) {
+				pooled.setLeakReported();
+				leakCount.incrementAndGet();
+				logger.warn("Possible connection leak, borrowed " + (now - pooled.getBorrowed()) + "ms ago",
+						pooled.getBorrowSite());
+			}
+		}
+	}
+
+	/** inner classes **/
+
+	/* connection with bookkeeping of pool */
+	public static class PooledConnection {
+
+		protected final ConnectionPool pool;
+		protected final Connection connection;
+		protected final Map<String, PreparedStatement> statements;
+		protected volatile long borrowed;
+		protected volatile long lastReturned;
+		protected volatile Throwable borrowSite;
+		protected volatile boolean leakReported;
+
+		protected PooledConnection(final ConnectionPool pool, Connection connection) {
+			this.pool = pool;
+			this.connection = connection;
+			this.lastReturned = System.currentTimeMillis();
+
+			/* least recently used statement is closed when cache is full */
+			this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+					if (size() > pool.maxCachedStatements) {
+						closeQuietly(eldest.getValue());
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		public Connection getConnection() {
+			return connection;
+		}
+
+		/* get cached prepared statement for query, only used by borrower */
+		public PreparedStatement prepare(String sql) throws SQLException {
+			PreparedStatement statement = statements.get(sql);
+			if (statement == null || statement.isClosed()) {
+				pool.statementMissCount.incrementAndGet();
+				statement = connection.prepareStatement(sql);
+				statements.put(sql, statement);
+			} else {
+				pool.statementHitCount.incrementAndGet();
+				statement.clearParameters();
+			}
+			return statement;
+		}
+
+		protected void markBorrowed(Throwable borrowSite) {
+			this.borrowed = System.currentTimeMillis();
+			this.borrowSite = borrowSite;
+			this.leakReported = false;
+		}
+
+		protected void markReturned() {
+			this.lastReturned = System.currentTimeMillis();
+			this.borrowSite = null;
+		}
+
+		protected long getBorrowed() {
+			return borrowed;
+		}
+
+		protected long getLastReturned() {
+			return lastReturned;
+		}
+
+		protected Throwable getBorrowSite() {
+			return borrowSite;
+		}
+
+		protected boolean isLeakReported() {
+			return leakReported;
+		}
+
+		protected void setLeakReported() {
+			this.leakReported = true;
+		}
+
+		protected void closeQuietly() {
+			for (PreparedStatement statement : statements.values()) {
+				closeQuietly(statement);
+			}
+			statements.clear();
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				/* nothing to do */
+			}
+		}
+
+		protected static void closeQuietly(PreparedStatement statement) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				/* nothing to do */
+			}
+		}
+	}
+
+	/* immutable snapshot of pool statistics */
+	public static class Stats {
+
+		public final long borrows;
+		public final long averageBorrowNanos;
+		public final long maxBorrowNanos;
+		public final int active;
+		public final int idle;
+		public final long created;
+		public final long discarded;
+		public final long timeouts;
+		public final long leaks;
+		public final long statementHits;
+		public final long statementMisses;
+
+		protected Stats(long borrows, long averageBorrowNanos, long maxBorrowNanos, int active, int idle,
+				long created, long discarded, long timeouts, long leaks, long statementHits, long statementMisses) {
+			this.borrows = borrows;
+			this.averageBorrowNanos = averageBorrowNanos;
+			this.maxBorrowNanos = maxBorrowNanos;
+			this.active = active;
+			this.idle = idle;
+			this.created = created;
+			this.discarded = discarded;
+			this.timeouts = timeouts;
+			this.leaks = leaks;
+			this.statementHits = statementHits;
+			this.statementMisses = statementMisses;
+		}
+
+		@Override
+		public String toString() {
+			return "borrows: " + borrows + ", avg borrow: " + (averageBorrowNanos / 1000) + "us, max borrow: "
+					+ (maxBorrowNanos / 1000) + "us, active: " + active + ", idle: " + idle + ", created: "
+					+ created + ", discarded: " + discarded + ", timeouts: " + timeouts + ", leaks: " + leaks
+					+ ", cached statements hit: " + statementHits + ", missed: " + statementMisses;
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package schaugenau.database;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Asynchronous facade of score, picture and survey operations for the render
+ * thread. Every call runs on one shared database thread, so calls keep their
+ * order, and returns a future which is completed with a fallback value if the
+ * call fails or takes longer than the timeout. A timeout does not cancel
+ * writes, and scores are journaled on the calling thread. States poll the
+ * futures in their update and show placeholders meanwhile.
+ *
+ * @author agent
+ *
+ */
+
+public class DataService {
+
+	/** defines **/
+	protected static final long timeoutMillis = 5000;
+	protected static final long shutdownMillis = 3000;
+
+	/* one frame at the 60 frames per second the application runs with */
+	protected static final long frameBudgetMillis = 1000 / 60;
+
+	/** fields **/
+	protected final ScoreOperations scoreOperations;
+	protected final PictureOperations pictureOperations;
+	protected final SurveyOperations surveyOperations;
+
+	/* shared by all instances */
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "DataService");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private static final ScheduledExecutorService timer = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "DataServiceTimer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/* runs callbacks on database thread, or right away once it is shut down */
+	private static final Executor callbackExecutor = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			try {
+				executor.execute(command);
+			} catch (RejectedExecutionException e) {
+				command.run();
+			}
+		}
+	};
+
+	/* score saved last and its future key */
+	private static volatile SavedScore lastSavedScore = null;
+
+	/* statistics */
+	private static final AtomicLong calls = new AtomicLong();
+	private static final AtomicLong slowCalls = new AtomicLong();
+	private static final AtomicLong timeouts = new AtomicLong();
+	private static final AtomicLong failures = new AtomicLong();
+	private static final AtomicLong maxLatencyMillis = new AtomicLong();
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(DataService.class);
+
+	/** methods **/
+
+	/* constructor */
+	public DataService() {
+		this.scoreOperations = new ScoreOperations();
+		this.pictureOperations = new PictureOperations();
+		this.surveyOperations = new SurveyOperations();
+		ScoreOperations.open();
+	}
+
+	/* score operations */
+
+	/* score is journaled locally on calling thread, so no slow call on database thread can hold it up */
+	public CompletableFuture<Void> saveScore(String gamestyle, int score, String name, int playedTime,
+			int maxMultiplicator, double avMultiplicator, int correctPictures, int incorrectPictures) {
+		calls.incrementAndGet();
+		try {
+			CompletableFuture<Long> key = scoreOperations.saveScore(gamestyle, score, name, playedTime,
+					maxMultiplicator, avMultiplicator, correctPictures, incorrectPictures);
+			lastSavedScore = new SavedScore(gamestyle, score, key);
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			logger.error("saveScore failed", e);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	public CompletableFuture<List<HighscoreEntry>> loadBestEntries(final int count) {
+		return submit("loadBestEntries", new Callable<List<HighscoreEntry>>() {
+			@Override
+			public List<HighscoreEntry> call() {
+				return scoreOperations.loadBestEntries(count);
+			}
+		}, Collections.<HighscoreEntry> emptyList(), false);
+	}
+
+	public CompletableFuture<List<HighscoreEntry>> loadBestEntriesOfHours(final int count, final int hours) {
+		return submit("loadBestEntriesOfHours", new Callable<List<HighscoreEntry>>() {
+			@Override
+			public List<HighscoreEntry> call() {
+				return scoreOperations.loadBestEntriesOfHours(count, hours);
+			}
+		}, Collections.<HighscoreEntry> emptyList(), false);
+	}
+
+	/* rank is -1 if unknown */
+	public CompletableFuture<Integer> queryHighscoreRank(final int score, final String gamestyle) {
+		return submit("queryHighscoreRank", new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return scoreOperations.queryHighscoreRank(score, gamestyle);
+			}
+		}, -1, false);
+	}
+
+	public CompletableFuture<Integer> queryHighscoreRankOfHours(final int score, final String gamestyle,
+			final int hours) {
+		return submit("queryHighscoreRankOfHours", new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return scoreOperations.queryHighscoreRankOfHours(score, gamestyle, hours);
+			}
+		}, -1, false);
+	}
+
+	public CompletableFuture<Integer> getMaxPkey() {
+		return submit("getMaxPkey", new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return scoreOperations.getMaxPkey();
+			}
+		}, 1, false);
+	}
+
+	/* picture operations */
+
+	public CompletableFuture<PicturePair> loadPicturePair() {
+		return submit("loadPicturePair", new Callable<PicturePair>() {
+			@Override
+			public PicturePair call() {
+				return pictureOperations.loadPicturePair();
+			}
+		}, null, false);
+	}
+
+	public CompletableFuture<Void> incrementUsedAsCorrect(final int ID) {
+		return submit("incrementUsedAsCorrect", new Callable<Void>() {
+			@Override
+			public Void call() {
+				pictureOperations.incrementUsedAsCorrect(ID);
+				return null;
+			}
+		}, null, true);
+	}
+
+	public CompletableFuture<Void> incrementChosenAsCorrect(final int ID) {
+		return submit("incrementChosenAsCorrect", new Callable<Void>() {
+			@Override
+			public Void call() {
+				pictureOperations.incrementChosenAsCorrect(ID);
+				return null;
+			}
+		}, null, true);
+	}
+
+	/* survey operations */
+
+	/* catalogue is null if it could not be loaded */
+	public CompletableFuture<SurveyCatalogue> loadSurveyCatalogue() {
+		return submit("loadSurveyCatalogue", new Callable<SurveyCatalogue>() {
+			@Override
+			public SurveyCatalogue call() throws Exception {
+				SurveyCatalogue catalogue = surveyOperations.getCatalogue();
+				return catalogue != null ? catalogue : surveyOperations.loadCatalogue();
+			}
+		}, null, false);
+	}
+
+	/*
+	 * result is stored with score of round as participant, as soon as that
+	 * score is written to database and has got its key. Without saved score of
+	 * round, result is stored without participant.
+	 */
+	public CompletableFuture<Void> saveSurveyResult(final String gamestyle, final int score, final int itemID,
+			final int choice) {
+		return submit("saveSurveyResult", new Callable<Void>() {
+			@Override
+			public Void call() {
+				SavedScore saved = lastSavedScore;
+				if (saved == null || saved.score != score || !saved.gamestyle.equals(gamestyle)) {
+					logger.warn("No saved score for survey result of item " + itemID
+							+ ", storing it without participant");
+					surveyOperations.saveResult(gamestyle, score, itemID, choice, 0);
+					return null;
+				}
+				saved.key.whenCompleteAsync(new BiConsumer<Long, Throwable>() {
+					@Override
+					public void accept(Long key, Throwable failure) {
+						if (failure != null) {
+							logger.warn("Score of survey result of item " + itemID + " has no key, storing it without "
+									+ "participant: " + failure.getMessage());
+						}
+						surveyOperations.saveResult(gamestyle, score, itemID, choice, key == null ? 0 : key);
+					}
+				}, callbackExecutor);
+				return null;
+			}
+		}, null, true);
+	}
+
+	/*
+	 * run call on database thread, fallback is used on failure or timeout. A
+	 * timeout only releases the caller: writes are run anyway, reads whose
+	 * result is no longer wanted are skipped.
+	 */
+	protected <T> CompletableFuture<T> submit(final String name, final Callable<T> callable, final T fallback,
+			final boolean write) {
+		calls.incrementAndGet();
+		final long start = System.nanoTime();
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (!write && future.isDone()) {
+						return;
+					}
+					try {
+						T result = callable.call();
+						long latency = measureLatency(start);
+						if (!future.complete(result)) {
+							logger.warn(name + " finished after timeout (" + latency + "ms)");
+						}
+					} catch (Exception e) {
+						measureLatency(start);
+						failures.incrementAndGet();
+						logger.warn(name + " failed: " + e.getMessage());
+						future.complete(fallback);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			logger.warn(name + " could not be submitted: " + e.getMessage());
+			future.complete(fallback);
+			return future;
+		}
+		timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (future.complete(fallback)) {
+					timeouts.incrementAndGet();
+					logger.warn(name + " timed out after " + timeoutMillis + "ms");
+				}
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		return future;
+	}
+
+	/* latency since submission including queueing, counts calls which would have stalled a frame */
+	protected static long measureLatency(long start) {
+		long latency = (System.nanoTime() - start) / 1000000;
+		if (latency > frameBudgetMillis) {
+			slowCalls.incrementAndGet();
+		}
+		long max;
+		do {
+			max = maxLatencyMillis.get();
+		} while (latency > max && !maxLatencyMillis.compareAndSet(max, latency));
+		return latency;
+	}
+
+	/* get statistics as text */
+	public static String getStats() {
+		return "DataService: " + calls.get() + " calls, " + slowCalls.get() + " slower than a frame ("
+				+ frameBudgetMillis + "ms), " + timeouts.get() + " timeouts, " + failures.get() + " failures, slowest "
+				+ maxLatencyMillis.get() + "ms";
+	}
+
+	/* run queued calls, waits a short time at most */
+	public static void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(shutdownMillis, TimeUnit.MILLISECONDS)) {
+				logger.warn("DataService did not finish queued calls");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		timer.shutdownNow();
+		logger.info(getStats());
+	}
+
+	/** inner classes **/
+
+	/* score of round, survey results refer to it */
+	protected static class SavedScore {
+
+		protected final String gamestyle;
+		protected final int score;
+		protected final CompletableFuture<Long> key;
+
+		protected SavedScore(String gamestyle, int score, CompletableFuture<Long> key) {
+			this.gamestyle = gamestyle;
+			this.score = score;
+			this.key = key;
+		}
+	}
+}
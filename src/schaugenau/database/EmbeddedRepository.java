@@ -0,0 +1,531 @@
+package schaugenau.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Repositories in one local file, no database server needed. The file is a
+ * log of frames (length, payload, CRC32), each frame is one change and is
+ * written with one fsync, so a change is stored completely or not at all. At
+ * open all frames are replayed into in-memory indexes, afterwards queries do
+ * not touch the disk except for reading picture data at its known offset.
+ *
+ * @author agent
+ *
+ */
+
+public class EmbeddedRepository implements ScoreRepository, PictureRepository, SurveyRepository {
+
+	/** defines **/
+	protected static final int magic = 0x53474442;
+	protected static final int version = 1;
+	protected static final int headerLength = 8;
+	protected static final int maxFrameLength = 64 * 1024 * 1024;
+
+	/* types of frames */
+	protected static final byte scoresType = 1;
+	protected static final byte remoteKeysType = 2;
+	protected static final byte pictureType = 3;
+	protected static final byte statisticsType = 4;
+	protected static final byte surveyItemsType = 5;
+	protected static final byte surveyResultsType = 6;
+	protected static final byte markType = 7;
+
+	/** fields **/
+	protected final File file;
+	protected RandomAccessFile raf;
+	protected FileChannel channel;
+
+	/* indexes, key of score is its position plus one */
+	protected final List<ScoreRecord> scores;
+	protected final Map<Long, Long> remoteKeys;
+	protected final TreeMap<Integer, StoredPicture> pictures;
+	protected final List<SurveyItemDefinition> surveyItems;
+	protected final List<SurveyResult> surveyResults;
+	protected final Map<String, Long> marks;
+	protected SurveyCatalogue catalogue;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(EmbeddedRepository.class);
+
+	/** methods **/
+
+	/* constructor, opens or creates file */
+	public EmbeddedRepository(File file) throws IOException {
+		this.file = file;
+		this.scores = new ArrayList<ScoreRecord>();
+		this.remoteKeys = new HashMap<Long, Long>();
+		this.pictures = new TreeMap<Integer, StoredPicture>();
+		this.surveyItems = new ArrayList<SurveyItemDefinition>();
+		this.surveyResults = new ArrayList<SurveyResult>();
+		this.marks = new HashMap<String, Long>();
+		open();
+	}
+
+	/* scores */
+
+	@Override
+	public synchronized long[] insertScores(List<ScoreRecord> records) throws SQLException {
+		long[] keys = new long[records.size()];
+		try {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			DataOutputStream out = startFrame(payload, scoresType, records.size());
+			for (int i = 0; i < keys.length; i++) {
+				records.get(i).write(out);
+				keys[i] = scores.size() + 1 + i;
+			}
+			append(payload);
+		} catch (IOException e) {
+			throw new SQLException("Could not store scores", e);
+		}
+		return keys;
+	}
+
+	@Override
+	public synchronized List<HighscoreEntry> loadEntries() {
+		List<HighscoreEntry> entries = new ArrayList<HighscoreEntry>(scores.size());
+		for (int i = 0; i < scores.size(); i++) {
+			ScoreRecord record = scores.get(i);
+			entries.add(new HighscoreEntry(i + 1, record.getName(), record.getScore(), record.getGamestyle(),
+					record.getCreationTime()));
+		}
+
+		/* stable, so equal times stay in order of keys */
+		Collections.sort(entries, new Comparator<HighscoreEntry>() {
+			@Override
+			public int compare(HighscoreEntry a, HighscoreEntry b) {
+				return Long.compare(a.getCreationTime(), b.getCreationTime());
+			}
+		});
+		return entries;
+	}
+
+	@Override
+	public synchronized long getMaxKey() {
+		return scores.size();
+	}
+
+	/* scores with key greater than given one */
+	public synchronized List<ScoreRecord> loadScores(long afterKey) {
+		return new ArrayList<ScoreRecord>(scores.subList((int) Math.min(afterKey, scores.size()), scores.size()));
+	}
+
+	/* key on database server of local score, zero if not known */
+	public synchronized long getRemoteKey(long localKey) {
+		Long remote = remoteKeys.get(localKey);
+		return remote == null ? 0 : remote;
+	}
+
+	/* remember keys on database server of local scores */
+	public synchronized void putRemoteKeys(long[] localKeys, long[] remoteKeys) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream out = startFrame(payload, remoteKeysType, localKeys.length);
+		for (int i = 0; i < localKeys.length; i++) {
+			out.writeLong(localKeys[i]);
+			out.writeLong(remoteKeys[i]);
+		}
+		append(payload);
+	}
+
+	/* pictures */
+
+	@Override
+	public synchronized List<String> loadTags(String column) {
+		LinkedHashSet<String> tags = new LinkedHashSet<String>();
+		for (StoredPicture picture : pictures.values()) {
+			String tag = "TagGerman".equals(column) ? picture.tagGerman : picture.tagEnglish;
+			if (tag != null) {
+				tags.add(tag);
+			}
+		}
+		return new ArrayList<String>(tags);
+	}
+
+	@Override
+	public synchronized List<Integer> loadIDs(String column, String tag) {
+		List<Integer> IDs = new ArrayList<Integer>();
+		for (StoredPicture picture : pictures.values()) {
+			if (tag.equals("TagGerman".equals(column) ? picture.tagGerman : picture.tagEnglish)) {
+				IDs.add(picture.id);
+			}
+		}
+		return IDs;
+	}
+
+	@Override
+	public synchronized List<Integer> loadAllIDs() {
+		return new ArrayList<Integer>(pictures.keySet());
+	}
+
+	@Override
+	public synchronized PictureRecord loadPicture(int ID) throws SQLException {
+		StoredPicture picture = pictures.get(ID);
+		if (picture == null) {
+			return null;
+		}
+		try {
+			ByteBuffer data = ByteBuffer.allocate(picture.dataLength);
+			while (data.hasRemaining()) {
+				if (channel.read(data, picture.dataOffset + data.position()) < 0) {
+					throw new IOException("Unexpected end of file");
+				}
+			}
+			return new PictureRecord(ID, picture.tagGerman, picture.tagEnglish, picture.usedAsCorrect,
+					picture.chosenAsCorrect, data.array());
+		} catch (IOException e) {
+			throw new SQLException("Could not read picture " + ID, e);
+		}
+	}
+
+	@Override
+	public synchronized int insertPicture(PictureRecord picture) throws SQLException {
+		int ID = picture.getId() > 0 ? picture.getId() : (pictures.isEmpty() ? 1 : pictures.lastKey() + 1);
+		try {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			DataOutputStream out = startFrame(payload, pictureType, 1);
+			out.writeInt(ID);
+			writeString(out, picture.getTagGerman());
+			writeString(out, picture.getTagEnglish());
+			out.writeInt(picture.getUsedAsCorrect());
+			out.writeInt(picture.getChosenAsCorrect());
+			out.writeInt(picture.getData().length);
+			out.write(picture.getData());
+			append(payload);
+		} catch (IOException e) {
+			throw new SQLException("Could not store picture " + ID, e);
+		}
+		return ID;
+	}
+
+	@Override
+	public synchronized void addStatistics(Map<Integer, int[]> deltas) throws SQLException {
+		try {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			DataOutputStream out = startFrame(payload, statisticsType, deltas.size());
+			for (Map.Entry<Integer, int[]> entry : deltas.entrySet()) {
+				out.writeInt(entry.getKey());
+				out.writeInt(entry.getValue()[0]);
+				out.writeInt(entry.getValue()[1]);
+			}
+			append(payload);
+		} catch (IOException e) {
+			throw new SQLException("Could not store picture statistics", e);
+		}
+	}
+
+	/* survey */
+
+	@Override
+	public synchronized SurveyCatalogue loadCatalogue() {
+		if (catalogue == null) {
+			catalogue = new SurveyCatalogue(surveyItems, System.currentTimeMillis());
+		}
+		return catalogue;
+	}
+
+	/* replace all survey items */
+	public synchronized void replaceSurveyItems(List<SurveyItemDefinition> items) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream out = startFrame(payload, surveyItemsType, items.size());
+		for (SurveyItemDefinition item : items) {
+			out.writeInt(item.getId());
+			writeString(out, item.getType());
+			out.writeInt(item.getSession());
+			out.writeInt(item.getOrderPriority());
+			for (boolean english : new boolean[] { true, false }) {
+				writeString(out, item.getQuestion(english));
+				out.writeInt(item.getAnswers(english).size());
+				for (String answer : item.getAnswers(english)) {
+					writeString(out, answer);
+				}
+				writeString(out, item.getLikertLeft(english));
+				writeString(out, item.getLikertRight(english));
+			}
+		}
+		append(payload);
+	}
+
+	@Override
+	public synchronized void saveResult(SurveyResult result) throws SQLException {
+		try {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			DataOutputStream out = startFrame(payload, surveyResultsType, 1);
+			writeString(out, result.getGamestyle());
+			out.writeInt(result.getScore());
+			out.writeInt(result.getItemID());
+			out.writeInt(result.getChoice());
+			out.writeLong(result.getParticipant());
+			append(payload);
+		} catch (IOException e) {
+			throw new SQLException("Could not store survey result", e);
+		}
+	}
+
+	/* survey results from given index on */
+	public synchronized List<SurveyResult> loadResults(long from) {
+		return new ArrayList<SurveyResult>(
+				surveyResults.subList((int) Math.min(from, surveyResults.size()), surveyResults.size()));
+	}
+
+	/* marks, e.g. how far things were synchronized */
+
+	public synchronized long getMark(String name) {
+		Long value = marks.get(name);
+		return value == null ? 0 : value;
+	}
+
+	public synchronized void setMark(String name, long value) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream out = startFrame(payload, markType, 1);
+		out.writeUTF(name);
+		out.writeLong(value);
+		append(payload);
+	}
+
+	/* close file */
+	public synchronized void close() throws IOException {
+		raf.close();
+	}
+
+	/* open file, replay frames and cut off a torn frame at its end */
+	protected void open() throws IOException {
+		long start = System.nanoTime();
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		if (channel.size() < headerLength) {
+			ByteBuffer header = ByteBuffer.allocate(headerLength);
+			header.putInt(magic);
+			header.putInt(version);
+			header.flip();
+			channel.truncate(0);
+			channel.write(header, 0);
+			channel.force(true);
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(headerLength);
+			channel.read(header, 0);
+			header.flip();
+			if (header.getInt() != magic || header.getInt() != version) {
+				raf.close();
+				throw new IOException(file.getPath() + " is no local database of this version");
+			}
+		}
+
+		long offset = headerLength;
+		while (true) {
+			long next = readFrame(offset);
+			if (next < 0) {
+				break;
+			}
+			offset = next;
+		}
+		if (offset < channel.size()) {
+			logger.warn("Local database has " + (channel.size() - offset) + " broken bytes at end, truncating");
+			channel.truncate(offset);
+		}
+		channel.position(channel.size());
+		logger.info("Opened local database with " + scores.size() + " scores, " + pictures.size() + " pictures and "
+				+ surveyItems.size() + " survey items in " + (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/* read and apply frame at offset, returns offset of next frame or -1 */
+	protected long readFrame(long offset) throws IOException {
+		long size = channel.size();
+		if (size - offset < 4) {
+			return -1;
+		}
+		ByteBuffer header = ByteBuffer.allocate(4);
+		channel.read(header, offset);
+		header.flip();
+		int length = header.getInt();
+		if (length <= 0 || length > maxFrameLength || size - offset < 4 + length + 8) {
+			return -1;
+		}
+		ByteBuffer body = ByteBuffer.allocate(length + 8);
+		while (body.hasRemaining()) {
+			if (channel.read(body, offset + 4 + body.position()) < 0) {
+				return -1;
+			}
+		}
+		body.flip();
+		byte[] payload = new byte[length];
+		body.get(payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		if (crc.getValue() != body.getLong()) {
+			return -1;
+		}
+		apply(payload, offset + 4);
+		return offset + 4 + length + 8;
+	}
+
+	/* write frame of payload with one fsync, then apply it to indexes */
+	protected void append(ByteArrayOutputStream payload) throws IOException {
+		byte[] data = payload.toByteArray();
+		if (data.length > maxFrameLength) {
+			throw new IOException("Change of " + data.length + " bytes is too large");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ByteBuffer frame = ByteBuffer.allocate(4 + data.length + 8);
+		frame.putInt(data.length);
+		frame.put(data);
+		frame.putLong(crc.getValue());
+		frame.flip();
+		long offset = channel.size();
+		try {
+			while (frame.hasRemaining()) {
+				channel.write(frame, offset + frame.position());
+			}
+			channel.force(false);
+		} catch (IOException e) {
+
+			/* do not leave half a frame for later frames to follow */
+			channel.truncate(offset);
+			throw e;
+		}
+		apply(data, offset + 4);
+	}
+
+	/* start payload of type with count of entries */
+	protected DataOutputStream startFrame(ByteArrayOutputStream payload, byte type, int count) throws IOException {
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeByte(type);
+		out.writeInt(count);
+		return out;
+	}
+
+	/* apply payload to indexes, offset is where payload is in file */
+	protected void apply(byte[] payload, long offset) throws IOException {
+		ByteArrayInputStream bytes = new ByteArrayInputStream(payload);
+		DataInputStream in = new DataInputStream(bytes);
+		byte type = in.readByte();
+		int count = in.readInt();
+		if (type == surveyItemsType) {
+			surveyItems.clear();
+			catalogue = null;
+		}
+		for (int i = 0; i < count; i++) {
+			switch (type) {
+			case scoresType:
+				scores.add(ScoreRecord.read(in));
+				break;
+			case remoteKeysType:
+				remoteKeys.put(in.readLong(), in.readLong());
+				break;
+			case pictureType:
+				StoredPicture picture = new StoredPicture(in.readInt(), readString(in), readString(in), in.readInt(),
+						in.readInt());
+				picture.dataLength = in.readInt();
+				picture.dataOffset = offset + payload.length - bytes.available();
+				in.skipBytes(picture.dataLength);
+				pictures.put(picture.id, picture);
+				break;
+			case statisticsType:
+				StoredPicture counted = pictures.get(in.readInt());
+				int used = in.readInt();
+				int chosen = in.readInt();
+				if (counted != null) {
+					counted.usedAsCorrect += used;
+					counted.chosenAsCorrect += chosen;
+				}
+				break;
+			case surveyItemsType:
+				surveyItems.add(readSurveyItem(in));
+				break;
+			case surveyResultsType:
+				surveyResults.add(new SurveyResult(readString(in), in.readInt(), in.readInt(), in.readInt(),
+						in.readLong()));
+				break;
+			case markType:
+				marks.put(in.readUTF(), in.readLong());
+				break;
+			default:
+				throw new IOException("Unknown frame type " + type);
+			}
+		}
+	}
+
+	/* read survey item as written by replaceSurveyItems */
+	protected SurveyItemDefinition readSurveyItem(DataInputStream in) throws IOException {
+		int id = in.readInt();
+		String type = readString(in);
+		int session = in.readInt();
+		int orderPriority = in.readInt();
+		String[] questions = new String[2];
+		String[][] answers = new String[2][];
+		String[] lefts = new String[2];
+		String[] rights = new String[2];
+		for (int language = 0; language < 2; language++) {
+			questions[language] = readString(in);
+			answers[language] = new String[in.readInt()];
+			for (int i = 0; i < answers[language].length; i++) {
+				answers[language][i] = readString(in);
+			}
+			lefts[language] = readString(in);
+			rights[language] = readString(in);
+		}
+		return new SurveyItemDefinition(id, type, session, orderPriority, questions[0], questions[1], answers[0],
+				answers[1], lefts[0], rights[0], lefts[1], rights[1]);
+	}
+
+	/* string which may be null */
+	protected static void writeString(DataOutputStream out, String text) throws IOException {
+		out.writeBoolean(text != null);
+		if (text != null) {
+			out.writeUTF(text);
+		}
+	}
+
+	protected static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/** inner classes **/
+
+	/* picture without its data, which stays in file */
+	protected static class StoredPicture {
+
+		protected final int id;
+		protected final String tagGerman;
+		protected final String tagEnglish;
+		protected int usedAsCorrect;
+		protected int chosenAsCorrect;
+		protected long dataOffset;
+		protected int dataLength;
+
+		protected StoredPicture(int id, String tagGerman, String tagEnglish, int usedAsCorrect,
+				int chosenAsCorrect) {
+			this.id = id;
+			this.tagGerman = tagGerman;
+			this.tagEnglish = tagEnglish;
+			this.usedAsCorrect = usedAsCorrect;
+			this.chosenAsCorrect = chosenAsCorrect;
+		}
+	}
+}
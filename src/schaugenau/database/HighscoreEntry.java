@@ -0,0 +1,78 @@
+package schaugenau.database;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * One line of a highscore list. Sequence is the Pkey of the scores table, or
+ * a local one for scores which are not yet replicated. Creation time is in
+ * milliseconds, zero for placeholders without date.
+ *
+ * @author agent
+ *
+ */
+
+public class HighscoreEntry implements Comparable<HighscoreEntry> {
+
+	/** fields **/
+	protected final long sequence;
+	protected final String name;
+	protected final int score;
+	protected final String gamestyle;
+	protected final long creationTime;
+
+	/** methods **/
+
+	/* constructor */
+	public HighscoreEntry(long sequence, String name, int score, String gamestyle, long creationTime) {
+		this.sequence = sequence;
+		this.name = name;
+		this.score = score;
+		this.gamestyle = gamestyle;
+		this.creationTime = creationTime;
+	}
+
+	/* better score first, newer first if equal like ORDER BY Score DESC, Pkey DESC */
+	@Override
+	public int compareTo(HighscoreEntry other) {
+		if (score != other.score) {
+			return score > other.score ? -1 : 1;
+		}
+		return sequence == other.sequence ? 0 : (sequence > other.sequence ? -1 : 1);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof HighscoreEntry && compareTo((HighscoreEntry) other) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * score + (int) (sequence ^ (sequence >>> 32));
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public String getGamestyle() {
+		return gamestyle;
+	}
+
+	public long getCreationTime() {
+		return creationTime;
+	}
+
+	/* whether score was made within the last hours, placeholders always are */
+	public boolean isOfHours(int hours, long now) {
+		return creationTime == 0 || creationTime > now - hours * 3600000L;
+	}
+}
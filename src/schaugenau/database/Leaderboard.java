@@ -0,0 +1,235 @@
+package schaugenau.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * In-memory leaderboard. It is seeded once from the scores table and then
+ * kept up to date with every saved score. Ranks are counted by a Fenwick tree
+ * over score values, one for all and one per gamestyle, the best entries are
+ * kept in a sorted set. Scores of the last hours are served by a sliding
+ * window per requested count of hours.
+ *
+ * @author agent
+ *
+ */
+
+public class Leaderboard {
+
+	/** fields **/
+	protected final ScoreCounter allCounter;
+	protected final Map<String, ScoreCounter> gamestyleCounters;
+	protected final TreeSet<HighscoreEntry> entries;
+
+	/* dated entries, oldest first, and placeholders without date */
+	protected final LinkedList<HighscoreEntry> byTime;
+	protected final List<HighscoreEntry> undated;
+
+	/* hours -> sliding window */
+	protected final Map<Integer, ScoreWindow> windows;
+
+	protected long maxSequence;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(Leaderboard.class);
+
+	/** methods **/
+
+	/* constructor */
+	public Leaderboard() {
+		this.allCounter = new ScoreCounter();
+		this.gamestyleCounters = new HashMap<String, ScoreCounter>();
+		this.entries = new TreeSet<HighscoreEntry>();
+		this.byTime = new LinkedList<HighscoreEntry>();
+		this.undated = new ArrayList<HighscoreEntry>();
+		this.windows = new HashMap<Integer, ScoreWindow>();
+		this.maxSequence = 0;
+	}
+
+	/* load all scores of repository */
+	public synchronized void seed(ScoreRepository repository) throws SQLException {
+		long start = System.nanoTime();
+		for (HighscoreEntry entry : repository.loadEntries()) {
+			add(entry);
+		}
+		logger.info("Seeded leaderboard with " + entries.size() + " scores in " + (System.nanoTime() - start) / 1000000
+				+ "ms");
+	}
+
+	/* add new score, which gets next local sequence */
+	public synchronized HighscoreEntry add(String name, int score, String gamestyle, long creationTime) {
+		HighscoreEntry entry = new HighscoreEntry(maxSequence + 1, name, score, gamestyle, creationTime);
+		add(entry);
+		return entry;
+	}
+
+	/* add entry */
+	protected void add(HighscoreEntry entry) {
+		if (!entries.add(entry)) {
+			return;
+		}
+		maxSequence = Math.max(maxSequence, entry.getSequence());
+		allCounter.add(entry.getScore());
+		if (entry.getGamestyle() != null) {
+			ScoreCounter counter = gamestyleCounters.get(entry.getGamestyle());
+			if (counter == null) {
+				counter = new ScoreCounter();
+				gamestyleCounters.put(entry.getGamestyle(), counter);
+			}
+			counter.add(entry.getScore());
+		}
+
+		/* scores arrive mostly in order of time */
+		if (entry.getCreationTime() == 0) {
+			undated.add(entry);
+		} else if (byTime.isEmpty() || byTime.getLast().getCreationTime() <= entry.getCreationTime()) {
+			byTime.addLast(entry);
+		} else {
+			int i = byTime.size();
+			Iterator<HighscoreEntry> iterator = byTime.descendingIterator();
+			while (iterator.hasNext() && iterator.next().getCreationTime() > entry.getCreationTime()) {
+				i--;
+			}
+			byTime.add(i, entry);
+		}
+
+		long now = System.currentTimeMillis();
+		for (ScoreWindow window : windows.values()) {
+			window.add(entry, now);
+		}
+	}
+
+	/* rank is one plus count of strictly better scores, gamestyle null for all */
+	public synchronized int getRank(int score, String gamestyle) {
+		if (gamestyle == null) {
+			return 1 + allCounter.countAbove(score);
+		}
+		ScoreCounter counter = gamestyleCounters.get(gamestyle);
+		return 1 + (counter == null ? 0 : counter.countAbove(score));
+	}
+
+	/* rank among scores of last hours */
+	public synchronized int getRankOfHours(int score, String gamestyle, int hours) {
+		return getWindow(hours).getRank(score, gamestyle, System.currentTimeMillis());
+	}
+
+	/* best entries */
+	public synchronized List<HighscoreEntry> getBest(int count) {
+		List<HighscoreEntry> best = new ArrayList<HighscoreEntry>(count);
+		for (HighscoreEntry entry : entries) {
+			if (best.size() >= count) {
+				break;
+			}
+			best.add(entry);
+		}
+		return best;
+	}
+
+	/* best entries of last hours */
+	public synchronized List<HighscoreEntry> getBestOfHours(int count, int hours) {
+		return getWindow(hours).getBest(count, System.currentTimeMillis());
+	}
+
+	/* get count of entries */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/* get window of hours, filled from entries at first request */
+	protected ScoreWindow getWindow(int hours) {
+		ScoreWindow window = windows.get(hours);
+		if (window == null) {
+			long now = System.currentTimeMillis();
+			window = new ScoreWindow(hours, now);
+			for (HighscoreEntry entry : undated) {
+				window.add(entry, now);
+			}
+
+			/* newest dated entries are at end of list */
+			LinkedList<HighscoreEntry> ofHours = new LinkedList<HighscoreEntry>();
+			Iterator<HighscoreEntry> iterator = byTime.descendingIterator();
+			while (iterator.hasNext()) {
+				HighscoreEntry entry = iterator.next();
+				if (!entry.isOfHours(hours, now)) {
+					break;
+				}
+				ofHours.addFirst(entry);
+			}
+			for (HighscoreEntry entry : ofHours) {
+				window.add(entry, now);
+			}
+			windows.put(hours, window);
+		}
+		return window;
+	}
+
+	/** inner classes **/
+
+	/* Fenwick tree counting scores per value, negative scores count as zero */
+	protected static class ScoreCounter {
+
+		protected long[] tree = new long[1024 + 1];
+		protected long total = 0;
+
+		/* count one score */
+		protected void add(int score) {
+			int index = Math.max(0, score) + 1;
+			while (index >= tree.length) {
+				grow();
+			}
+			for (int i = index; i < tree.length; i += i & (-i)) {
+				tree[i]++;
+			}
+			total++;
+		}
+
+		/* remove one counted score */
+		protected void remove(int score) {
+			int index = Math.max(0, score) + 1;
+			if (index >= tree.length) {
+				return;
+			}
+			for (int i = index; i < tree.length; i += i & (-i)) {
+				tree[i]--;
+			}
+			total--;
+		}
+
+		/* count of scores lower or equal given one */
+		protected long countAtMost(int score) {
+			if (score < 0) {
+				return 0;
+			}
+			long count = 0;
+			for (int i = Math.min(score + 1, tree.length - 1); i > 0; i -= i & (-i)) {
+				count += tree[i];
+			}
+			return count;
+		}
+
+		/* count of scores strictly greater than given one */
+		protected int countAbove(int score) {
+			return (int) (total - countAtMost(score));
+		}
+
+		/* double size, new top node covers all old values */
+		protected void grow() {
+			int size = tree.length - 1;
+			long[] grown = new long[2 * size + 1];
+			System.arraycopy(tree, 0, grown, 0, tree.length);
+			grown[2 * size] = tree[size];
+			tree = grown;
+		}
+	}
+}
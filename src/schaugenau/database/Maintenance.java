@@ -4,67 +4,149 @@ package schaugenau.database;
  * Distributed under the MIT License. (See accompanying file LICENSE or copy at
  * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
  * 
+ * Maintenance jobs on the database server. Every job is a set-based statement
+ * run over ranges of keys within one transaction, so progress can be
+ * reported and a failure leaves nothing half done. A dry run only counts the
+ * rows a job would change.
+ * 
  * @author Kevin Schmidt
  *
  */
 
-import java.io.IOException;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import org.apache.log4j.Logger;
+
 public class Maintenance {
+
+	/** defines **/
+	protected static final int keyRangeSize = 5000;
+	protected static final int placeholderScores = 30;
+	protected static final String pictureTable = "pictures";
+	protected static final String scoreTable = "scores";
+
+	/** fields **/
 	public static int CurrentID;
 	public static String CurrentTag;
-	private static Access dbaccess = null;
-	private static String queryString;
 
-	/* ScoreOperations */
-	protected ScoreOperations scoreOperation;
-	protected PictureOperations pictureOperation;
+	/* only count rows, change nothing */
+	protected final boolean dryRun;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(Maintenance.class);
 
+	/** methods **/
+
+	/* constructor */
 	public Maintenance() {
-		/* database */
-		scoreOperation = new ScoreOperations();
-		pictureOperation = new PictureOperations();
+		this(false);
 	}
 
-	// Sets all pictures TagCount back to 1
-	public void resetTagCount() throws ClassNotFoundException, SQLException, IOException {
-		dbaccess = new Access();
-		dbaccess.createConnection();
-		for (int i = 0; i < (pictureOperation.getMaxID()); i++) {
-			queryString = "UPDATE pictures SET TagCount = 1 WHERE ID = '" + i + "'";
-			dbaccess.st.executeUpdate(queryString);
-		}
-		dbaccess.con.close();
+	/* constructor, dry run only counts rows */
+	public Maintenance(boolean dryRun) {
+		this.dryRun = dryRun;
 	}
 
-	// Sets all pictures Views back to 0
-	public void resetViews() throws ClassNotFoundException, SQLException, IOException {
-		dbaccess = new Access();
-		dbaccess.createConnection();
-		for (int i = 0; i < (pictureOperation.getMaxID()); i++) {
-			queryString = "UPDATE pictures SET Views = 0 WHERE ID = '" + i + "'";
-			dbaccess.st.executeUpdate(queryString);
-		}
-		dbaccess.con.close();
+	// Sets all pictures TagCount back to 1, returns count of rows
+	public int resetTagCount() throws ClassNotFoundException, SQLException {
+		return run("resetTagCount", "UPDATE " + pictureTable + " SET TagCount = 1", pictureTable, "ID",
+				"TagCount <> 1");
+	}
+
+	// Sets how often all pictures were shown and chosen back to 0, returns count of rows
+	public int resetViews() throws ClassNotFoundException, SQLException {
+		return run("resetViews", "UPDATE " + pictureTable + " SET UsedAsCorrect = 0, ChosenAsCorrect = 0",
+				pictureTable, "ID", "UsedAsCorrect <> 0 OR ChosenAsCorrect <> 0");
+	}
+
+	// Deletes all Highscores that are not preset (= empty), returns count of rows
+	public int resetHighscore() throws ClassNotFoundException, SQLException {
+		return run("resetHighscore", "DELETE FROM " + scoreTable, scoreTable, "Pkey", "Pkey > " + placeholderScores);
 	}
 
-	// Deletes all Highscores that are not preset (= empty)
-	public void resetHighscore() throws ClassNotFoundException, SQLException, IOException {
-		String Gamestyle = "choooseone";
-		String table = Gamestyle + "scores";
-		dbaccess = new Access();
-		dbaccess.createConnection();
-
-		for (int i = 31; i < (scoreOperation.getMaxPkey()); i++) { // First
-																	// 30
-																	// scores
-																	// are
-																	// placeholder
-			queryString = "DELETE FROM " + table + "WHERE Pkey = '" + i + "'";
-			dbaccess.st.executeUpdate(queryString);
+	/*
+	 * run statement on rows matching condition, range by range of key in one
+	 * transaction, returns count of affected rows
+	 */
+	protected int run(String job, String statement, String table, String key, String condition)
+			throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Access dbaccess = new Access();
+		try {
+			dbaccess.createConnection();
+
+			/* find rows to change */
+			dbaccess.rs = dbaccess
+					.prepare("SELECT COUNT(*), MIN(" + key + "), MAX(" + key + ") FROM " + table + " WHERE " + condition)
+					.executeQuery();
+			dbaccess.rs.next();
+			int total = dbaccess.rs.getInt(1);
+			long minKey = dbaccess.rs.getLong(2);
+			long maxKey = dbaccess.rs.getLong(3);
+			dbaccess.rs.close();
+			dbaccess.rs = null;
+			if (dryRun || total == 0) {
+				logger.info(job + ": " + total + " rows " + (dryRun ? "would be changed (dry run)" : "to change"));
+				return dryRun ? total : 0;
+			}
+
+			/* change all or nothing */
+			int affected = 0;
+			dbaccess.con.setAutoCommit(false);
+			try {
+				PreparedStatement psmnt = dbaccess.prepare(
+						statement + " WHERE " + key + " >= ? AND " + key + " < ? AND (" + condition + ")");
+				for (long from = minKey; from <= maxKey; from += keyRangeSize) {
+					psmnt.setLong(1, from);
+					psmnt.setLong(2, from + keyRangeSize);
+					affected += psmnt.executeUpdate();
+					logger.info(job + ": " + affected + " of " + total + " rows");
+				}
+				dbaccess.con.commit();
+			} catch (SQLException e) {
+				dbaccess.con.rollback();
+				throw e;
+			} finally {
+				dbaccess.con.setAutoCommit(true);
+			}
+			logger.info(job + ": changed " + affected + " rows in " + (System.nanoTime() - start) / 1000000 + "ms");
+			return affected;
+		} finally {
+			dbaccess.closeConnection();
 		}
-		dbaccess.con.close();
 	}
 
+	/* run jobs given as arguments */
+	public static void main(String[] args) throws ClassNotFoundException, SQLException {
+		boolean dryRun = false;
+		int jobs = 0;
+		for (String arg : args) {
+			if (arg.equals("--dry-run")) {
+				dryRun = true;
+			} else {
+				jobs++;
+			}
+		}
+		if (jobs == 0) {
+			System.out.println("Usage: Maintenance [--dry-run] resetTagCount|resetViews|resetHighscore ...");
+			return;
+		}
+		Maintenance maintenance = new Maintenance(dryRun);
+		try {
+			for (String arg : args) {
+				if (arg.equals("resetTagCount")) {
+					maintenance.resetTagCount();
+				} else if (arg.equals("resetViews")) {
+					maintenance.resetViews();
+				} else if (arg.equals("resetHighscore")) {
+					maintenance.resetHighscore();
+				} else if (!arg.equals("--dry-run")) {
+					System.out.println("Unknown job " + arg);
+				}
+			}
+		} finally {
+			Access.shutdown();
+		}
+	}
 }
@@ -0,0 +1,347 @@
+package schaugenau.database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Repositories on the database server, using pooled connections of Access.
+ *
+ * @author agent
+ *
+ */
+
+public class MySqlRepository implements ScoreRepository, PictureRepository, SurveyRepository {
+
+	/** defines **/
+	protected static final String scoreTable = "scores";
+	protected static final String pictureTable = "pictures";
+	protected static final String surveyItemTable = "surveyitems";
+	protected static final String surveyResultTable = "surveyresults";
+
+	/** methods **/
+
+	/* scores */
+
+	@Override
+	public long[] insertScores(List<ScoreRecord> records) throws SQLException {
+		long[] keys = new long[records.size()];
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess.con.prepareStatement("INSERT INTO " + scoreTable + " SET Score = ?, "
+					+ "Name = ?, CreationTime = ?, Gamestyle = ?, PlayedTime = ?, MaxMultiplicator = ?, "
+					+ "AvMultiplicator = ?, CorrectPictures = ?, IncorrectPictures = ?", Statement.RETURN_GENERATED_KEYS);
+			dbaccess.con.setAutoCommit(false);
+			try {
+				for (ScoreRecord record : records) {
+					psmnt.setInt(1, record.getScore());
+					psmnt.setString(2, record.getName());
+					psmnt.setTimestamp(3, new Timestamp(record.getCreationTime()));
+					psmnt.setString(4, record.getGamestyle());
+					psmnt.setInt(5, record.getPlayedTime());
+					psmnt.setInt(6, record.getMaxMultiplicator());
+					psmnt.setDouble(7, record.getAvMultiplicator());
+					psmnt.setInt(8, record.getCorrectPictures());
+					psmnt.setInt(9, record.getIncorrectPictures());
+					psmnt.addBatch();
+				}
+				psmnt.executeBatch();
+				ResultSet rs = psmnt.getGeneratedKeys();
+				for (int i = 0; i < keys.length && rs.next(); i++) {
+					keys[i] = rs.getLong(1);
+				}
+				rs.close();
+				dbaccess.con.commit();
+			} catch (SQLException e) {
+				dbaccess.con.rollback();
+				throw e;
+			} finally {
+				psmnt.close();
+				dbaccess.con.setAutoCommit(true);
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+		return keys;
+	}
+
+	/* key of stored score with same name, gamestyle, score, played time and creation time, zero if none */
+	public long findScore(ScoreRecord record) throws SQLException {
+		Access dbaccess = borrow();
+		try {
+
+			/* creation time is stored in seconds */
+			PreparedStatement psmnt = dbaccess.prepare("SELECT Pkey FROM " + scoreTable + " WHERE Name = ? AND "
+					+ "Gamestyle = ? AND Score = ? AND PlayedTime = ? AND CreationTime BETWEEN ? AND ? "
+					+ "ORDER BY Pkey ASC LIMIT 1");
+			psmnt.setString(1, record.getName());
+			psmnt.setString(2, record.getGamestyle());
+			psmnt.setInt(3, record.getScore());
+			psmnt.setInt(4, record.getPlayedTime());
+			psmnt.setTimestamp(5, new Timestamp(record.getCreationTime() - 1000));
+			psmnt.setTimestamp(6, new Timestamp(record.getCreationTime() + 1000));
+			dbaccess.rs = psmnt.executeQuery();
+			return dbaccess.rs.next() ? dbaccess.rs.getLong(1) : 0;
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	@Override
+	public List<HighscoreEntry> loadEntries() throws SQLException {
+		List<HighscoreEntry> entries = new ArrayList<HighscoreEntry>();
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess.prepare("SELECT Pkey, Name, Score, Gamestyle, "
+					+ "UNIX_TIMESTAMP(CreationTime) FROM " + scoreTable + " ORDER BY CreationTime ASC, Pkey ASC");
+			dbaccess.rs = psmnt.executeQuery();
+			while (dbaccess.rs.next()) {
+				entries.add(new HighscoreEntry(dbaccess.rs.getLong(1), dbaccess.rs.getString(2), dbaccess.rs.getInt(3),
+						dbaccess.rs.getString(4), dbaccess.rs.getLong(5) * 1000));
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+		return entries;
+	}
+
+	@Override
+	public long getMaxKey() throws SQLException {
+		Access dbaccess = borrow();
+		try {
+			dbaccess.rs = dbaccess.prepare("SELECT MAX(Pkey) FROM " + scoreTable).executeQuery();
+			return dbaccess.rs.next() ? dbaccess.rs.getLong(1) : 0;
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/* pictures */
+
+	@Override
+	public List<String> loadTags(String column) throws SQLException {
+		List<String> tags = new ArrayList<String>();
+		Access dbaccess = borrow();
+		try {
+			dbaccess.rs = dbaccess.prepare("SELECT DISTINCT " + toTagColumn(column) + " FROM " + pictureTable)
+					.executeQuery();
+			while (dbaccess.rs.next()) {
+				if (dbaccess.rs.getString(1) != null) {
+					tags.add(dbaccess.rs.getString(1));
+				}
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+		return tags;
+	}
+
+	@Override
+	public List<Integer> loadIDs(String column, String tag) throws SQLException {
+		List<Integer> IDs = new ArrayList<Integer>();
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess
+					.prepare("SELECT ID FROM " + pictureTable + " WHERE " + toTagColumn(column) + " = ?");
+			psmnt.setString(1, tag);
+			dbaccess.rs = psmnt.executeQuery();
+			while (dbaccess.rs.next()) {
+				IDs.add(dbaccess.rs.getInt(1));
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+		return IDs;
+	}
+
+	@Override
+	public List<Integer> loadAllIDs() throws SQLException {
+		List<Integer> IDs = new ArrayList<Integer>();
+		Access dbaccess = borrow();
+		try {
+			dbaccess.rs = dbaccess.prepare("SELECT ID FROM " + pictureTable + " ORDER BY ID ASC").executeQuery();
+			while (dbaccess.rs.next()) {
+				IDs.add(dbaccess.rs.getInt(1));
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+		return IDs;
+	}
+
+	@Override
+	public PictureRecord loadPicture(int ID) throws SQLException {
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess.prepare("SELECT TagGerman, TagEnglish, UsedAsCorrect, ChosenAsCorrect, "
+					+ "Picture FROM " + pictureTable + " WHERE ID = ?");
+			psmnt.setInt(1, ID);
+			dbaccess.rs = psmnt.executeQuery();
+			if (!dbaccess.rs.next()) {
+				return null;
+			}
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			InputStream is = dbaccess.rs.getBinaryStream(5);
+			try {
+				byte[] buffer = new byte[16384];
+				int read;
+				while ((read = is.read(buffer)) > 0) {
+					data.write(buffer, 0, read);
+				}
+			} finally {
+				is.close();
+			}
+			return new PictureRecord(ID, dbaccess.rs.getString(1), dbaccess.rs.getString(2), dbaccess.rs.getInt(3),
+					dbaccess.rs.getInt(4), data.toByteArray());
+		} catch (IOException e) {
+			throw new SQLException("Could not read picture " + ID, e);
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	@Override
+	public int insertPicture(PictureRecord picture) throws SQLException {
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess.con.prepareStatement("INSERT INTO " + pictureTable
+					+ " SET TagGerman = ?, TagEnglish = ?, UsedAsCorrect = ?, ChosenAsCorrect = ?, Picture = ?"
+					+ (picture.getId() > 0 ? ", ID = ?" : ""), Statement.RETURN_GENERATED_KEYS);
+			try {
+				psmnt.setString(1, picture.getTagGerman());
+				psmnt.setString(2, picture.getTagEnglish());
+				psmnt.setInt(3, picture.getUsedAsCorrect());
+				psmnt.setInt(4, picture.getChosenAsCorrect());
+				psmnt.setBytes(5, picture.getData());
+				if (picture.getId() > 0) {
+					psmnt.setInt(6, picture.getId());
+				}
+				psmnt.executeUpdate();
+				ResultSet rs = psmnt.getGeneratedKeys();
+				try {
+					return rs.next() ? rs.getInt(1) : picture.getId();
+				} finally {
+					rs.close();
+				}
+			} finally {
+				psmnt.close();
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	@Override
+	public void addStatistics(Map<Integer, int[]> deltas) throws SQLException {
+		Access dbaccess = borrow();
+		try {
+			dbaccess.con.setAutoCommit(false);
+			try {
+				PreparedStatement psmnt = dbaccess.prepare("UPDATE " + pictureTable + " SET UsedAsCorrect = "
+						+ "UsedAsCorrect + ?, ChosenAsCorrect = ChosenAsCorrect + ? WHERE ID = ?");
+				for (Map.Entry<Integer, int[]> entry : deltas.entrySet()) {
+					psmnt.setInt(1, entry.getValue()[0]);
+					psmnt.setInt(2, entry.getValue()[1]);
+					psmnt.setInt(3, entry.getKey());
+					psmnt.addBatch();
+				}
+				psmnt.executeBatch();
+				dbaccess.con.commit();
+			} catch (SQLException e) {
+				dbaccess.con.rollback();
+				throw e;
+			} finally {
+				dbaccess.con.setAutoCommit(true);
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/* survey */
+
+	@Override
+	public SurveyCatalogue loadCatalogue() throws SQLException {
+		List<SurveyItemDefinition> items = new ArrayList<SurveyItemDefinition>();
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess.prepare("SELECT Pkey, Type, SessionID, OrderPriority, "
+					+ "QuestionEN, QuestionDE, AnswerM1EN, AnswerM2EN, AnswerM3EN, AnswerM1DE, AnswerM2DE, AnswerM3DE, "
+					+ "AnswerLikertLeftEN, AnswerLikertRightEN, AnswerLikertLeftDE, AnswerLikertRightDE FROM "
+					+ surveyItemTable + " ORDER BY SessionID ASC, OrderPriority ASC");
+			dbaccess.rs = psmnt.executeQuery();
+			while (dbaccess.rs.next()) {
+				items.add(new SurveyItemDefinition(dbaccess.rs.getInt(1), dbaccess.rs.getString(2),
+						dbaccess.rs.getInt(3), dbaccess.rs.getInt(4), dbaccess.rs.getString(5),
+						dbaccess.rs.getString(6),
+						new String[] { dbaccess.rs.getString(7), dbaccess.rs.getString(8), dbaccess.rs.getString(9) },
+						new String[] { dbaccess.rs.getString(10), dbaccess.rs.getString(11),
+								dbaccess.rs.getString(12) },
+						dbaccess.rs.getString(13), dbaccess.rs.getString(14), dbaccess.rs.getString(15),
+						dbaccess.rs.getString(16)));
+			}
+		} finally {
+			dbaccess.closeConnection();
+		}
+		return new SurveyCatalogue(items, System.currentTimeMillis());
+	}
+
+	@Override
+	public void saveResult(SurveyResult result) throws SQLException {
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess.prepare("INSERT INTO " + surveyResultTable + " SET Gamestyle = ?, "
+					+ "Score = ?, ItemID = ?, Choice = ?, Participant = ?");
+			psmnt.setString(1, result.getGamestyle());
+			psmnt.setInt(2, result.getScore());
+			psmnt.setInt(3, result.getItemID());
+			psmnt.setInt(4, result.getChoice());
+			psmnt.setLong(5, result.getParticipant());
+			psmnt.executeUpdate();
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/* whether result of participant for item is stored */
+	public boolean hasResult(SurveyResult result) throws SQLException {
+		Access dbaccess = borrow();
+		try {
+			PreparedStatement psmnt = dbaccess.prepare("SELECT COUNT(*) FROM " + surveyResultTable
+					+ " WHERE Participant = ? AND ItemID = ?");
+			psmnt.setLong(1, result.getParticipant());
+			psmnt.setInt(2, result.getItemID());
+			dbaccess.rs = psmnt.executeQuery();
+			return dbaccess.rs.next() && dbaccess.rs.getInt(1) > 0;
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/* borrow connection, missing driver is reported as SQLException */
+	protected Access borrow() throws SQLException {
+		Access dbaccess = new Access();
+		try {
+			dbaccess.createConnection();
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("Database driver not found", e);
+		}
+		return dbaccess;
+	}
+
+	/* column of tags, never taken from outside */
+	protected static String toTagColumn(String column) {
+		return "TagGerman".equals(column) ? "TagGerman" : "TagEnglish";
+	}
+}
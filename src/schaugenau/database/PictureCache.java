@@ -0,0 +1,429 @@
+package schaugenau.database;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Local on-disk cache of pictures. Encoded images are stored content
+ * addressed by their SHA-1 hash, an index maps picture IDs to hash and tags.
+ * If the cache grows above its size cap, least recently used pictures are
+ * evicted. Without database the cache alone can serve pictures and tags.
+ * Changes are appended to the index file as rows, a row of an ID only
+ * removes it. The index is rewritten once it holds many outdated rows and
+ * when the cache is closed. Lookups by ID, tag and hash use maps.
+ *
+ * @author agent
+ *
+ */
+
+public class PictureCache {
+
+	/** defines **/
+	protected static final String indexFileName = "index.csv";
+	protected static final String blobPostfix = ".img";
+	protected static final int logInterval = 20;
+	protected static final int minCompactRows = 64;
+
+	/** fields **/
+	protected final File directory;
+	protected final long maxBytes;
+
+	/* picture ID -> entry, in order of access */
+	protected final LinkedHashMap<Integer, Entry> entries;
+	protected long totalBytes;
+
+	/* lookups which do not touch order of access */
+	protected final Map<Integer, Entry> byID;
+	protected final Map<String, Set<Integer>> byTagGerman;
+	protected final Map<String, Set<Integer>> byTagEnglish;
+	protected final Map<String, Integer> hashUses;
+
+	/* appended index rows, count of rows in index file */
+	protected CSVWriter indexWriter;
+	protected int indexRows;
+
+	/* metrics */
+	protected long hits;
+	protected long misses;
+	protected long evictions;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(PictureCache.class);
+
+	/** methods **/
+
+	/* constructor */
+	public PictureCache(File directory, long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.entries = new LinkedHashMap<Integer, Entry>(64, 0.75f, true);
+		this.totalBytes = 0;
+		this.byID = new HashMap<Integer, Entry>();
+		this.byTagGerman = new HashMap<String, Set<Integer>>();
+		this.byTagEnglish = new HashMap<String, Set<Integer>>();
+		this.hashUses = new HashMap<String, Integer>();
+		if (!directory.exists() && !directory.mkdirs()) {
+			logger.warn("Could not create picture cache at " + directory.getPath());
+		}
+		loadIndex();
+	}
+
+	/* get encoded image of picture, null if not cached */
+	public synchronized byte[] get(int ID) {
+		Entry entry = entries.get(ID);
+		byte[] data = null;
+		if (entry != null) {
+			try {
+				data = Files.readAllBytes(getBlobFile(entry.hash).toPath());
+			} catch (IOException e) {
+
+				/* file vanished, forget entry */
+				logger.warn("Cached picture " + ID + " not readable: " + e.getMessage());
+				remove(ID);
+			}
+		}
+		if (data != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		if ((hits + misses) % logInterval == 0) {
+			logger.info(getStats());
+		}
+		return data;
+	}
+
+	/* get metadata of picture without touching its recency, null if not cached */
+	public synchronized Entry getEntry(int ID) {
+		return byID.get(ID);
+	}
+
+	/* store picture, evicts least recently used ones if cache is full */
+	public synchronized void put(int ID, String tagGerman, String tagEnglish, byte[] data) throws IOException {
+		if (data == null || data.length == 0 || data.length > maxBytes) {
+			return;
+		}
+		String hash = hash(data);
+
+		/* same picture again, e.g. fetched by prefetch and on demand, only counts as used */
+		Entry old = entries.get(ID);
+		if (old != null && old.hash.equals(hash) && Objects.equals(old.tagGerman, tagGerman)
+				&& Objects.equals(old.tagEnglish, tagEnglish)) {
+			return;
+		}
+
+		/* old entry is unlinked first, its blob may be the one of new content */
+		if (old != null) {
+			entries.remove(ID);
+			unlink(old);
+			appendIndex(new String[] { Integer.toString(ID) });
+		}
+
+		/* write blob only if content is not already there */
+		File blob = getBlobFile(hash);
+		if (!blob.exists()) {
+			File temp = new File(directory, hash + ".tmp");
+			PictureOperations.writePicture(temp, data);
+			Files.move(temp.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		Entry entry = new Entry(ID, hash, data.length, tagGerman, tagEnglish);
+		add(entry);
+		appendIndex(toRow(entry));
+		if (old != null && !old.hash.equals(hash)) {
+			deleteUnused(old.hash);
+		}
+		evict();
+	}
+
+	/* get distinct tags of cached pictures */
+	public synchronized List<String> getTags(String tagColumn) {
+		return new ArrayList<String>(getTagMap(tagColumn).keySet());
+	}
+
+	/* get IDs of cached pictures with tag */
+	public synchronized List<Integer> getIDs(String tagColumn, String tag) {
+		Set<Integer> IDs = getTagMap(tagColumn).get(tag);
+		return IDs == null ? new ArrayList<Integer>() : new ArrayList<Integer>(IDs);
+	}
+
+	/* get count of cached pictures */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/* rewrite index without outdated rows */
+	public synchronized void close() {
+		try {
+			saveIndex();
+		} catch (IOException e) {
+			logger.warn("Could not save picture cache index: " + e.getMessage());
+		}
+	}
+
+	/* get counters as readable string */
+	public synchronized String getStats() {
+		long lookups = hits + misses;
+		return "Picture cache: " + entries.size() + " pictures, " + totalBytes / 1024 + " of " + maxBytes / 1024
+				+ " KB, hits " + hits + ", misses " + misses + ", hit rate "
+				+ (lookups == 0 ? 0 : (100 * hits / lookups)) + "%, evictions " + evictions;
+	}
+
+	/* drop least recently used pictures until size fits */
+	protected void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (totalBytes > maxBytes && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			iterator.remove();
+			forget(entry);
+			appendIndex(new String[] { Integer.toString(entry.ID) });
+			evictions++;
+			logger.debug("Evicted picture " + entry.ID + " from cache");
+		}
+	}
+
+	/* remove entry of picture */
+	protected void remove(int ID) {
+		Entry entry = entries.remove(ID);
+		if (entry != null) {
+			forget(entry);
+			appendIndex(new String[] { Integer.toString(ID) });
+		}
+	}
+
+	/* add entry to all lookups */
+	protected void add(Entry entry) {
+		entries.put(entry.ID, entry);
+		byID.put(entry.ID, entry);
+		addTag(byTagGerman, entry.tagGerman, entry.ID);
+		addTag(byTagEnglish, entry.tagEnglish, entry.ID);
+		Integer uses = hashUses.get(entry.hash);
+		hashUses.put(entry.hash, uses == null ? 1 : uses + 1);
+		totalBytes += entry.size;
+	}
+
+	/* remove entry, which is already out of entries, from other lookups and delete unused blob */
+	protected void forget(Entry entry) {
+		unlink(entry);
+		deleteUnused(entry.hash);
+	}
+
+	/* delete blob of hash if no entry uses it */
+	protected void deleteUnused(String hash) {
+
+		/* same image may be stored under several IDs */
+		if (hashUses.containsKey(hash)) {
+			return;
+		}
+		File blob = getBlobFile(hash);
+		if (blob.exists() && !blob.delete()) {
+			logger.warn("Could not delete cached picture " + blob.getName());
+		}
+	}
+
+	/* remove entry, which is already out of entries, from other lookups */
+	protected void unlink(Entry entry) {
+		byID.remove(entry.ID);
+		removeTag(byTagGerman, entry.tagGerman, entry.ID);
+		removeTag(byTagEnglish, entry.tagEnglish, entry.ID);
+		totalBytes -= entry.size;
+		Integer uses = hashUses.get(entry.hash);
+		if (uses != null && uses > 1) {
+			hashUses.put(entry.hash, uses - 1);
+		} else {
+			hashUses.remove(entry.hash);
+		}
+	}
+
+	/* get map of tags of column, "TagGerman" or "TagEnglish" */
+	protected Map<String, Set<Integer>> getTagMap(String tagColumn) {
+		return "TagGerman".equals(tagColumn) ? byTagGerman : byTagEnglish;
+	}
+
+	/* add ID to tag */
+	protected static void addTag(Map<String, Set<Integer>> tags, String tag, int ID) {
+		if (tag == null) {
+			return;
+		}
+		Set<Integer> IDs = tags.get(tag);
+		if (IDs == null) {
+			IDs = new LinkedHashSet<Integer>();
+			tags.put(tag, IDs);
+		}
+		IDs.add(ID);
+	}
+
+	/* remove ID from tag, tag is dropped with its last ID */
+	protected static void removeTag(Map<String, Set<Integer>> tags, String tag, int ID) {
+		if (tag == null) {
+			return;
+		}
+		Set<Integer> IDs = tags.get(tag);
+		if (IDs != null && IDs.remove(ID) && IDs.isEmpty()) {
+			tags.remove(tag);
+		}
+	}
+
+	/* read index, oldest entries first */
+	protected void loadIndex() {
+		File index = new File(directory, indexFileName);
+		if (!index.exists()) {
+			return;
+		}
+		try {
+			CSVReader reader = new CSVReader(new FileReader(index));
+			try {
+				String[] row;
+				while ((row = reader.readNext()) != null) {
+					indexRows++;
+
+					/* later rows of an ID replace earlier ones, a row of ID only removes it */
+					if (row.length == 1 && !row[0].isEmpty()) {
+						Entry removed = entries.remove(Integer.parseInt(row[0]));
+						if (removed != null) {
+							unlink(removed);
+						}
+						continue;
+					}
+					if (row.length < 5) {
+						continue;
+					}
+					Entry entry = new Entry(Integer.parseInt(row[0]), row[1], Long.parseLong(row[2]),
+							row[3].isEmpty() ? null : row[3], row[4].isEmpty() ? null : row[4]);
+					Entry replaced = entries.remove(entry.ID);
+					if (replaced != null) {
+						unlink(replaced);
+					}
+					if (getBlobFile(entry.hash).exists()) {
+						add(entry);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			logger.info("Loaded picture cache index with " + entries.size() + " pictures");
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("Could not read picture cache index: " + e.getMessage());
+		}
+	}
+
+	/* append row to index, which is rewritten once most of its rows are outdated */
+	protected void appendIndex(String[] row) {
+		try {
+			if (indexRows >= minCompactRows && indexRows > 2 * entries.size()) {
+				saveIndex();
+				return;
+			}
+			if (indexWriter == null) {
+				indexWriter = new CSVWriter(new FileWriter(new File(directory, indexFileName), true));
+			}
+			indexWriter.writeNext(row);
+			indexWriter.flush();
+			indexRows++;
+		} catch (IOException e) {
+			logger.warn("Could not write picture cache index: " + e.getMessage());
+		}
+	}
+
+	/* write index to temporary file and replace old one */
+	protected void saveIndex() throws IOException {
+		if (indexWriter != null) {
+			indexWriter.close();
+			indexWriter = null;
+		}
+		File temp = new File(directory, indexFileName + ".tmp");
+		CSVWriter writer = new CSVWriter(new FileWriter(temp));
+		try {
+			for (Entry entry : entries.values()) {
+				writer.writeNext(toRow(entry));
+			}
+		} finally {
+			writer.close();
+		}
+		Files.move(temp.toPath(), new File(directory, indexFileName).toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		indexRows = entries.size();
+	}
+
+	/* row of entry in index */
+	protected static String[] toRow(Entry entry) {
+		return new String[] { Integer.toString(entry.ID), entry.hash, Long.toString(entry.size),
+				entry.tagGerman == null ? "" : entry.tagGerman, entry.tagEnglish == null ? "" : entry.tagEnglish };
+	}
+
+	/* file of image with hash */
+	protected File getBlobFile(String hash) {
+		return new File(directory, hash + blobPostfix);
+	}
+
+	/* hex SHA-1 of data */
+	protected static String hash(byte[] data) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+			StringBuilder builder = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+				builder.append(Character.forDigit(b & 0xF, 16));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** inner classes **/
+
+	/* immutable metadata of cached picture */
+	public static class Entry {
+
+		protected final int ID;
+		protected final String hash;
+		protected final long size;
+		protected final String tagGerman;
+		protected final String tagEnglish;
+
+		protected Entry(int ID, String hash, long size, String tagGerman, String tagEnglish) {
+			this.ID = ID;
+			this.hash = hash;
+			this.size = size;
+			this.tagGerman = tagGerman;
+			this.tagEnglish = tagEnglish;
+		}
+
+		public int getID() {
+			return ID;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		/* get tag of column, "TagGerman" or "TagEnglish" */
+		public String getTag(String tagColumn) {
+			return "TagGerman".equals(tagColumn) ? tagGerman : tagEnglish;
+		}
+	}
+}
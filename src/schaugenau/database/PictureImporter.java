@@ -0,0 +1,430 @@
+package schaugenau.database;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Imports a folder tree of pictures. Tags come from a CSV manifest of path
+ * (file or folder, relative to the imported folder), German and English tag.
+ * Pictures are read, hashed and optionally downscaled by a pool of threads,
+ * one chunk ahead of the database. Pictures whose SHA-1 is already in the
+ * Hash column are skipped, the others are inserted with one batch and one
+ * transaction per chunk. Pictures stored before the Hash column existed get
+ * their hash from their stored data first. Throughput is reported as files
+ * processed per second.
+ *
+ * @author agent
+ *
+ */
+
+public class PictureImporter {
+
+	/** defines **/
+	protected static final String table = "pictures";
+	protected static final int chunkSize = 32;
+	protected static final String[] extensions = { ".jpg", ".jpeg", ".png", ".bmp", ".gif" };
+
+	/** fields **/
+
+	/* longest side after import, zero keeps size */
+	protected final int maxSize;
+	protected final ExecutorService workers;
+
+	/* hashes in database and of this import */
+	protected final Set<String> knownHashes;
+
+	/* statistics */
+	protected int inserted;
+	protected int duplicates;
+	protected int untagged;
+	protected int failed;
+	protected long insertedBytes;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(PictureImporter.class);
+
+	/** methods **/
+
+	/* constructor */
+	public PictureImporter(int maxSize, int threads) {
+		this.maxSize = maxSize;
+		this.workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		this.knownHashes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	}
+
+	/* import pictures below directory, returns count of inserted pictures */
+	public int importDirectory(File directory, File manifest) throws IOException, SQLException, ClassNotFoundException {
+		long start = System.nanoTime();
+		Map<String, String[]> tags = readManifest(manifest);
+		List<Path> files = findPictures(directory.toPath());
+		logger.info("Found " + files.size() + " pictures below " + directory.getPath());
+
+		Access dbaccess = new Access();
+		try {
+			dbaccess.createConnection();
+			prepareHashes(dbaccess);
+
+			/* next chunk is prepared while current one is inserted */
+			List<Future<Prepared>> current = submit(directory.toPath(), files, 0, tags);
+			for (int from = 0; from < files.size(); from += chunkSize) {
+				List<Future<Prepared>> next = submit(directory.toPath(), files, from + chunkSize, tags);
+				insert(dbaccess, collect(current));
+				current = next;
+				int done = Math.min(files.size(), from + chunkSize);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				logger.info("Imported " + inserted + " pictures, " + done + " of " + files.size() + " files done, "
+						+ String.format(Locale.US, "%.1f", done / seconds) + " files/s");
+			}
+		} finally {
+			dbaccess.closeConnection();
+			workers.shutdown();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		logger.info("Inserted " + inserted + " pictures (" + insertedBytes / 1024 + " KB), skipped " + duplicates
+				+ " duplicates, " + untagged + " without tags and " + failed + " unreadable in "
+				+ String.format(Locale.US, "%.1f", seconds) + "s, "
+				+ String.format(Locale.US, "%.1f", files.size() / seconds) + " files/s");
+		if (inserted > 0) {
+			PictureOperations.invalidateTags();
+		}
+		return inserted;
+	}
+
+	/* manifest rows of relative path, German and English tag */
+	protected Map<String, String[]> readManifest(File manifest) throws IOException {
+		Map<String, String[]> tags = new HashMap<String, String[]>();
+		CSVReader reader = new CSVReader(new FileReader(manifest));
+		try {
+			String[] row;
+			while ((row = reader.readNext()) != null) {
+				if (row.length >= 3 && !row[0].trim().isEmpty()) {
+					tags.put(normalize(row[0].trim()), new String[] { row[1].trim(), row[2].trim() });
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return tags;
+	}
+
+	/* files with picture extensions below directory, sorted */
+	protected List<Path> findPictures(Path directory) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		Stream<Path> walk = Files.walk(directory);
+		try {
+			Iterator<Path> iterator = walk.iterator();
+			while (iterator.hasNext()) {
+				Path path = iterator.next();
+				if (Files.isRegularFile(path) && isPicture(path)) {
+					files.add(path);
+				}
+			}
+		} finally {
+			walk.close();
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	/* load hashes of database, Hash column is added and filled if not there */
+	protected void prepareHashes(Access dbaccess) throws SQLException {
+		DatabaseMetaData meta = dbaccess.con.getMetaData();
+		ResultSet columns = meta.getColumns(null, null, table, "Hash");
+		boolean hasColumn;
+		try {
+			hasColumn = columns.next();
+		} finally {
+			columns.close();
+		}
+		if (!hasColumn) {
+			logger.info("Adding column Hash to " + table);
+			dbaccess.st.executeUpdate("ALTER TABLE " + table + " ADD COLUMN Hash CHAR(40) NULL, ADD INDEX (Hash)");
+		}
+		backfillHashes(dbaccess);
+		dbaccess.rs = dbaccess.prepare("SELECT Hash FROM " + table + " WHERE Hash IS NOT NULL").executeQuery();
+		while (dbaccess.rs.next()) {
+			knownHashes.add(dbaccess.rs.getString(1));
+		}
+		dbaccess.rs.close();
+		dbaccess.rs = null;
+		logger.info(knownHashes.size() + " pictures with hash are in database");
+	}
+
+	/* hash stored pictures without hash, chunk by chunk so only one chunk of data is in memory */
+	protected void backfillHashes(Access dbaccess) throws SQLException {
+		long start = System.nanoTime();
+		int filled = 0;
+		int lastID = Integer.MIN_VALUE;
+		while (true) {
+			Map<Integer, byte[]> chunk = new LinkedHashMap<Integer, byte[]>();
+			PreparedStatement select = dbaccess.prepare("SELECT ID, Picture FROM " + table
+					+ " WHERE Hash IS NULL AND ID > ? ORDER BY ID ASC LIMIT ?");
+			select.setInt(1, lastID);
+			select.setInt(2, chunkSize);
+			dbaccess.rs = select.executeQuery();
+			while (dbaccess.rs.next()) {
+				lastID = dbaccess.rs.getInt(1);
+				chunk.put(lastID, dbaccess.rs.getBytes(2));
+			}
+			dbaccess.rs.close();
+			dbaccess.rs = null;
+			if (chunk.isEmpty()) {
+				break;
+			}
+
+			dbaccess.con.setAutoCommit(false);
+			try {
+				PreparedStatement update = dbaccess.prepare("UPDATE " + table + " SET Hash = ? WHERE ID = ?");
+				for (Map.Entry<Integer, byte[]> picture : chunk.entrySet()) {
+					if (picture.getValue() == null) {
+						continue;
+					}
+					String hash = PictureCache.hash(picture.getValue());
+					update.setString(1, hash);
+					update.setInt(2, picture.getKey());
+					update.addBatch();
+					knownHashes.add(hash);
+					filled++;
+				}
+				update.executeBatch();
+				dbaccess.con.commit();
+			} catch (SQLException e) {
+				dbaccess.con.rollback();
+				throw e;
+			} finally {
+				dbaccess.con.setAutoCommit(true);
+			}
+		}
+		if (filled > 0) {
+			logger.info("Hashed " + filled + " stored pictures in " + (System.nanoTime() - start) / 1000000 + "ms");
+		}
+	}
+
+	/* let workers prepare chunk of files from index on */
+	protected List<Future<Prepared>> submit(final Path directory, List<Path> files, int from,
+			final Map<String, String[]> tags) {
+		List<Future<Prepared>> futures = new ArrayList<Future<Prepared>>();
+		for (int i = from; i < Math.min(files.size(), from + chunkSize); i++) {
+			final Path file = files.get(i);
+			futures.add(workers.submit(new Callable<Prepared>() {
+				@Override
+				public Prepared call() throws IOException {
+					return prepare(file, findTags(directory.relativize(file), tags));
+				}
+			}));
+		}
+		return futures;
+	}
+
+	/* read, hash and downscale picture, data is null for duplicates or pictures without tags */
+	protected Prepared prepare(Path file, String[] tags) throws IOException {
+		if (tags == null) {
+			return new Prepared(file, null, null, null);
+		}
+		byte[] data = Files.readAllBytes(file);
+		String hash = PictureCache.hash(data);
+		if (knownHashes.contains(hash)) {
+			return new Prepared(file, hash, tags, null);
+		}
+		if (maxSize > 0) {
+			data = downscale(data, file.getFileName().toString().toLowerCase(Locale.ROOT));
+		}
+		return new Prepared(file, hash, tags, data);
+	}
+
+	/* wait for prepared pictures, unreadable ones are counted and left out */
+	protected List<Prepared> collect(List<Future<Prepared>> futures) {
+		List<Prepared> prepared = new ArrayList<Prepared>();
+		for (Future<Prepared> future : futures) {
+			try {
+				prepared.add(future.get());
+			} catch (ExecutionException e) {
+				failed++;
+				logger.warn("Could not read picture: " + e.getCause().getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return prepared;
+			}
+		}
+		return prepared;
+	}
+
+	/* insert new pictures of chunk with one batch in one transaction */
+	protected void insert(Access dbaccess, List<Prepared> chunk) throws SQLException {
+		List<Prepared> batch = new ArrayList<Prepared>();
+		for (Prepared picture : chunk) {
+			if (picture.tags == null) {
+				untagged++;
+				logger.warn("No tags for " + picture.file);
+			} else if (picture.data == null || !knownHashes.add(picture.hash)) {
+				duplicates++;
+			} else {
+				batch.add(picture);
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		dbaccess.con.setAutoCommit(false);
+		try {
+			PreparedStatement psmnt = dbaccess.prepare("INSERT INTO " + table
+					+ " (TagGerman, TagEnglish, Picture, UsedAsCorrect, ChosenAsCorrect, Hash) VALUES (?,?,?,0,0,?)");
+			for (Prepared picture : batch) {
+				psmnt.setString(1, picture.tags[0]);
+				psmnt.setString(2, picture.tags[1]);
+				psmnt.setBytes(3, picture.data);
+				psmnt.setString(4, picture.hash);
+				psmnt.addBatch();
+			}
+			psmnt.executeBatch();
+			dbaccess.con.commit();
+		} catch (SQLException e) {
+			dbaccess.con.rollback();
+			for (Prepared picture : batch) {
+				knownHashes.remove(picture.hash);
+			}
+			throw e;
+		} finally {
+			dbaccess.con.setAutoCommit(true);
+		}
+		inserted += batch.size();
+		for (Prepared picture : batch) {
+			insertedBytes += picture.data.length;
+		}
+	}
+
+	/* scale down so longest side is maxSize, JPEG stays JPEG, others become PNG */
+	protected byte[] downscale(byte[] data, String name) throws IOException {
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+		if (image == null) {
+			throw new IOException("Unknown picture format of " + name);
+		}
+		int longest = Math.max(image.getWidth(), image.getHeight());
+		if (longest <= maxSize) {
+			return data;
+		}
+		float scale = maxSize / (float) longest;
+		int width = Math.max(1, Math.round(image.getWidth() * scale));
+		int height = Math.max(1, Math.round(image.getHeight() * scale));
+		boolean jpeg = name.endsWith(".jpg") || name.endsWith(".jpeg");
+		BufferedImage scaled = new BufferedImage(width, height,
+				jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = scaled.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		graphics.drawImage(image, 0, 0, width, height, null);
+		graphics.dispose();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(scaled, jpeg ? "jpg" : "png", out);
+		return out.toByteArray();
+	}
+
+	/* tags of file or of nearest folder in manifest, null if none */
+	protected String[] findTags(Path relative, Map<String, String[]> tags) {
+		for (Path path = relative; path != null; path = path.getParent()) {
+			String[] found = tags.get(normalize(path.toString()));
+			if (found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	/* path with forward slashes and without leading or trailing ones */
+	protected static String normalize(String path) {
+		String normalized = path.replace('\\', '/');
+		while (normalized.startsWith("./")) {
+			normalized = normalized.substring(2);
+		}
+		while (normalized.startsWith("/")) {
+			normalized = normalized.substring(1);
+		}
+		while (normalized.endsWith("/")) {
+			normalized = normalized.substring(0, normalized.length() - 1);
+		}
+		return normalized;
+	}
+
+	/* whether file has a picture extension */
+	protected static boolean isPicture(Path path) {
+		String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+		for (String extension : extensions) {
+			if (name.endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* import folder, arguments are folder, manifest, longest side and threads */
+	public static void main(String[] args) throws IOException, SQLException, ClassNotFoundException {
+		if (args.length < 2) {
+			System.out.println("Usage: PictureImporter <folder> <manifest.csv> [maxSize] [threads]");
+			return;
+		}
+		int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		try {
+			new PictureImporter(maxSize, threads).importDirectory(new File(args[0]), new File(args[1]));
+		} finally {
+			Access.shutdown();
+		}
+	}
+
+	/** inner classes **/
+
+	/* picture read by a worker */
+	protected static class Prepared {
+
+		protected final Path file;
+		protected final String hash;
+		protected final String[] tags;
+		protected final byte[] data;
+
+		protected Prepared(Path file, String hash, String[] tags, byte[] data) {
+			this.file = file;
+			this.hash = hash;
+			this.tags = tags;
+			this.data = data;
+		}
+	}
+}
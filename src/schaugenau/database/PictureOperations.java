@@ -8,8 +8,8 @@ package schaugenau.database;
  *
  */
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,11 +17,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Random;
 //import java.util.Stack;
 
 import org.apache.log4j.Logger;
 
+import schaugenau.app.App;
+
 public class PictureOperations {
 
 	/* Select table */
@@ -35,21 +38,28 @@ public class PictureOperations {
 	private static String IncorPictTag;
 	private static String CorPictTag;
 
-	/* accessing database */
-	private static Access dbaccess = null;
-
-	/* querystring */
-	private static String queryString;
-
 	/* logging */
 	private static Logger logger = Logger.getLogger(PictureOperations.class);
 
 	/* Postfix for using International Tags */
 	private static String language;
 
+	/* distinct tags per language, refreshed every ten minutes */
+	private static final TagCatalogue tagCatalogue = new TagCatalogue("pictures", 10 * 60 * 1000);
+
+	/* picture IDs per tag, drawn weighted by exposure */
+	private static final PictureSampler pictureSampler = new PictureSampler("pictures", 10 * 60 * 1000, true);
+
+	/* statistics increments, flushed every thirty seconds */
+	private static final PictureStatisticsWriter statisticsWriter = new PictureStatisticsWriter(
+			new File("cache/pendingStatistics.csv"), 30 * 1000);
+
+	/* local copies of pictures, capped at 256 MB */
+	private static final PictureCache pictureCache = new PictureCache(new File("cache/pictures"),
+			256L * 1024 * 1024);
+
 	/* constructor */
 	public PictureOperations() {
-		dbaccess = new Access();
 		table = "pictures";
 	}
 
@@ -94,71 +104,175 @@ public class PictureOperations {
 		language = lng;
 	}
 
+	/* column of tags in current language, never taken from outside */
+	protected String getTagColumn() {
+		return "German".equals(language) ? "TagGerman" : "TagEnglish";
+	}
+
 	/*
 	 * Method to load two different pictures from the database
 	 */
 	public void loadPictures() {
+		PicturePair pair = loadPicturePair();
+		if (pair == null) {
+			return;
+		}
+		setCorPictTag(pair.getCorrectTag());
+		setIncorPictTag(pair.getIncorrectTag());
+		setCorPictID(pair.getCorrectID());
+		setIncorPictID(pair.getIncorrectID());
+		try {
+			writePicture(new File("images/Correct" + pair.getCorrectID() + ".png"), pair.getCorrectImage());
+			writePicture(new File("images/Incorrect" + pair.getIncorrectID() + ".png"), pair.getIncorrectImage());
+		} catch (IOException e) {
+			e.printStackTrace();
+			logger.fatal("PictureOperations.loadPicture() collapsed!");
+		}
+	}
+
+	/*
+	 * Method to load tags, IDs and data of two different pictures from the
+	 * database without touching the current pictures, null if failed
+	 */
+	public PicturePair loadPicturePair() {
+		if (App.backend == App.DbBackend.EMBEDDED) {
+			return loadPicturePairFromRepository();
+		}
+		if (App.connectivity == App.DbConnectivity.OFFLINE) {
+			return loadPicturePairFromCache();
+		}
+		Access dbaccess = new Access();
 		try {
-			dbaccess = new Access();
 			dbaccess.createConnection();
-			createRdmTags();
+			String[] tags = drawTags(dbaccess);
 
 			// Picture with a matching tag
-			String Tag = getCorPictTag();
-			int ID = fetchID(Tag);
-			logger.debug("Loading Picture with tag = " + Tag + " and filename = Correct" + ID + ".png");
-			setCorPictID(ID);
-			setCorPictTag(Tag);
-			queryString = "SELECT Picture FROM " + table + " WHERE ID = '" + ID + "'";
-			PreparedStatement psmnt = dbaccess.con.prepareStatement(queryString);
-			ResultSet rs = psmnt.executeQuery();
-			while (rs.next()) {
-				File picture1 = new File("images/Correct" + ID + ".png");
-				FileOutputStream fos = new FileOutputStream(picture1);
-				byte[] buffer = new byte[1024];
-				InputStream is = rs.getBinaryStream(1);
-				while (is.read(buffer) > 0) {
-					fos.write(buffer);
-				}
-				fos.close();
-			}
+			int ID = fetchID(dbaccess, tags[0]);
+			logger.debug("Loading Picture with tag = " + tags[0] + " and ID = " + ID);
+			byte[] correctImage = loadPictureData(dbaccess, ID);
 
 			// Picture with not matching tag
-			String Dif_Tag = getIncorPictTag();
-
-			// This is not supposed to happen!
-			// For debugging and errorhandling only
-			if (Dif_Tag == getCorPictTag()) {
-				Random generator = new Random();
-				LinkedList<String> errPoollist = createTagPool();
-				Object[] errArray = new String[errPoollist.size()];
-				errArray = errPoollist.toArray();
-				int randomIndex = generator.nextInt(errArray.length);
-				errPoollist.remove(getCorPictTag());
-				setIncorPictTag((String) errArray[randomIndex]);
-				Dif_Tag = getIncorPictTag();
+			int Dif_ID = fetchID(dbaccess, tags[1]);
+			logger.debug("Loading Picture with tag = " + tags[1] + " and ID = " + Dif_ID);
+			byte[] incorrectImage = loadPictureData(dbaccess, Dif_ID);
+
+			return new PicturePair(tags[0], tags[1], ID, Dif_ID, correctImage, incorrectImage);
+		} catch (ClassNotFoundException | SQLException | IOException e) {
+			e.printStackTrace();
+			logger.fatal("PictureOperations.loadPicturePair() collapsed!");
+			return null;
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/*
+	 * Method to load two different pictures from the local cache only, null if
+	 * cache holds no pictures of the current language
+	 */
+	protected PicturePair loadPicturePairFromCache() {
+		List<String> pool = pictureCache.getTags(getTagColumn());
+		if (pool.isEmpty()) {
+			logger.warn("No cached pictures available in offline mode");
+			return null;
+		}
+		String[] tags = drawTags(pool);
+		Random generator = new Random();
+		List<Integer> IDs = pictureCache.getIDs(getTagColumn(), tags[0]);
+		int ID = IDs.get(generator.nextInt(IDs.size()));
+		List<Integer> Dif_IDs = pictureCache.getIDs(getTagColumn(), tags[1]);
+		int Dif_ID = Dif_IDs.get(generator.nextInt(Dif_IDs.size()));
+		logger.debug("Loading cached pictures with ID = " + ID + " and ID = " + Dif_ID);
+
+		byte[] correctImage = pictureCache.get(ID);
+		byte[] incorrectImage = pictureCache.get(Dif_ID);
+		if (correctImage == null || incorrectImage == null) {
+			return null;
+		}
+		return new PicturePair(tags[0], tags[1], ID, Dif_ID, correctImage, incorrectImage);
+	}
+
+	/*
+	 * Method to load two different pictures from the picture repository, used
+	 * for the local file which needs neither cache nor connection, null if
+	 * failed
+	 */
+	protected PicturePair loadPicturePairFromRepository() {
+		try {
+			PictureRepository repository = Repositories.getPictures();
+			List<String> pool = repository.loadTags(getTagColumn());
+			if (pool.isEmpty()) {
+				logger.warn("No pictures available in repository");
+				return null;
 			}
+			String[] tags = drawTags(pool);
+			Random generator = new Random();
+			List<Integer> IDs = repository.loadIDs(getTagColumn(), tags[0]);
+			PictureRecord correct = repository.loadPicture(IDs.get(generator.nextInt(IDs.size())));
+			List<Integer> Dif_IDs = repository.loadIDs(getTagColumn(), tags[1]);
+			PictureRecord incorrect = repository.loadPicture(Dif_IDs.get(generator.nextInt(Dif_IDs.size())));
+			logger.debug("Loading pictures with ID = " + correct.getId() + " and ID = " + incorrect.getId());
+			return new PicturePair(tags[0], tags[1], correct.getId(), incorrect.getId(), correct.getData(),
+					incorrect.getData());
+		} catch (SQLException e) {
+			e.printStackTrace();
+			logger.fatal("PictureOperations.loadPicturePairFromRepository() collapsed!");
+			return null;
+		}
+	}
 
-			int Dif_ID = fetchID(Dif_Tag);
-			setIncorPictID(Dif_ID);
-			logger.debug("Loading Picture with tag = " + Dif_Tag + " and filename = Incorrect" + Dif_ID + ".png");
-			queryString = "SELECT Picture FROM " + table + " WHERE ID = '" + Dif_ID + "'";
-			PreparedStatement psmnt2 = dbaccess.con.prepareStatement(queryString);
-			ResultSet rs2 = psmnt2.executeQuery();
-			while (rs2.next()) {
-				File picture2 = new File("images/Incorrect" + Dif_ID + ".png");
-				FileOutputStream fos2 = new FileOutputStream(picture2);
-				byte[] buffer2 = new byte[1024];
-				InputStream is2 = rs2.getBinaryStream(1);
-				while (is2.read(buffer2) > 0) {
-					fos2.write(buffer2);
+	/* read picture from cache or, on a miss, its BLOB from database, empty if there is no such picture */
+	protected byte[] loadPictureData(Access dbaccess, int ID) throws SQLException, IOException {
+		byte[] cached = pictureCache.get(ID);
+		if (cached != null) {
+			return cached;
+		}
+
+		PreparedStatement psmnt = dbaccess
+				.prepare("SELECT TagGerman, TagEnglish, Picture FROM " + table + " WHERE ID = ?");
+		psmnt.setInt(1, ID);
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		String tagGerman = null;
+		String tagEnglish = null;
+		ResultSet rs = psmnt.executeQuery();
+		try {
+			if (rs.next()) {
+				tagGerman = rs.getString(1);
+				tagEnglish = rs.getString(2);
+				InputStream is = rs.getBinaryStream(3);
+				byte[] buffer = new byte[16384];
+				int read;
+				while ((read = is.read(buffer)) > 0) {
+					data.write(buffer, 0, read);
 				}
-				fos2.close();
+				is.close();
 			}
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException | IOException e) {
-			e.printStackTrace();
-			logger.fatal("PictureOperations.loadPicture() collapsed!");
+		} finally {
+			rs.close();
+		}
+
+		/* keep copy for next time and offline mode */
+		byte[] bytes = data.toByteArray();
+		try {
+			pictureCache.put(ID, tagGerman, tagEnglish, bytes);
+		} catch (IOException e) {
+			logger.warn("Could not cache picture " + ID + ": " + e.getMessage());
+		}
+		return bytes;
+	}
+
+	/* get counters of local picture cache */
+	public static String getCacheStats() {
+		return pictureCache.getStats();
+	}
+
+	/* write encoded picture to file */
+	public static void writePicture(File file, byte[] data) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(data);
+		} finally {
+			fos.close();
 		}
 	}
 
@@ -167,35 +281,26 @@ public class PictureOperations {
 	 **/
 
 	/*
-	 * Saves how often the picture was loaded as the correct picture
+	 * Saves how often the picture was loaded as the correct picture, written
+	 * in background together with other increments
 	 */
 	public void incrementUsedAsCorrect(int ID) {
-		try {
-			dbaccess = new Access();
-			dbaccess.createConnection();
-			queryString = "UPDATE " + table + " SET UsedAsCorrect = UsedAsCorrect + 1 WHERE ID = '" + ID + "'";
-			dbaccess.st.executeUpdate(queryString);
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("PictureOperations.incrementUsedAsCorrect collapsed!");
-			e.printStackTrace();
-		}
+		statisticsWriter.addUsedAsCorrect(ID);
+		pictureSampler.noteUsedAsCorrect(ID);
 	}
 
 	/*
-	 * Saves how often the picture was chosen correctly
+	 * Saves how often the picture was chosen correctly, written in background
+	 * together with other increments
 	 */
 	public void incrementChosenAsCorrect(int ID) {
-		try {
-			dbaccess = new Access();
-			dbaccess.createConnection();
-			queryString = "UPDATE " + table + " SET ChosenAsCorrect = ChosenAsCorrect + 1 WHERE ID = '" + ID + "'";
-			dbaccess.st.executeUpdate(queryString);
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("PictureOperations.incrementChosenAsCorrect collapsed!");
-			e.printStackTrace();
-		}
+		statisticsWriter.addChosenAsCorrect(ID);
+	}
+
+	/* write pending statistics, stop background writer and save cache index */
+	public static void shutdown() {
+		statisticsWriter.shutdown();
+		pictureCache.close();
 	}
 
 	/**
@@ -203,46 +308,19 @@ public class PictureOperations {
 	 **/
 
 	/*
-	 * Method to import pictures into database (for the first time) Pictures are
-	 * imported as BLOB's (binary large object) into the database Views is set
-	 * to 0
+	 * Method to import all pictures below a folder into database, tags are read
+	 * from a CSV manifest (path, German tag, English tag). Pictures are imported
+	 * as BLOB's (binary large object), duplicates are skipped. Longest side is
+	 * scaled down to maxSize, zero keeps size.
 	 */
-	public void importPicture() {
+	public int importPictures(File directory, File manifest, int maxSize) {
 		try {
-			logger.info("Storing picture into database");
-			// String Tag = SearchEngines.getTag();
-			// Stack<String> tempstack = ImageCrawler.getImageStack();
-			// absolute path of image for testing issues
-			// if(!tempstack.isEmpty()){
-			// System.out.println("WARNING: Empty stack in
-			// PictureOperations.importPicture!");
-			// }
-			// File picture = new File(
-			// "C:/SchauGenau/Downloads/" + tempstack.pop() + ".jpg");
-			File picture = new File("C:/Users/SchauGenau/ownCloud/Blumen/Tulpe07.jpg"); // path
-			FileInputStream fis;
-			PreparedStatement psmnt = null;
-			dbaccess = new Access();
-			dbaccess.createConnection();
-			psmnt = dbaccess.con.prepareStatement("INSERT INTO " + table
-					+ "(TagGerman, TagEnglish, Picture, UsedAsCorrect, ChosenAsCorrect)" + "values(?,?,?,?,?)");
-			psmnt.setString(1, "Tulpe"); // german tag
-			psmnt.setString(2, "Tulip"); // english tag
-			psmnt.setInt(4, 0);
-			psmnt.setInt(5, 0);
-			fis = new FileInputStream(picture);
-			psmnt.setBinaryStream(3, fis, (int) (picture.length()));
-			int s = psmnt.executeUpdate();
-			if (s > 0) {
-				System.out.println("Upload successfull");
-			} else {
-				System.out.println("Upload failed");
-			}
-			fis.close();
-			dbaccess.con.close();
+			return new PictureImporter(maxSize, Runtime.getRuntime().availableProcessors()).importDirectory(directory,
+					manifest);
 		} catch (ClassNotFoundException | SQLException | IOException e) {
-			logger.fatal("PictureOperations.importPicture() collapsed!");
+			logger.fatal("PictureOperations.importPictures() collapsed!");
 			e.printStackTrace();
+			return 0;
 		}
 	}
 
@@ -255,14 +333,21 @@ public class PictureOperations {
 	 * Method to return the ID of one randomized Picture with given Tag
 	 */
 	public int fetchID(String Tag) throws ClassNotFoundException, SQLException {
-		dbaccess = new Access();
-		dbaccess.createConnection();
-		int result;
-		queryString = "SELECT ID FROM " + table + " WHERE Tag" + getLanguage() + " = '" + Tag
-				+ "' ORDER BY RAND() LIMIT 1";
-		dbaccess.rs = dbaccess.st.executeQuery(queryString);
-		dbaccess.rs.next();
-		result = dbaccess.rs.getInt("ID");
+		Access dbaccess = new Access();
+		try {
+			dbaccess.createConnection();
+			return fetchID(dbaccess, Tag);
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/* fetch ID using already borrowed connection, drawn from in-memory index */
+	protected int fetchID(Access dbaccess, String Tag) throws SQLException {
+		int result = pictureSampler.draw(dbaccess, getTagColumn(), Tag);
+		if (result < 0) {
+			throw new SQLException("No picture with tag " + Tag + " found");
+		}
 		return result;
 	}
 
@@ -270,59 +355,97 @@ public class PictureOperations {
 	 * Method to get all different Tags the database
 	 */
 	public LinkedList<String> createTagPool() throws SQLException, ClassNotFoundException {
-		int maxID = getMaxID();
-		String s;
-		LinkedList<String> pool = new LinkedList<String>();
-
-		for (int i = 1; i <= maxID; i++) {
-			queryString = "SELECT Tag" + language + " from " + table + " WHERE ID = '" + i + "'";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			if (dbaccess.rs.next()) {
-				s = dbaccess.rs.getString("Tag" + language);
-				if (pool.contains(s) == false) {
-					pool.add(s);
-				}
-			}
+		Access dbaccess = new Access();
+		try {
+			dbaccess.createConnection();
+			return createTagPool(dbaccess);
+		} finally {
+			dbaccess.closeConnection();
 		}
-		dbaccess.con.close();
-		return pool;
+	}
+
+	/* create tag pool using already borrowed connection */
+	protected LinkedList<String> createTagPool(Access dbaccess) throws SQLException {
+		return new LinkedList<String>(tagCatalogue.getTags(dbaccess, getTagColumn()));
+	}
+
+	/* forget cached tags and picture index, e.g. after pictures were imported */
+	public static void invalidateTags() {
+		tagCatalogue.invalidate();
+		pictureSampler.invalidate();
 	}
 
 	/*
 	 * Method to create random tags for pictures
 	 */
 	public void createRdmTags() {
+		Access dbaccess = new Access();
 		try {
-			LinkedList<String> poollist = new LinkedList<String>();
-			poollist = createTagPool();
-			Object[] poolarray = new String[poollist.size()];
-			poolarray = poollist.toArray();
-			Random generator = new Random();
-			int randomIndex = generator.nextInt(poolarray.length);
-			setCorPictTag((String) poolarray[randomIndex]);
-
-			LinkedList<String> poollist2 = poollist;
-			Object[] poolarray2 = new String[poollist2.size()];
-			poolarray2 = poollist2.toArray();
-			int randomIndex2 = generator.nextInt(poolarray2.length);
-			poollist2.remove(getCorPictTag());
-			setIncorPictTag((String) poolarray2[randomIndex2]);
+			dbaccess.createConnection();
+			createRdmTags(dbaccess);
 		} catch (ClassNotFoundException e) {
 			e.printStackTrace();
 		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/* create random tags using already borrowed connection */
+	protected void createRdmTags(Access dbaccess) {
+		try {
+			String[] tags = drawTags(dbaccess);
+			setCorPictTag(tags[0]);
+			setIncorPictTag(tags[1]);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/* draw correct and incorrect tag, differing if there is more than one tag */
+	protected String[] drawTags(Access dbaccess) throws SQLException {
+		List<String> pool = tagCatalogue.getTags(dbaccess, getTagColumn());
+		if (pool.isEmpty()) {
+			throw new SQLException("No tags found");
 		}
+		return drawTags(pool);
+	}
+
+	/* draw two tags of non-empty pool */
+	protected String[] drawTags(List<String> pool) {
+		Random generator = new Random();
+		int randomIndex = generator.nextInt(pool.size());
+
+		/* draw other tag without the correct one, if there is any */
+		int randomIndex2 = randomIndex;
+		if (pool.size() > 1) {
+			randomIndex2 = generator.nextInt(pool.size() - 1);
+			if (randomIndex2 >= randomIndex) {
+				randomIndex2++;
+			}
+		}
+		return new String[] { pool.get(randomIndex), pool.get(randomIndex2) };
 	}
 
 	/*
 	 * Method to get the highest ID of Pictures
 	 */
 	public int getMaxID() throws SQLException, ClassNotFoundException {
+		Access dbaccess = new Access();
+		try {
+			dbaccess.createConnection();
+			return getMaxID(dbaccess);
+		} finally {
+			dbaccess.closeConnection();
+		}
+	}
+
+	/* get highest ID using already borrowed connection */
+	protected int getMaxID(Access dbaccess) throws SQLException {
 		int maxID = 1;
-		dbaccess = new Access();
-		dbaccess.createConnection();
-		queryString = "SELECT ID from " + table + " ORDER BY ID DESC LIMIT 1;";
-		dbaccess.rs = dbaccess.st.executeQuery(queryString);
+		PreparedStatement psmnt = dbaccess.prepare("SELECT ID from " + table + " ORDER BY ID DESC LIMIT 1");
+		dbaccess.rs = psmnt.executeQuery();
 		dbaccess.rs.next();
 		maxID = dbaccess.rs.getInt("ID");
 		return maxID;
@@ -0,0 +1,60 @@
+package schaugenau.database;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Correct and incorrect picture of one round, with tags, IDs and encoded
+ * image data as stored in the database.
+ *
+ * @author agent
+ *
+ */
+
+public class PicturePair {
+
+	/** fields **/
+	protected final String correctTag;
+	protected final String incorrectTag;
+	protected final int correctID;
+	protected final int incorrectID;
+	protected final byte[] correctImage;
+	protected final byte[] incorrectImage;
+
+	/** methods **/
+
+	/* constructor */
+	public PicturePair(String correctTag, String incorrectTag, int correctID, int incorrectID, byte[] correctImage,
+			byte[] incorrectImage) {
+		this.correctTag = correctTag;
+		this.incorrectTag = incorrectTag;
+		this.correctID = correctID;
+		this.incorrectID = incorrectID;
+		this.correctImage = correctImage;
+		this.incorrectImage = incorrectImage;
+	}
+
+	public String getCorrectTag() {
+		return correctTag;
+	}
+
+	public String getIncorrectTag() {
+		return incorrectTag;
+	}
+
+	public int getCorrectID() {
+		return correctID;
+	}
+
+	public int getIncorrectID() {
+		return incorrectID;
+	}
+
+	public byte[] getCorrectImage() {
+		return correctImage;
+	}
+
+	public byte[] getIncorrectImage() {
+		return incorrectImage;
+	}
+}
@@ -0,0 +1,64 @@
+package schaugenau.database;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * One row of the pictures table with its encoded image.
+ *
+ * @author agent
+ *
+ */
+
+public class PictureRecord {
+
+	/** fields **/
+	protected final int id;
+	protected final String tagGerman;
+	protected final String tagEnglish;
+	protected final int usedAsCorrect;
+	protected final int chosenAsCorrect;
+	protected final byte[] data;
+
+	/** methods **/
+
+	/* constructor */
+	public PictureRecord(int id, String tagGerman, String tagEnglish, int usedAsCorrect, int chosenAsCorrect,
+			byte[] data) {
+		this.id = id;
+		this.tagGerman = tagGerman;
+		this.tagEnglish = tagEnglish;
+		this.usedAsCorrect = usedAsCorrect;
+		this.chosenAsCorrect = chosenAsCorrect;
+		this.data = data;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getTagGerman() {
+		return tagGerman;
+	}
+
+	public String getTagEnglish() {
+		return tagEnglish;
+	}
+
+	/* tag of column TagGerman or TagEnglish */
+	public String getTag(String column) {
+		return "TagGerman".equals(column) ? tagGerman : tagEnglish;
+	}
+
+	public int getUsedAsCorrect() {
+		return usedAsCorrect;
+	}
+
+	public int getChosenAsCorrect() {
+		return chosenAsCorrect;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+}
@@ -0,0 +1,37 @@
+package schaugenau.database;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Storage of pictures and their statistics, implemented by database server
+ * and local file. Tag columns are TagGerman and TagEnglish.
+ *
+ * @author agent
+ *
+ */
+
+public interface PictureRepository {
+
+	/* distinct tags of column */
+	public List<String> loadTags(String column) throws SQLException;
+
+	/* IDs of pictures with tag in column */
+	public List<Integer> loadIDs(String column, String tag) throws SQLException;
+
+	/* IDs of all pictures, ascending */
+	public List<Integer> loadAllIDs() throws SQLException;
+
+	/* picture with data, null if there is no such picture */
+	public PictureRecord loadPicture(int ID) throws SQLException;
+
+	/* store picture, a new ID is assigned if its ID is not positive, returns ID */
+	public int insertPicture(PictureRecord picture) throws SQLException;
+
+	/* add deltas of UsedAsCorrect and ChosenAsCorrect per picture ID */
+	public void addStatistics(Map<Integer, int[]> deltas) throws SQLException;
+}
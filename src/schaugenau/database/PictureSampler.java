@@ -0,0 +1,204 @@
+package schaugenau.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * In-memory index of picture IDs per tag, so drawing a random picture of a
+ * tag needs no query. It is loaded again as a whole after the refresh
+ * interval or when invalidated, which picks up changed tags, deleted pictures
+ * and exposure counts. A tag which is not known yet only triggers loading of
+ * pictures with higher IDs, at most every few seconds. Optionally two candidates are drawn and the one less often
+ * used as correct picture is taken, which balances exposure across images.
+ *
+ * @author agent
+ *
+ */
+
+public class PictureSampler {
+
+	/** defines **/
+	protected static final long missRefreshIntervalMillis = 10 * 1000;
+
+	/** fields **/
+	protected final String table;
+	protected final long refreshIntervalMillis;
+	protected final boolean weighted;
+
+	/* tag column -> tag -> picture IDs */
+	protected Map<String, Map<String, IdList>> index;
+
+	/* how often picture was used as correct one, indexed by ID */
+	protected int[] usedAsCorrect;
+
+	protected int maxKnownID;
+	protected long lastRefresh;
+	protected long lastMissRefresh;
+	protected final Random random;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(PictureSampler.class);
+
+	/** methods **/
+
+	/* constructor */
+	public PictureSampler(String table, long refreshIntervalMillis, boolean weighted) {
+		this.table = table;
+		this.refreshIntervalMillis = refreshIntervalMillis;
+		this.weighted = weighted;
+		this.index = createIndex();
+		this.usedAsCorrect = new int[0];
+		this.maxKnownID = 0;
+		this.lastRefresh = 0;
+		this.lastMissRefresh = 0;
+		this.random = new Random();
+	}
+
+	/* draw random picture ID with given tag, -1 if there is none */
+	public synchronized int draw(Access dbaccess, String tagColumn, String tag) throws SQLException {
+		if (System.currentTimeMillis() - lastRefresh > refreshIntervalMillis) {
+			reload(dbaccess);
+		}
+
+		IdList ids = index.get(tagColumn).get(tag);
+		if (ids == null) {
+
+			/* maybe picture was imported just now, but unknown tags must not query every draw */
+			if (System.currentTimeMillis() - lastMissRefresh < missRefreshIntervalMillis) {
+				return -1;
+			}
+			lastMissRefresh = System.currentTimeMillis();
+			refresh(dbaccess);
+			ids = index.get(tagColumn).get(tag);
+			if (ids == null) {
+				return -1;
+			}
+		}
+
+		int candidate = ids.get(random.nextInt(ids.size()));
+		if (weighted && ids.size() > 1) {
+			int other = ids.get(random.nextInt(ids.size()));
+			if (getUsedAsCorrect(other) < getUsedAsCorrect(candidate)) {
+				candidate = other;
+			}
+		}
+		return candidate;
+	}
+
+	/* keep local exposure count in sync with database */
+	public synchronized void noteUsedAsCorrect(int ID) {
+		if (ID >= 0 && ID < usedAsCorrect.length) {
+			usedAsCorrect[ID]++;
+		}
+	}
+
+	/* next draw loads everything again (e.g. after imports or deletions) */
+	public synchronized void invalidate() {
+		lastRefresh = 0;
+		lastMissRefresh = 0;
+	}
+
+	/* load all pictures, old index stays if that fails */
+	protected void reload(Access dbaccess) throws SQLException {
+		Map<String, Map<String, IdList>> oldIndex = index;
+		int[] oldUsedAsCorrect = usedAsCorrect;
+		int oldMaxKnownID = maxKnownID;
+		index = createIndex();
+		usedAsCorrect = new int[0];
+		maxKnownID = 0;
+		try {
+			refresh(dbaccess);
+		} catch (SQLException e) {
+			index = oldIndex;
+			usedAsCorrect = oldUsedAsCorrect;
+			maxKnownID = oldMaxKnownID;
+			throw e;
+		}
+	}
+
+	/* load pictures which are not yet known */
+	protected void refresh(Access dbaccess) throws SQLException {
+		long start = System.nanoTime();
+		PreparedStatement psmnt = dbaccess.prepare("SELECT ID, TagGerman, TagEnglish, UsedAsCorrect FROM " + table
+				+ " WHERE ID > ? ORDER BY ID ASC");
+		psmnt.setInt(1, maxKnownID);
+		dbaccess.rs = psmnt.executeQuery();
+		int count = 0;
+		while (dbaccess.rs.next()) {
+			int ID = dbaccess.rs.getInt(1);
+			add(index.get("TagGerman"), dbaccess.rs.getString(2), ID);
+			add(index.get("TagEnglish"), dbaccess.rs.getString(3), ID);
+			if (ID >= usedAsCorrect.length) {
+				usedAsCorrect = Arrays.copyOf(usedAsCorrect, Math.max(ID + 1, usedAsCorrect.length * 2));
+			}
+			usedAsCorrect[ID] = dbaccess.rs.getInt(4);
+			maxKnownID = Math.max(maxKnownID, ID);
+			count++;
+		}
+		dbaccess.rs.close();
+		dbaccess.rs = null;
+		lastRefresh = System.currentTimeMillis();
+		if (count > 0) {
+			logger.debug("Indexed " + count + " new pictures in " + (System.nanoTime() - start) / 1000000 + "ms");
+		}
+	}
+
+	/* empty index of both tag columns */
+	protected static Map<String, Map<String, IdList>> createIndex() {
+		Map<String, Map<String, IdList>> created = new HashMap<String, Map<String, IdList>>();
+		created.put("TagGerman", new HashMap<String, IdList>());
+		created.put("TagEnglish", new HashMap<String, IdList>());
+		return created;
+	}
+
+	/* add ID to list of tag */
+	protected void add(Map<String, IdList> tags, String tag, int ID) {
+		if (tag == null) {
+			return;
+		}
+		IdList ids = tags.get(tag);
+		if (ids == null) {
+			ids = new IdList();
+			tags.put(tag, ids);
+		}
+		ids.add(ID);
+	}
+
+	/* get exposure of picture */
+	protected int getUsedAsCorrect(int ID) {
+		return ID < usedAsCorrect.length ? usedAsCorrect[ID] : 0;
+	}
+
+	/** inner classes **/
+
+	/* growable list of primitive IDs */
+	protected static class IdList {
+
+		protected int[] ids = new int[8];
+		protected int size = 0;
+
+		protected void add(int ID) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = ID;
+		}
+
+		protected int get(int i) {
+			return ids[i];
+		}
+
+		protected int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package schaugenau.database;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Write-behind of picture statistics. Increments of UsedAsCorrect and
+ * ChosenAsCorrect are summed up per picture in memory and written to the
+ * picture repository with one batched transaction on a timer and at
+ * shutdown. Deltas which could not be written are kept in a local file and
+ * merged again at next start.
+ *
+ * @author agent
+ *
+ */
+
+public class PictureStatisticsWriter {
+
+	/** defines **/
+	protected static final int usedAsCorrect = 0;
+	protected static final int chosenAsCorrect = 1;
+
+	/** fields **/
+	protected final File pendingFile;
+
+	/* picture ID -> deltas of UsedAsCorrect and ChosenAsCorrect */
+	protected Map<Integer, int[]> pending;
+	protected final ScheduledExecutorService scheduler;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(PictureStatisticsWriter.class);
+
+	/** methods **/
+
+	/* constructor */
+	public PictureStatisticsWriter(File pendingFile, long flushIntervalMillis) {
+		this.pendingFile = pendingFile;
+		this.pending = new HashMap<Integer, int[]>();
+		loadPending();
+
+		/* flush in background, daemon thread does not keep application alive */
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "PictureStatisticsWriter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/* count picture as used as correct one */
+	public synchronized void addUsedAsCorrect(int ID) {
+		if (ID < 0) {
+			return;
+		}
+		getDeltas(ID)[usedAsCorrect]++;
+	}
+
+	/* count picture as chosen correctly */
+	public synchronized void addChosenAsCorrect(int ID) {
+		if (ID < 0) {
+			return;
+		}
+		getDeltas(ID)[chosenAsCorrect]++;
+	}
+
+	/* get count of pictures with pending deltas */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/* write pending deltas in one transaction, returns whether successful */
+	public boolean flush() {
+		Map<Integer, int[]> batch;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return true;
+			}
+			batch = pending;
+			pending = new HashMap<Integer, int[]>();
+		}
+
+		long start = System.nanoTime();
+		try {
+			Repositories.getPictures().addStatistics(batch);
+			logger.info("Flushed statistics of " + batch.size() + " pictures in "
+					+ (System.nanoTime() - start) / 1000000 + "ms");
+
+			/* file holds flushed deltas now, so it must only keep what came in meanwhile */
+			synchronized (this) {
+				if (pendingFile.exists()) {
+					if (!pending.isEmpty()) {
+						savePending();
+					} else if (!pendingFile.delete()) {
+						logger.warn("Could not delete " + pendingFile.getPath());
+					}
+				}
+			}
+			return true;
+		} catch (SQLException e) {
+			logger.warn("Flushing statistics of " + batch.size() + " pictures failed after "
+					+ (System.nanoTime() - start) / 1000000 + "ms: " + e.getMessage());
+
+			/* give deltas back and keep them safe until database is reachable */
+			synchronized (this) {
+				merge(batch);
+				savePending();
+			}
+			return false;
+		}
+	}
+
+	/* stop timer and write what is left */
+	public void shutdown() {
+		scheduler.shutdownNow();
+		flush();
+	}
+
+	/* get deltas of picture, created if not there */
+	protected int[] getDeltas(int ID) {
+		int[] deltas = pending.get(ID);
+		if (deltas == null) {
+			deltas = new int[2];
+			pending.put(ID, deltas);
+		}
+		return deltas;
+	}
+
+	/* add deltas to pending ones */
+	protected void merge(Map<Integer, int[]> deltas) {
+		for (Map.Entry<Integer, int[]> entry : deltas.entrySet()) {
+			int[] target = getDeltas(entry.getKey());
+			target[usedAsCorrect] += entry.getValue()[usedAsCorrect];
+			target[chosenAsCorrect] += entry.getValue()[chosenAsCorrect];
+		}
+	}
+
+	/* read deltas left over from last run */
+	protected void loadPending() {
+		if (!pendingFile.exists()) {
+			return;
+		}
+		try {
+			CSVReader reader = new CSVReader(new FileReader(pendingFile));
+			try {
+				String[] row;
+				while ((row = reader.readNext()) != null) {
+					if (row.length < 3) {
+						continue;
+					}
+					int[] deltas = getDeltas(Integer.parseInt(row[0]));
+					deltas[usedAsCorrect] += Integer.parseInt(row[1]);
+					deltas[chosenAsCorrect] += Integer.parseInt(row[2]);
+				}
+			} finally {
+				reader.close();
+			}
+			logger.info("Loaded pending statistics of " + pending.size() + " pictures");
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("Could not read pending statistics: " + e.getMessage());
+		}
+	}
+
+	/* write pending deltas to temporary file and replace local file */
+	protected void savePending() {
+		File parent = pendingFile.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		File temp = new File(pendingFile.getPath() + ".tmp");
+		try {
+			CSVWriter writer = new CSVWriter(new FileWriter(temp));
+			try {
+				for (Map.Entry<Integer, int[]> entry : pending.entrySet()) {
+					writer.writeNext(new String[] { entry.getKey().toString(),
+							Integer.toString(entry.getValue()[usedAsCorrect]),
+							Integer.toString(entry.getValue()[chosenAsCorrect]) });
+				}
+			} finally {
+				writer.close();
+			}
+			Files.move(temp.toPath(), pendingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.fatal("Could not save pending statistics: " + e.getMessage());
+		}
+	}
+}
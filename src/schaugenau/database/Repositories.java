@@ -0,0 +1,79 @@
+package schaugenau.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+
+import schaugenau.app.App;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Chooses repositories of the backend set in App, the local file is opened
+ * at first use.
+ *
+ * @author agent
+ *
+ */
+
+public class Repositories {
+
+	/** defines **/
+	public static final File embeddedFile = new File("data/schaugenau.db");
+
+	/** fields **/
+	private static MySqlRepository mySqlRepository = null;
+	private static EmbeddedRepository embeddedRepository = null;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(Repositories.class);
+
+	/** methods **/
+
+	public static ScoreRepository getScores() throws SQLException {
+		return App.backend == App.DbBackend.EMBEDDED ? getEmbedded() : getMySql();
+	}
+
+	public static PictureRepository getPictures() throws SQLException {
+		return App.backend == App.DbBackend.EMBEDDED ? getEmbedded() : getMySql();
+	}
+
+	public static SurveyRepository getSurveys() throws SQLException {
+		return App.backend == App.DbBackend.EMBEDDED ? getEmbedded() : getMySql();
+	}
+
+	/* repositories on database server */
+	public static synchronized MySqlRepository getMySql() {
+		if (mySqlRepository == null) {
+			mySqlRepository = new MySqlRepository();
+		}
+		return mySqlRepository;
+	}
+
+	/* repositories in local file */
+	public static synchronized EmbeddedRepository getEmbedded() throws SQLException {
+		if (embeddedRepository == null) {
+			try {
+				embeddedRepository = new EmbeddedRepository(embeddedFile);
+			} catch (IOException e) {
+				throw new SQLException("Could not open local database " + embeddedFile.getPath(), e);
+			}
+		}
+		return embeddedRepository;
+	}
+
+	/* close local file */
+	public static synchronized void shutdown() {
+		if (embeddedRepository != null) {
+			try {
+				embeddedRepository.close();
+			} catch (IOException e) {
+				logger.warn("Could not close local database: " + e.getMessage());
+			}
+			embeddedRepository = null;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package schaugenau.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Synchronizes a local database file with the database server. Pictures and
+ * survey items are copied down, scores and survey results made on the kiosk
+ * are copied up. How far uploads got is stored as marks in the local file, so
+ * each score and result is uploaded once. Only the first batch after a mark
+ * can have reached the server without its mark being stored, so scores of
+ * that batch and the first result are looked up on the server before they
+ * are inserted. Results whose score is not uploaded yet are held back.
+ *
+ * @author agent
+ *
+ */
+
+public class RepositorySync {
+
+	/** defines **/
+	protected static final String uploadedScoresMark = "uploadedScores";
+	protected static final String uploadedResultsMark = "uploadedResults";
+	protected static final int uploadBatchSize = 64;
+
+	/** fields **/
+	protected final EmbeddedRepository local;
+	protected final MySqlRepository server;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(RepositorySync.class);
+
+	/** methods **/
+
+	/* constructor */
+	public RepositorySync(EmbeddedRepository local, MySqlRepository server) {
+		this.local = local;
+		this.server = server;
+	}
+
+	/* copy pictures missing locally and replace survey items, returns count of pictures */
+	public int download() throws SQLException, IOException {
+		long start = System.nanoTime();
+		Set<Integer> present = new HashSet<Integer>(local.loadAllIDs());
+		int copied = 0;
+		for (int ID : server.loadAllIDs()) {
+			if (present.contains(ID)) {
+				continue;
+			}
+			PictureRecord picture = server.loadPicture(ID);
+			if (picture != null) {
+				local.insertPicture(picture);
+				copied++;
+			}
+		}
+
+		SurveyCatalogue catalogue = server.loadCatalogue();
+		List<SurveyItemDefinition> items = new ArrayList<SurveyItemDefinition>();
+		for (int session : catalogue.getSessionIDs()) {
+			items.addAll(catalogue.getSession(session));
+		}
+		local.replaceSurveyItems(items);
+		logger.info("Downloaded " + copied + " pictures and " + items.size() + " survey items in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		return copied;
+	}
+
+	/* copy new scores and survey results to server, returns count of scores */
+	public int upload() throws SQLException, IOException {
+		long start = System.nanoTime();
+
+		/* scores first, so results can point to their keys on server */
+		long uploaded = local.getMark(uploadedScoresMark);
+		List<ScoreRecord> scores = local.loadScores(uploaded);
+		for (int i = 0; i < scores.size(); i += uploadBatchSize) {
+			List<ScoreRecord> batch = scores.subList(i, Math.min(scores.size(), i + uploadBatchSize));
+			long[] remoteKeys = i == 0 ? insertMissingScores(batch) : server.insertScores(batch);
+			long[] localKeys = new long[batch.size()];
+			for (int j = 0; j < localKeys.length; j++) {
+				localKeys[j] = uploaded + i + j + 1;
+			}
+			local.putRemoteKeys(localKeys, remoteKeys);
+			local.setMark(uploadedScoresMark, uploaded + i + batch.size());
+		}
+
+		long uploadedScores = uploaded + scores.size();
+		long uploadedResults = local.getMark(uploadedResultsMark);
+		List<SurveyResult> results = local.loadResults(uploadedResults);
+		int savedResults = 0;
+		for (int i = 0; i < results.size(); i++) {
+			SurveyResult result = results.get(i);
+
+			/* result without participant stays without one */
+			long participant = result.getParticipant();
+			long remoteParticipant = 0;
+			if (participant != 0) {
+				remoteParticipant = local.getRemoteKey(participant);
+				if (remoteParticipant == 0 && participant > uploadedScores) {
+					logger.info("Holding back " + (results.size() - i) + " survey results until score " + participant
+							+ " is uploaded");
+					break;
+				}
+			}
+			if (participant != 0 && remoteParticipant == 0) {
+				logger.warn("Skipping survey result of item " + result.getItemID() + ", score " + participant
+						+ " has no key on server");
+			} else {
+				SurveyResult remote = result.withParticipant(remoteParticipant);
+				if (i > 0 || remoteParticipant == 0 || !server.hasResult(remote)) {
+					server.saveResult(remote);
+					savedResults++;
+				}
+			}
+			local.setMark(uploadedResultsMark, uploadedResults + i + 1);
+		}
+		logger.info("Uploaded " + scores.size() + " scores and " + savedResults + " survey results in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		return scores.size();
+	}
+
+	/* insert scores which are not on server yet, returns keys on server of all */
+	protected long[] insertMissingScores(List<ScoreRecord> batch) throws SQLException {
+		long[] remoteKeys = new long[batch.size()];
+		List<ScoreRecord> missing = new ArrayList<ScoreRecord>();
+		for (int i = 0; i < batch.size(); i++) {
+			remoteKeys[i] = server.findScore(batch.get(i));
+			if (remoteKeys[i] == 0) {
+				missing.add(batch.get(i));
+			}
+		}
+		if (missing.size() < batch.size()) {
+			logger.info((batch.size() - missing.size()) + " scores were uploaded before, keeping their keys");
+		}
+		if (!missing.isEmpty()) {
+			long[] insertedKeys = server.insertScores(missing);
+			for (int i = 0, j = 0; i < remoteKeys.length; i++) {
+				if (remoteKeys[i] == 0) {
+					remoteKeys[i] = insertedKeys[j++];
+				}
+			}
+		}
+		return remoteKeys;
+	}
+
+	/* synchronize local file with server, arguments are file and direction */
+	public static void main(String[] args) throws IOException, SQLException {
+		if (args.length < 1) {
+			System.out.println("Usage: RepositorySync <schaugenau.db> [down|up|both]");
+			return;
+		}
+		String direction = args.length > 1 ? args[1] : "both";
+		EmbeddedRepository local = new EmbeddedRepository(new File(args[0]));
+		try {
+			RepositorySync sync = new RepositorySync(local, new MySqlRepository());
+			if (!direction.equals("down")) {
+				sync.upload();
+			}
+			if (!direction.equals("up")) {
+				sync.download();
+			}
+		} finally {
+			local.close();
+			Access.shutdown();
+		}
+	}
+}
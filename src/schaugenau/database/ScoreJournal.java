@@ -0,0 +1,476 @@
+package schaugenau.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Append-only local journal of scores. Scores are queued and written by a
+ * background thread, all scores queued meanwhile share one fsync. Each record
+ * is stored as length, binary score and CRC32. The same thread replicates
+ * journaled scores to the database and remembers up to which offset they
+ * were written in a checkpoint file. Replication is at least once: a crash
+ * between commit and checkpoint replays the last batch. Appending a score
+ * returns its database key, which is known once the score is replicated.
+ *
+ * @author agent
+ *
+ */
+
+public class ScoreJournal {
+
+	/** defines **/
+	protected static final int maxRecordLength = 64 * 1024;
+	protected static final int replicationBatchSize = 64;
+	protected static final long retryIntervalMillis = 10 * 1000;
+	protected static final long shutdownTimeoutMillis = 5 * 1000;
+
+	/** fields **/
+	protected final File journalFile;
+	protected final File checkpointFile;
+	protected final ScoreOperations target;
+
+	protected RandomAccessFile file;
+	protected FileChannel channel;
+	protected long checkpoint;
+
+	/* replication is held back while leaderboard loads database, guarded by journal */
+	protected boolean replicationPaused;
+
+	/* scores not yet on disk */
+	protected final LinkedBlockingQueue<Pending> unwritten;
+
+	/* offset in journal -> key of score written in this run, guarded by journal */
+	protected final Map<Long, CompletableFuture<Long>> awaitedKeys;
+	protected final AtomicBoolean flushScheduled;
+	protected final ScheduledExecutorService executor;
+
+	/* metrics, guarded by journal */
+	protected long journaledCount;
+	protected long replicatedCount;
+	protected long syncCount;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(ScoreJournal.class);
+
+	/** methods **/
+
+	/* constructor */
+	public ScoreJournal(File journalFile, File checkpointFile, ScoreOperations target) {
+		this.journalFile = journalFile;
+		this.checkpointFile = checkpointFile;
+		this.target = target;
+		this.unwritten = new LinkedBlockingQueue<Pending>();
+		this.awaitedKeys = new HashMap<Long, CompletableFuture<Long>>();
+		this.flushScheduled = new AtomicBoolean(false);
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ScoreJournal");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			open();
+		} catch (IOException e) {
+			logger.fatal("Could not open score journal " + journalFile.getPath() + ": " + e.getMessage());
+		}
+
+		/* retry replication of what is left */
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				replicate();
+			}
+		}, 0, retryIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/* queue score, returns immediately with future of its database key */
+	public CompletableFuture<Long> append(ScoreRecord record) {
+		Pending pending = new Pending(record);
+		unwritten.add(pending);
+		if (flushScheduled.compareAndSet(false, true)) {
+			try {
+				executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						flushScheduled.set(false);
+						flush();
+						replicate();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+
+				/* already shut down, at least get it on disk */
+				flushScheduled.set(false);
+				flush();
+			}
+		}
+		return pending.key;
+	}
+
+	/* write queued scores, flush and replicate, then stop */
+	public void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+
+		/* scores queued after last flush */
+		flush();
+		replicate();
+		logger.info("Score journal: " + journaledCount + " journaled, " + replicatedCount + " replicated, "
+				+ syncCount + " syncs, " + getPendingBytes() + " bytes pending");
+
+		/* keys of scores left in journal are known only in next run */
+		synchronized (this) {
+			for (CompletableFuture<Long> key : awaitedKeys.values()) {
+				key.completeExceptionally(new IllegalStateException("Score journal is shut down"));
+			}
+			awaitedKeys.clear();
+		}
+		try {
+			if (file != null) {
+				file.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/* open journal and cut off a torn record at its end */
+	protected void open() throws IOException {
+		File parent = journalFile.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		checkpoint = loadCheckpoint();
+		file = new RandomAccessFile(journalFile, "rw");
+		channel = file.getChannel();
+		if (checkpoint > channel.size()) {
+			checkpoint = 0;
+		}
+
+		/* find end of last valid record */
+		long offset = checkpoint;
+		int pending = 0;
+		while (true) {
+			long next = readRecord(offset, null);
+			if (next < 0) {
+				break;
+			}
+			offset = next;
+			pending++;
+		}
+		if (offset < channel.size()) {
+			logger.warn("Score journal has " + (channel.size() - offset) + " broken bytes at end, truncating");
+			channel.truncate(offset);
+		}
+		channel.position(channel.size());
+		if (pending > 0) {
+			logger.info("Score journal has " + pending + " scores to replicate");
+		}
+	}
+
+	/* write all queued scores with one fsync */
+	protected synchronized void flush() {
+		if (channel == null || unwritten.isEmpty()) {
+			return;
+		}
+		List<Pending> drained = new ArrayList<Pending>();
+		unwritten.drainTo(drained);
+		long start = System.nanoTime();
+
+		/* a score which cannot be encoded would fail every flush, so it is dropped alone */
+		List<Pending> batch = new ArrayList<Pending>(drained.size());
+		List<Integer> offsets = new ArrayList<Integer>(drained.size());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (Pending pending : drained) {
+			try {
+				byte[] encoded = encode(pending.record);
+				offsets.add(bytes.size());
+				bytes.write(encoded);
+				batch.add(pending);
+			} catch (IOException | RuntimeException e) {
+				logger.error("Dropping score of " + pending.record.getName() + " which cannot be journaled", e);
+				pending.key.completeExceptionally(e);
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		long end = -1;
+		try {
+			end = channel.size();
+			write(ByteBuffer.wrap(bytes.toByteArray()));
+			channel.force(false);
+			for (int i = 0; i < batch.size(); i++) {
+				awaitedKeys.put(end + offsets.get(i), batch.get(i).key);
+			}
+			journaledCount += batch.size();
+			syncCount++;
+			logger.debug("Journaled " + batch.size() + " scores in " + (System.nanoTime() - start) / 1000000 + "ms");
+		} catch (IOException | RuntimeException e) {
+			logger.fatal("Could not write score journal: " + e.getMessage());
+
+			/* do not leave part of batch for retry and later scores to follow */
+			if (end >= 0) {
+				try {
+					channel.truncate(end);
+					channel.position(end);
+				} catch (IOException truncateException) {
+					logger.fatal("Could not cut off partly written scores: " + truncateException.getMessage());
+				}
+			}
+
+			/* keep scores in memory, maybe next flush works */
+			unwritten.addAll(batch);
+		}
+	}
+
+	/* write bytes at end of journal */
+	protected void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/* hold back replication, waits for running one, so database does not change under a reader */
+	public synchronized void pauseReplication() {
+		replicationPaused = true;
+	}
+
+	/* replicate again, including what was journaled meanwhile */
+	public synchronized void resumeReplication() {
+		replicationPaused = false;
+		try {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					replicate();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+
+			/* already shut down, scores are replicated in next run */
+		}
+	}
+
+	/* write journaled scores behind checkpoint to database */
+	protected synchronized void replicate() {
+		if (channel == null || replicationPaused) {
+			return;
+		}
+		try {
+			while (checkpoint < channel.size()) {
+				List<ScoreRecord> batch = new ArrayList<ScoreRecord>();
+				List<Long> offsets = new ArrayList<Long>();
+				long offset = checkpoint;
+				while (batch.size() < replicationBatchSize) {
+					long next = readRecord(offset, batch);
+					if (next < 0) {
+						break;
+					}
+					offsets.add(offset);
+					offset = next;
+				}
+				if (batch.isEmpty()) {
+					break;
+				}
+				long start = System.nanoTime();
+				long[] keys = target.insertScores(batch);
+				replicatedCount += batch.size();
+				checkpoint = offset;
+				saveCheckpoint();
+				for (int i = 0; i < offsets.size(); i++) {
+					CompletableFuture<Long> key = awaitedKeys.remove(offsets.get(i));
+					if (key != null) {
+						key.complete(keys != null && i < keys.length ? keys[i] : 0);
+					}
+				}
+				logger.debug("Replicated " + batch.size() + " scores in " + (System.nanoTime() - start) / 1000000
+						+ "ms");
+			}
+			compact();
+		} catch (SQLException e) {
+			logger.warn("Replication of scores failed, " + getPendingBytes() + " bytes pending: " + e.getMessage());
+		} catch (IOException e) {
+			logger.fatal("Could not read score journal: " + e.getMessage());
+		}
+	}
+
+	/* scores not yet replicated, oldest first, callers synchronize on journal to keep it so */
+	public synchronized List<ScoreRecord> pendingRecords() throws IOException {
+		List<ScoreRecord> records = new ArrayList<ScoreRecord>();
+		if (channel != null) {
+			long offset = checkpoint;
+			while (offset >= 0) {
+				offset = readRecord(offset, records);
+			}
+		}
+		for (Pending pending : unwritten) {
+			records.add(pending.record);
+		}
+		return records;
+	}
+
+	/*
+	 * start with empty journal once everything is replicated. Checkpoint 0 is
+	 * persisted before truncating, so a stale checkpoint never points into
+	 * scores appended later. A crash in between only replays the journal.
+	 */
+	protected void compact() throws IOException {
+		if (checkpoint > 0 && checkpoint == channel.size() && unwritten.isEmpty()) {
+			long replicated = checkpoint;
+			checkpoint = 0;
+			try {
+				saveCheckpoint();
+			} catch (IOException e) {
+				checkpoint = replicated;
+				throw e;
+			}
+			channel.truncate(0);
+			channel.position(0);
+		}
+	}
+
+	/* read record at offset into list, returns offset of next record or -1 */
+	protected long readRecord(long offset, List<ScoreRecord> records) throws IOException {
+		long size = channel.size();
+		if (size - offset < 4) {
+			return -1;
+		}
+		ByteBuffer header = ByteBuffer.allocate(4);
+		channel.read(header, offset);
+		header.flip();
+		int length = header.getInt();
+		if (length <= 0 || length > maxRecordLength || size - offset < 4 + length + 8) {
+			return -1;
+		}
+		ByteBuffer body = ByteBuffer.allocate(length + 8);
+		while (body.hasRemaining()) {
+			if (channel.read(body, offset + 4 + body.position()) < 0) {
+				return -1;
+			}
+		}
+		body.flip();
+		byte[] payload = new byte[length];
+		body.get(payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		if (crc.getValue() != body.getLong()) {
+			return -1;
+		}
+		if (records != null) {
+			records.add(ScoreRecord.read(new DataInputStream(new ByteArrayInputStream(payload))));
+		}
+		return offset + 4 + length + 8;
+	}
+
+	/* length, payload and CRC32 of payload */
+	protected byte[] encode(ScoreRecord record) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		record.write(new DataOutputStream(payload));
+		byte[] data = payload.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ByteBuffer buffer = ByteBuffer.allocate(4 + data.length + 8);
+		buffer.putInt(data.length);
+		buffer.put(data);
+		buffer.putLong(crc.getValue());
+		return buffer.array();
+	}
+
+	/* get bytes of journal not yet replicated */
+	protected long getPendingBytes() {
+		try {
+			return channel == null ? 0 : channel.size() - checkpoint;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/* read offset up to which journal is replicated */
+	protected long loadCheckpoint() {
+		if (!checkpointFile.exists()) {
+			return 0;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(checkpointFile));
+			try {
+				return in.readLong();
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read score journal checkpoint, replaying journal: " + e.getMessage());
+			return 0;
+		}
+	}
+
+	/* write checkpoint to temporary file and replace old one */
+	protected void saveCheckpoint() throws IOException {
+		File temp = new File(checkpointFile.getPath() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(temp);
+		try {
+			DataOutputStream out = new DataOutputStream(fos);
+			out.writeLong(checkpoint);
+			out.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+		Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/** inner classes **/
+
+	/* score which is not on disk yet and the key it will get */
+	protected static class Pending {
+
+		protected final ScoreRecord record;
+		protected final CompletableFuture<Long> key;
+
+		protected Pending(ScoreRecord record) {
+			this.record = record;
+			this.key = new CompletableFuture<Long>();
+		}
+	}
+}
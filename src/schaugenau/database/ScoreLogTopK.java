@@ -0,0 +1,261 @@
+package schaugenau.database;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+import au.com.bytecode.opencsv.CSVParser;
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Streaming top-K of the CSV score log (name, score, date per row). Rows are
+ * pushed through a bounded min-heap, so each row costs O(log K). A sidecar
+ * index stores the current top-K and the byte offset up to which the log was
+ * read, next time only rows appended since then are parsed.
+ *
+ * @author agent
+ *
+ */
+
+public class ScoreLogTopK {
+
+	/** defines **/
+	protected static final String indexPostfix = ".topk";
+
+	/** fields **/
+	protected final File log;
+	protected final File index;
+	protected final int count;
+
+	/* worst of best rows on top */
+	protected final PriorityQueue<Row> heap;
+	protected long offset;
+	protected long sequence;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(ScoreLogTopK.class);
+
+	/** methods **/
+
+	/* constructor */
+	public ScoreLogTopK(File log, int count) {
+		this.log = log;
+		this.index = new File(log.getPath() + indexPostfix);
+		this.count = count;
+		this.heap = new PriorityQueue<Row>(Math.max(1, count), new Comparator<Row>() {
+			@Override
+			public int compare(Row a, Row b) {
+				return compareRows(a, b);
+			}
+		});
+		this.offset = 0;
+		this.sequence = 0;
+	}
+
+	/* read index and new rows of log, then update index, returns best rows first */
+	public List<Row> load() throws IOException {
+		long start = System.nanoTime();
+		loadIndex();
+		long from = offset;
+		int parsed = readLog();
+		try {
+			saveIndex();
+		} catch (IOException e) {
+			logger.warn("Could not write score index: " + e.getMessage());
+		}
+		logger.debug("Parsed " + parsed + " score rows from byte " + from + " in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		return getBest();
+	}
+
+	/* best rows, highest score first */
+	public List<Row> getBest() {
+		List<Row> best = new ArrayList<Row>(heap);
+		Collections.sort(best, Collections.reverseOrder(new Comparator<Row>() {
+			@Override
+			public int compare(Row a, Row b) {
+				return compareRows(a, b);
+			}
+		}));
+		return best;
+	}
+
+	/* lower score is worse, on equal score the later row is worse */
+	protected static int compareRows(Row a, Row b) {
+		if (a.score != b.score) {
+			return a.score < b.score ? -1 : 1;
+		}
+		return a.sequence == b.sequence ? 0 : (a.sequence > b.sequence ? -1 : 1);
+	}
+
+	/* offer row to heap, drops worst if there are too many */
+	protected void offer(Row row) {
+		if (count <= 0) {
+			return;
+		}
+		if (heap.size() < count) {
+			heap.add(row);
+		} else if (compareRows(row, heap.peek()) > 0) {
+			heap.poll();
+			heap.add(row);
+		}
+	}
+
+	/* parse complete lines behind offset, returns count of rows */
+	protected int readLog() throws IOException {
+		if (!log.exists()) {
+			return 0;
+		}
+		CSVParser parser = new CSVParser();
+		Charset charset = Charset.defaultCharset();
+		int parsed = 0;
+		InputStream in = new BufferedInputStream(new FileInputStream(log));
+		try {
+			long skipped = 0;
+			while (skipped < offset) {
+				long step = in.skip(offset - skipped);
+				if (step <= 0) {
+					break;
+				}
+				skipped += step;
+			}
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = in.read()) >= 0) {
+				if (b != '\n') {
+					line.write(b);
+					continue;
+				}
+
+				/* only lines with line break are complete */
+				offset += line.size() + 1;
+				String text = new String(line.toByteArray(), charset).trim();
+				line.reset();
+				if (text.isEmpty()) {
+					continue;
+				}
+				String[] fields = parser.parseLine(text);
+				if (fields.length < 2) {
+					continue;
+				}
+				try {
+					offer(new Row(fields[0], Integer.parseInt(fields[1].trim()), fields.length > 2 ? fields[2] : "",
+							sequence++));
+					parsed++;
+				} catch (NumberFormatException e) {
+					logger.warn("Skipping score row: " + text);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return parsed;
+	}
+
+	/* restore heap and offset, index is ignored if it does not fit log */
+	protected void loadIndex() {
+		heap.clear();
+		offset = 0;
+		sequence = 0;
+		if (!index.exists() || !log.exists()) {
+			return;
+		}
+		try {
+			CSVReader reader = new CSVReader(new FileReader(index));
+			try {
+				String[] header = reader.readNext();
+				if (header == null || header.length < 3) {
+					return;
+				}
+				int storedCount = Integer.parseInt(header[0]);
+				long storedOffset = Long.parseLong(header[1]);
+				long storedSequence = Long.parseLong(header[2]);
+
+				/* index of fewer rows or of longer (replaced) log is useless */
+				if (storedCount < count || storedOffset > log.length()) {
+					return;
+				}
+				String[] row;
+				while ((row = reader.readNext()) != null) {
+					if (row.length >= 4) {
+						offer(new Row(row[0], Integer.parseInt(row[1]), row[2], Long.parseLong(row[3])));
+					}
+				}
+				offset = storedOffset;
+				sequence = storedSequence;
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("Could not read score index, reading whole log: " + e.getMessage());
+			heap.clear();
+			offset = 0;
+			sequence = 0;
+		}
+	}
+
+	/* write index to temporary file and replace old one */
+	protected void saveIndex() throws IOException {
+		File temp = new File(index.getPath() + ".tmp");
+		CSVWriter writer = new CSVWriter(new FileWriter(temp));
+		try {
+			writer.writeNext(new String[] { Integer.toString(count), Long.toString(offset), Long.toString(sequence) });
+			for (Row row : heap) {
+				writer.writeNext(new String[] { row.name, Integer.toString(row.score), row.date,
+						Long.toString(row.sequence) });
+			}
+		} finally {
+			writer.close();
+		}
+		Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/** inner classes **/
+
+	/* one row of score log */
+	public static class Row {
+
+		protected final String name;
+		protected final int score;
+		protected final String date;
+		protected final long sequence;
+
+		protected Row(String name, int score, String date, long sequence) {
+			this.name = name;
+			this.score = score;
+			this.date = date;
+			this.sequence = sequence;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getScore() {
+			return score;
+		}
+
+		public String getDate() {
+			return date;
+		}
+	}
+}
@@ -1,13 +1,19 @@
 package schaugenau.database;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.log4j.Logger;
 
 /**
  * Distributed under the MIT License. (See accompanying file LICENSE or copy at
  * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
- * 
+ *
  * @author Kevin Schmidt
  *
  */
@@ -15,12 +21,7 @@ import org.apache.log4j.Logger;
 public class ScoreOperations {
 
 	/** defines **/
-
-	/* database access */
-	protected Access dbaccess;
-
-	/* query String */
-	protected String queryString;
+	protected static final long seedRetryMillis = 30 * 1000;
 
 	/* logging */
 	protected Logger logger = Logger.getLogger(ScoreOperations.class);
@@ -28,100 +29,197 @@ public class ScoreOperations {
 	/* table for Scores */
 	protected String table;
 
+	/* columns of highscore entry, creation time in seconds */
+	protected final String entryColumns = "Pkey, Name, Score, Gamestyle, UNIX_TIMESTAMP(CreationTime)";
+
+	/* condition for scores of last hours, placeholders without date are kept */
+	protected final String ofHoursCondition = "(CreationTime > DATE_SUB(NOW(), INTERVAL ? HOUR) "
+			+ "OR CreationTime = 0000-00-00)";
+
+	/* same for scores of gamestyle, placeholders count for every gamestyle as they always did */
+	protected final String ofHoursOfGamestyleCondition = "(Gamestyle = ? AND CreationTime > DATE_SUB(NOW(), "
+			+ "INTERVAL ? HOUR) OR CreationTime = 0000-00-00)";
+
+	/* local journal which all scores pass before they reach the database, opened on first score */
+	private static ScoreJournal journal = null;
+
+	/* all scores in memory, seeded on first query */
+	private static Leaderboard leaderboard = null;
+	private static long nextSeedMillis = 0;
+	private static boolean seeding = false;
+
 	/* constructor */
 	public ScoreOperations() {
-		dbaccess = new Access();
 		table = "scores";
 	}
 
 	/*
-	 * Method to save new score in database of Gamestyle "Gamestyle".
+	 * Method to save new score in database of Gamestyle "Gamestyle". Score is
+	 * journaled locally and written to database in background, returned future
+	 * gets its key once it is written.
+	 */
+	public CompletableFuture<Long> saveScore(String gamestyle, int score, String name, int playedTime,
+			int maxMultiplicator, double avMultiplicator, int correctPictures, int incorrectPictures) {
+		long creationTime = System.currentTimeMillis();
+
+		/* journal and leaderboard together, so seeding sees score in exactly one of them */
+		synchronized (ScoreOperations.class) {
+			CompletableFuture<Long> key = getJournal().append(new ScoreRecord(creationTime, gamestyle, score, name,
+					playedTime, maxMultiplicator, avMultiplicator, correctPictures, incorrectPictures));
+			if (leaderboard != null) {
+				leaderboard.add(name, score, gamestyle, creationTime);
+			}
+			return key;
+		}
+	}
+
+	/* get journal, opens it at first call */
+	protected static synchronized ScoreJournal getJournal() {
+		if (journal == null) {
+			journal = new ScoreJournal(new File("journal/scores.journal"), new File("journal/scores.checkpoint"),
+					new ScoreOperations());
+		}
+		return journal;
+	}
+
+	/* open journal, scores left by last run are replicated right away */
+	public static void open() {
+		getJournal();
+	}
+
+	/*
+	 * get leaderboard, seeded from database and journaled scores not yet
+	 * replicated at first call, null if that failed or is in progress. Seeding
+	 * is tried again after a while. Database is loaded without lock, so saving
+	 * scores is never held up by it, replication is paused meanwhile instead.
 	 */
-	public void saveScore(String gamestyle, int score, String name, int playedTime, int maxMultiplicator,
-			double avMultiplicator, int correctPictures, int incorrectPictures) {
+	protected Leaderboard getLeaderboard() {
+		ScoreJournal scoreJournal;
+		synchronized (ScoreOperations.class) {
+			if (leaderboard != null || seeding || System.currentTimeMillis() < nextSeedMillis) {
+				return leaderboard;
+			}
+			seeding = true;
+			scoreJournal = getJournal();
+		}
+		scoreJournal.pauseReplication();
 		try {
-			dbaccess.createConnection();
-			queryString = "INSERT INTO " + table + " SET" + " Score = '" + score + "'," + " Name = '" + name + "',"
-					+ " CreationTime = NOW()" + "" + "," + " Gamestyle = '" + gamestyle + "'," + " PlayedTime = '"
-					+ playedTime + "'," + " MaxMultiplicator = '" + maxMultiplicator + "'," + " AvMultiplicator = '"
-					+ avMultiplicator + "'," + " CorrectPictures = '" + correctPictures + "',"
-					+ " IncorrectPictures = '" + incorrectPictures + "'";
-			dbaccess.st.executeUpdate(queryString);
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.saveScore() collapsed!");
-			e.printStackTrace();
+			Leaderboard seeded = new Leaderboard();
+			seeded.seed(Repositories.getScores());
+
+			/* scores saved until now are still in journal, later ones are added to leaderboard */
+			synchronized (ScoreOperations.class) {
+				for (ScoreRecord record : scoreJournal.pendingRecords()) {
+					seeded.add(record.getName(), record.getScore(), record.getGamestyle(), record.getCreationTime());
+				}
+				leaderboard = seeded;
+			}
+		} catch (SQLException | IOException e) {
+			synchronized (ScoreOperations.class) {
+				nextSeedMillis = System.currentTimeMillis() + seedRetryMillis;
+			}
+			logger.warn("Leaderboard could not be seeded, trying again in " + seedRetryMillis / 1000 + "s: "
+					+ e.getMessage());
+		} finally {
+			scoreJournal.resumeReplication();
+			synchronized (ScoreOperations.class) {
+				seeding = false;
+			}
+		}
+		synchronized (ScoreOperations.class) {
+			return leaderboard;
+		}
+	}
+
+	/* write journaled scores to repository in one transaction, returns their keys */
+	protected long[] insertScores(List<ScoreRecord> records) throws SQLException {
+		return Repositories.getScores().insertScores(records);
+	}
+
+	/* write and replicate journaled scores, then stop journal */
+	public static synchronized void shutdown() {
+		if (journal != null) {
+			journal.shutdown();
 		}
 	}
 
 	/**
-	 * 
+	 *
 	 * Methods for the loading ALL-TIME best Scores
-	 * 
+	 *
 	 */
 
 	/*
-	 * Method to load the highest -count- Scores into an int[] of Gamestyle
-	 * "Gamestyle".
+	 * Method to load the best -count- entries with name, score, gamestyle and
+	 * creation time, from leaderboard or with a single query
 	 */
-	public int[] loadBestScores(int count) {
-		int[] scores = new int[count];
+	public List<HighscoreEntry> loadBestEntries(int count) {
+		Leaderboard board = getLeaderboard();
+		if (board != null) {
+			return board.getBest(count);
+		}
+		Access dbaccess = new Access();
 		try {
 			dbaccess.createConnection();
-			queryString = "SELECT Score FROM " + table + " ORDER BY Score DESC , Pkey DESC LIMIT " + count + "";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			for (int i = 1; i < count + 1; i++) {
-				dbaccess.rs.next();
-				scores[i - 1] = dbaccess.rs.getInt("Score");
-			}
-			dbaccess.con.close();
+			PreparedStatement psmnt = dbaccess.prepare("SELECT " + entryColumns + " FROM " + table
+					+ " ORDER BY Score DESC , Pkey DESC LIMIT ?");
+			psmnt.setInt(1, count);
+			return readEntries(dbaccess, psmnt);
 		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.loadBestScores() collapsed!");
+			logger.fatal("ScoreOperations.loadBestEntries() collapsed!");
 			e.printStackTrace();
+			return new ArrayList<HighscoreEntry>();
+		} finally {
+			dbaccess.closeConnection();
 		}
-		return scores;
+	}
+
+	/*
+	 * Method to load the highest -count- Scores into an int[] of Gamestyle
+	 * "Gamestyle".
+	 */
+	public int[] loadBestScores(int count) {
+		return toScores(loadBestEntries(count), count);
 	}
 
 	/*
 	 * Method to load the highest -count- Scorers into an String[]
 	 */
 	public String[] loadBestScorers(int count) {
-		String[] scorers = new String[count];
-		try {
-			dbaccess.createConnection();
-			queryString = "SELECT Name FROM " + table + " ORDER BY Score DESC , Pkey DESC LIMIT " + count + "";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			for (int i = 1; i < count + 1; i++) {
-				dbaccess.rs.next();
-				scorers[i - 1] = dbaccess.rs.getString("Name");
-			}
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.loadBestScorers() collapsed!");
-			e.printStackTrace();
-		}
-		return scorers;
+		return toNames(loadBestEntries(count), count);
 	}
 
 	/*
 	 * Method to load the highest -count- Gamestyles into an String[]
 	 */
 	public String[] loadBestGamestyles(int count) {
-		String[] gamestyles = new String[count];
+		return toGamestyles(loadBestEntries(count), count);
+	}
+
+	/*
+	 * Method to load the best -count- entries of the last hours, from
+	 * leaderboard or with a single query
+	 */
+	public List<HighscoreEntry> loadBestEntriesOfHours(int count, int hours) {
+		Leaderboard board = getLeaderboard();
+		if (board != null) {
+			return board.getBestOfHours(count, hours);
+		}
+		Access dbaccess = new Access();
 		try {
 			dbaccess.createConnection();
-			queryString = "SELECT Gamestyle FROM " + table + " ORDER BY Score DESC , Pkey DESC LIMIT " + count + "";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			for (int i = 1; i < count + 1; i++) {
-				dbaccess.rs.next();
-				gamestyles[i - 1] = dbaccess.rs.getString("Gamestyle");
-			}
-			dbaccess.con.close();
+			PreparedStatement psmnt = dbaccess.prepare("SELECT " + entryColumns + " FROM " + table + " WHERE "
+					+ ofHoursCondition + " ORDER BY Score DESC , Pkey DESC LIMIT ?");
+			psmnt.setInt(1, hours);
+			psmnt.setInt(2, count);
+			return readEntries(dbaccess, psmnt);
 		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.loadBestScorers() collapsed!");
+			logger.fatal("ScoreOperations.loadBestEntriesOfHours() collapsed!");
 			e.printStackTrace();
+			return new ArrayList<HighscoreEntry>();
+		} finally {
+			dbaccess.closeConnection();
 		}
-		return gamestyles;
 	}
 
 	/*
@@ -129,22 +227,7 @@ public class ScoreOperations {
 	 * int[]".
 	 */
 	public int[] loadBestScoresOfHours(int count, int hours) {
-		int[] scores = new int[count];
-		try {
-			dbaccess.createConnection();
-			queryString = "SELECT Score FROM " + table + " WHERE CreationTime > DATE_SUB(NOW(), INTERVAL " + hours
-					+ " HOUR) " + "OR CreationTime = 0000-00-00 ORDER BY Score DESC , Pkey DESC LIMIT " + count + "";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			for (int i = 1; i < count + 1; i++) {
-				dbaccess.rs.next();
-				scores[i - 1] = dbaccess.rs.getInt("Score");
-			}
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.loadBestScoresOfToday() collapsed!");
-			e.printStackTrace();
-		}
-		return scores;
+		return toScores(loadBestEntriesOfHours(count, hours), count);
 	}
 
 	/*
@@ -152,22 +235,7 @@ public class ScoreOperations {
 	 * String[]
 	 */
 	public String[] loadBestScorersOfHours(int count, int hours) {
-		String[] scorers = new String[count];
-		try {
-			dbaccess.createConnection();
-			queryString = "SELECT Name FROM " + table + " WHERE CreationTime > DATE_SUB(NOW(), INTERVAL " + hours
-					+ " HOUR) " + "OR CreationTime = 0000-00-00 ORDER BY Score DESC , Pkey DESC LIMIT " + count + "";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			for (int i = 1; i < count + 1; i++) {
-				dbaccess.rs.next();
-				scorers[i - 1] = dbaccess.rs.getString("Name");
-			}
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.loadBestScorers() collapsed!");
-			e.printStackTrace();
-		}
-		return scorers;
+		return toNames(loadBestEntriesOfHours(count, hours), count);
 	}
 
 	/*
@@ -175,102 +243,134 @@ public class ScoreOperations {
 	 * String[]
 	 */
 	public String[] loadBestGamestylesOfHours(int count, int hours) {
-		String[] gamestyles = new String[count];
-		try {
-			dbaccess.createConnection();
-			queryString = "SELECT Gamestyle FROM " + table + " WHERE CreationTime > DATE_SUB(NOW(), INTERVAL " + hours
-					+ " HOUR) " + "OR CreationTime = 0000-00-00 ORDER BY Score DESC , Pkey DESC LIMIT " + count + "";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			for (int i = 1; i < count + 1; i++) {
-				dbaccess.rs.next();
-				gamestyles[i - 1] = dbaccess.rs.getString("Gamestyle");
-			}
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.loadBestScorers() collapsed!");
-			e.printStackTrace();
+		return toGamestyles(loadBestEntriesOfHours(count, hours), count);
+	}
+
+	/* execute query selecting entryColumns and read entries */
+	protected List<HighscoreEntry> readEntries(Access dbaccess, PreparedStatement psmnt) throws SQLException {
+		List<HighscoreEntry> entries = new ArrayList<HighscoreEntry>();
+		dbaccess.rs = psmnt.executeQuery();
+		while (dbaccess.rs.next()) {
+			entries.add(new HighscoreEntry(dbaccess.rs.getLong(1), dbaccess.rs.getString(2), dbaccess.rs.getInt(3),
+					dbaccess.rs.getString(4), dbaccess.rs.getLong(5) * 1000));
 		}
-		return gamestyles;
+		return entries;
 	}
 
 	/*
-	 * Method to query the highscore rank of a player
-	 * 
+	 * Method to query the highscore rank of a player, which is one plus the
+	 * count of strictly better scores
+	 *
 	 * @param: score: score of a player
-	 * 
+	 *
 	 * @param: gamestyle: chosen gamestyle (A, B or C), null if all gamestyles
 	 */
 	public int queryHighscoreRank(int score, String gamestyle) {
+		Leaderboard board = getLeaderboard();
+		if (board != null) {
+			return board.getRank(score, gamestyle);
+		}
 		int rank = 1;
+		Access dbaccess = new Access();
 		try {
 			dbaccess.createConnection();
 
+			PreparedStatement psmnt;
 			if (gamestyle == null) {
-				queryString = "SELECT Score FROM " + table + " WHERE Score >= " + score + " "
-						+ "ORDER BY Score DESC , Pkey DESC";
+				psmnt = dbaccess.prepare("SELECT COUNT(*) FROM " + table + " WHERE Score > ?");
+				psmnt.setInt(1, score);
 			} else {
-				queryString = "SELECT Score, Gamestyle FROM " + table + " WHERE Score >= " + score + " "
-						+ "AND Gamestyle = '" + gamestyle + "' " + "ORDER BY Score DESC , Pkey DESC";
+				psmnt = dbaccess.prepare("SELECT COUNT(*) FROM " + table + " WHERE Score > ? AND Gamestyle = ?");
+				psmnt.setInt(1, score);
+				psmnt.setString(2, gamestyle);
 			}
 
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			dbaccess.rs.next();
-			while (score < dbaccess.rs.getInt("Score")) {
-				rank++;
-				dbaccess.rs.next();
+			dbaccess.rs = psmnt.executeQuery();
+			if (dbaccess.rs.next()) {
+				rank += dbaccess.rs.getInt(1);
 			}
-			dbaccess.con.close();
 		} catch (SQLException | ClassNotFoundException e) {
 			logger.fatal("ScoreOperations.queryHighscoreRank() collapsed!");
 			e.printStackTrace();
+		} finally {
+			dbaccess.closeConnection();
 		}
 		return rank;
 	}
 
 	public int queryHighscoreRankOfHours(int score, String gamestyle, int hours) {
+		Leaderboard board = getLeaderboard();
+		if (board != null) {
+			return board.getRankOfHours(score, gamestyle, hours);
+		}
 		int rank = 1;
+		Access dbaccess = new Access();
 		try {
 			dbaccess.createConnection();
 
+			PreparedStatement psmnt;
 			if (gamestyle == null) {
-				queryString = "SELECT Score FROM " + table + " WHERE Score >= " + score + " "
-						+ "AND CreationTime >DATE_SUB(Now(), INTERVAL " + hours + " HOUR) "
-						+ "OR CreationTime = 0000-00-00 " + "ORDER BY Score DESC , Pkey DESC";
+				psmnt = dbaccess
+						.prepare("SELECT COUNT(*) FROM " + table + " WHERE Score > ? AND " + ofHoursCondition);
+				psmnt.setInt(1, score);
+				psmnt.setInt(2, hours);
 			} else {
-				queryString = "SELECT Score, Gamestyle FROM " + table + " WHERE Score >= " + score + " "
-						+ "AND Gamestyle = '" + gamestyle + "' " + "AND CreationTime >DATE_SUB(Now(), INTERVAL " + hours
-						+ " HOUR) " + "OR CreationTime = 0000-00-00 " + "ORDER BY Score DESC , Pkey DESC";
+				psmnt = dbaccess.prepare(
+						"SELECT COUNT(*) FROM " + table + " WHERE Score > ? AND " + ofHoursOfGamestyleCondition);
+				psmnt.setInt(1, score);
+				psmnt.setString(2, gamestyle);
+				psmnt.setInt(3, hours);
 			}
 
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			dbaccess.rs.next();
-			while (score < dbaccess.rs.getInt("Score")) {
-				rank++;
-				dbaccess.rs.next();
+			dbaccess.rs = psmnt.executeQuery();
+			if (dbaccess.rs.next()) {
+				rank += dbaccess.rs.getInt(1);
 			}
-			dbaccess.con.close();
 		} catch (SQLException | ClassNotFoundException e) {
 			logger.fatal("ScoreOperations.queryHighscoreRank() collapsed!");
 			e.printStackTrace();
+		} finally {
+			dbaccess.closeConnection();
 		}
 		return rank;
 	}
 
+	/* scores of entries, zero where list is shorter than count */
+	protected int[] toScores(List<HighscoreEntry> entries, int count) {
+		int[] scores = new int[count];
+		for (int i = 0; i < count && i < entries.size(); i++) {
+			scores[i] = entries.get(i).getScore();
+		}
+		return scores;
+	}
+
+	/* names of entries, null where list is shorter than count */
+	protected String[] toNames(List<HighscoreEntry> entries, int count) {
+		String[] names = new String[count];
+		for (int i = 0; i < count && i < entries.size(); i++) {
+			names[i] = entries.get(i).getName();
+		}
+		return names;
+	}
+
+	/* gamestyles of entries, null where list is shorter than count */
+	protected String[] toGamestyles(List<HighscoreEntry> entries, int count) {
+		String[] gamestyles = new String[count];
+		for (int i = 0; i < count && i < entries.size(); i++) {
+			gamestyles[i] = entries.get(i).getGamestyle();
+		}
+		return gamestyles;
+	}
+
 	/*
 	 * helper Method to get the highest Pkey of Scores
 	 */
 	public int getMaxPkey() {
-		int maxID = 1;
 		try {
-			dbaccess.createConnection();
-			queryString = "SELECT Pkey from " + table + " ORDER BY Pkey DESC LIMIT 1;";
-			dbaccess.rs = dbaccess.st.executeQuery(queryString);
-			dbaccess.rs.next();
-			maxID = dbaccess.rs.getInt("Pkey");
-		} catch (ClassNotFoundException | SQLException e) {
+			return (int) Math.max(1, Repositories.getScores().getMaxKey());
+		} catch (SQLException e) {
 			e.printStackTrace();
+			return 1;
 		}
-
-		return maxID;
 	}
 }
@@ -0,0 +1,100 @@
+package schaugenau.database;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * One finished round as it is saved into the scores table.
+ *
+ * @author agent
+ *
+ */
+
+public class ScoreRecord {
+
+	/** fields **/
+	protected final long creationTime;
+	protected final String gamestyle;
+	protected final int score;
+	protected final String name;
+	protected final int playedTime;
+	protected final int maxMultiplicator;
+	protected final double avMultiplicator;
+	protected final int correctPictures;
+	protected final int incorrectPictures;
+
+	/** methods **/
+
+	/* constructor */
+	public ScoreRecord(long creationTime, String gamestyle, int score, String name, int playedTime,
+			int maxMultiplicator, double avMultiplicator, int correctPictures, int incorrectPictures) {
+		this.creationTime = creationTime;
+		this.gamestyle = gamestyle;
+		this.score = score;
+		this.name = name;
+		this.playedTime = playedTime;
+		this.maxMultiplicator = maxMultiplicator;
+		this.avMultiplicator = avMultiplicator;
+		this.correctPictures = correctPictures;
+		this.incorrectPictures = incorrectPictures;
+	}
+
+	/* write compact binary form */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeLong(creationTime);
+		out.writeUTF(gamestyle);
+		out.writeInt(score);
+		out.writeUTF(name);
+		out.writeInt(playedTime);
+		out.writeInt(maxMultiplicator);
+		out.writeDouble(avMultiplicator);
+		out.writeInt(correctPictures);
+		out.writeInt(incorrectPictures);
+	}
+
+	/* read compact binary form */
+	public static ScoreRecord read(DataInputStream in) throws IOException {
+		return new ScoreRecord(in.readLong(), in.readUTF(), in.readInt(), in.readUTF(), in.readInt(), in.readInt(),
+				in.readDouble(), in.readInt(), in.readInt());
+	}
+
+	public long getCreationTime() {
+		return creationTime;
+	}
+
+	public String getGamestyle() {
+		return gamestyle;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPlayedTime() {
+		return playedTime;
+	}
+
+	public int getMaxMultiplicator() {
+		return maxMultiplicator;
+	}
+
+	public double getAvMultiplicator() {
+		return avMultiplicator;
+	}
+
+	public int getCorrectPictures() {
+		return correctPictures;
+	}
+
+	public int getIncorrectPictures() {
+		return incorrectPictures;
+	}
+}
@@ -0,0 +1,26 @@
+package schaugenau.database;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Storage of scores, implemented by database server and local file.
+ *
+ * @author agent
+ *
+ */
+
+public interface ScoreRepository {
+
+	/* store scores all or none, returns their keys */
+	public long[] insertScores(List<ScoreRecord> records) throws SQLException;
+
+	/* all scores, oldest first, sequence is the key */
+	public List<HighscoreEntry> loadEntries() throws SQLException;
+
+	/* highest key of scores, zero if there is none */
+	public long getMaxKey() throws SQLException;
+}
@@ -0,0 +1,169 @@
+package schaugenau.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Scores of the last hours, kept up to date while time passes. Dated scores
+ * are put into a ring of per-minute buckets. When the window slides, buckets
+ * falling out of it are removed from the sorted set and the rank counters.
+ * Scores of the oldest bucket are checked by their exact time, so results
+ * match the SQL condition. Placeholders without date never expire and count
+ * for the rank within every gamestyle.
+ *
+ * @author agent
+ *
+ */
+
+public class ScoreWindow {
+
+	/** defines **/
+	protected static final long minuteMillis = 60 * 1000;
+
+	/** fields **/
+	protected final int hours;
+	protected final List<List<HighscoreEntry>> buckets;
+	protected long headMinute;
+
+	/* scores within window */
+	protected final TreeSet<HighscoreEntry> entries;
+	protected final Leaderboard.ScoreCounter allCounter;
+	protected final Map<String, Leaderboard.ScoreCounter> gamestyleCounters;
+
+	/* placeholders, not part of gamestyle counters */
+	protected final Leaderboard.ScoreCounter undatedCounter;
+
+	/** methods **/
+
+	/* constructor */
+	public ScoreWindow(int hours, long now) {
+		this.hours = hours;
+		int size = hours * 60 + 1;
+		this.buckets = new ArrayList<List<HighscoreEntry>>(size);
+		for (int i = 0; i < size; i++) {
+			buckets.add(new ArrayList<HighscoreEntry>());
+		}
+		this.headMinute = now / minuteMillis;
+		this.entries = new TreeSet<HighscoreEntry>();
+		this.allCounter = new Leaderboard.ScoreCounter();
+		this.gamestyleCounters = new HashMap<String, Leaderboard.ScoreCounter>();
+		this.undatedCounter = new Leaderboard.ScoreCounter();
+	}
+
+	/* add score, ignored if already out of window */
+	public void add(HighscoreEntry entry, long now) {
+		advance(now);
+		long minute = entry.getCreationTime() / minuteMillis;
+		if (entry.getCreationTime() != 0) {
+			if (minute <= headMinute - buckets.size()) {
+				return;
+			}
+
+			/* scores from the future are kept in current bucket */
+			minute = Math.min(minute, headMinute);
+			buckets.get(getSlot(minute)).add(entry);
+		}
+		if (entries.add(entry)) {
+			allCounter.add(entry.getScore());
+			if (entry.getCreationTime() == 0) {
+				undatedCounter.add(entry.getScore());
+			} else {
+				getCounter(entry.getGamestyle()).add(entry.getScore());
+			}
+		}
+	}
+
+	/* rank among scores of window, gamestyle null for all */
+	public int getRank(int score, String gamestyle, long now) {
+		advance(now);
+		Leaderboard.ScoreCounter counter = gamestyle == null ? allCounter : gamestyleCounters.get(gamestyle);
+		int better = counter == null ? 0 : counter.countAbove(score);
+		if (gamestyle != null) {
+			better += undatedCounter.countAbove(score);
+		}
+
+		/* oldest bucket is only partly within window */
+		for (HighscoreEntry entry : getOldestBucket()) {
+			if (entry.getScore() > score && !entry.isOfHours(hours, now)
+					&& (gamestyle == null || gamestyle.equals(entry.getGamestyle()))) {
+				better--;
+			}
+		}
+		return 1 + better;
+	}
+
+	/* best scores of window */
+	public List<HighscoreEntry> getBest(int count, long now) {
+		advance(now);
+		List<HighscoreEntry> best = new ArrayList<HighscoreEntry>(count);
+		for (HighscoreEntry entry : entries) {
+			if (best.size() >= count) {
+				break;
+			}
+			if (entry.isOfHours(hours, now)) {
+				best.add(entry);
+			}
+		}
+		return best;
+	}
+
+	/* get count of scores within window */
+	public int size() {
+		return entries.size();
+	}
+
+	/* expire buckets which fell out of window */
+	protected void advance(long now) {
+		long minute = now / minuteMillis;
+		if (minute - headMinute >= buckets.size()) {
+
+			/* everything is older, only keep placeholders */
+			for (List<HighscoreEntry> bucket : buckets) {
+				expire(bucket);
+			}
+		} else {
+			for (long m = headMinute + 1; m <= minute; m++) {
+				expire(buckets.get(getSlot(m)));
+			}
+		}
+		headMinute = Math.max(headMinute, minute);
+	}
+
+	/* remove scores of bucket from window */
+	protected void expire(List<HighscoreEntry> bucket) {
+		for (HighscoreEntry entry : bucket) {
+			if (entries.remove(entry)) {
+				allCounter.remove(entry.getScore());
+				getCounter(entry.getGamestyle()).remove(entry.getScore());
+			}
+		}
+		bucket.clear();
+	}
+
+	/* bucket which expires next */
+	protected List<HighscoreEntry> getOldestBucket() {
+		return buckets.get(getSlot(headMinute + 1));
+	}
+
+	/* slot of minute in ring */
+	protected int getSlot(long minute) {
+		return (int) (minute % buckets.size());
+	}
+
+	/* counter of gamestyle, created if not there */
+	protected Leaderboard.ScoreCounter getCounter(String gamestyle) {
+		String key = gamestyle == null ? "" : gamestyle;
+		Leaderboard.ScoreCounter counter = gamestyleCounters.get(key);
+		if (counter == null) {
+			counter = new Leaderboard.ScoreCounter();
+			gamestyleCounters.put(key, counter);
+		}
+		return counter;
+	}
+}
@@ -0,0 +1,75 @@
+package schaugenau.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Immutable snapshot of all survey sessions, loaded at once from the survey
+ * repository. Items of each session are ordered by their priority. A refresh
+ * builds a new catalogue instead of changing this one.
+ *
+ * @author agent
+ *
+ */
+
+public class SurveyCatalogue {
+
+	/** fields **/
+	protected final Map<Integer, List<SurveyItemDefinition>> sessions;
+	protected final List<Integer> sessionIDs;
+	protected final long loadTime;
+
+	/** methods **/
+
+	/* constructor, items have to be ordered by session and priority */
+	public SurveyCatalogue(List<SurveyItemDefinition> items, long loadTime) {
+		Map<Integer, List<SurveyItemDefinition>> sessions = new TreeMap<Integer, List<SurveyItemDefinition>>();
+		for (SurveyItemDefinition item : items) {
+			List<SurveyItemDefinition> session = sessions.get(item.getSession());
+			if (session == null) {
+				session = new ArrayList<SurveyItemDefinition>();
+				sessions.put(item.getSession(), session);
+			}
+			session.add(item);
+		}
+		for (Map.Entry<Integer, List<SurveyItemDefinition>> entry : sessions.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		this.sessions = Collections.unmodifiableMap(sessions);
+		this.sessionIDs = Collections.unmodifiableList(new ArrayList<Integer>(sessions.keySet()));
+		this.loadTime = loadTime;
+	}
+
+	/* items of session, empty if unknown */
+	public List<SurveyItemDefinition> getSession(int session) {
+		List<SurveyItemDefinition> items = sessions.get(session);
+		if (items == null) {
+			return Collections.emptyList();
+		}
+		return items;
+	}
+
+	/* ids of sessions having items, ascending */
+	public List<Integer> getSessionIDs() {
+		return sessionIDs;
+	}
+
+	/* get count of items in all sessions */
+	public int size() {
+		int size = 0;
+		for (List<SurveyItemDefinition> items : sessions.values()) {
+			size += items.size();
+		}
+		return size;
+	}
+
+	public long getLoadTime() {
+		return loadTime;
+	}
+}
@@ -0,0 +1,96 @@
+package schaugenau.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Data of one survey item as stored in the database, in both languages.
+ * Immutable, so it can be shared between loader thread and render thread.
+ *
+ * @author agent
+ *
+ */
+
+public class SurveyItemDefinition {
+
+	/** fields **/
+	protected final int id;
+	protected final String type;
+	protected final int session;
+	protected final int orderPriority;
+	protected final String questionEN;
+	protected final String questionDE;
+	protected final List<String> answersEN;
+	protected final List<String> answersDE;
+	protected final String likertLeftEN;
+	protected final String likertRightEN;
+	protected final String likertLeftDE;
+	protected final String likertRightDE;
+
+	/** methods **/
+
+	/* constructor, missing answers are left out */
+	public SurveyItemDefinition(int id, String type, int session, int orderPriority, String questionEN,
+			String questionDE, String[] answersEN, String[] answersDE, String likertLeftEN, String likertRightEN,
+			String likertLeftDE, String likertRightDE) {
+		this.id = id;
+		this.type = type;
+		this.session = session;
+		this.orderPriority = orderPriority;
+		this.questionEN = questionEN;
+		this.questionDE = questionDE;
+		this.answersEN = toAnswers(answersEN);
+		this.answersDE = toAnswers(answersDE);
+		this.likertLeftEN = likertLeftEN;
+		this.likertRightEN = likertRightEN;
+		this.likertLeftDE = likertLeftDE;
+		this.likertRightDE = likertRightDE;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public int getSession() {
+		return session;
+	}
+
+	public int getOrderPriority() {
+		return orderPriority;
+	}
+
+	public String getQuestion(boolean english) {
+		return english ? questionEN : questionDE;
+	}
+
+	public List<String> getAnswers(boolean english) {
+		return english ? answersEN : answersDE;
+	}
+
+	public String getLikertLeft(boolean english) {
+		return english ? likertLeftEN : likertLeftDE;
+	}
+
+	public String getLikertRight(boolean english) {
+		return english ? likertRightEN : likertRightDE;
+	}
+
+	/* unmodifiable list of given answers */
+	protected static List<String> toAnswers(String[] answers) {
+		List<String> list = new ArrayList<String>(answers.length);
+		for (String answer : answers) {
+			if (answer != null) {
+				list.add(answer);
+			}
+		}
+		return Collections.unmodifiableList(list);
+	}
+}
@@ -1,20 +1,14 @@
 package schaugenau.database;
 
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
-import schaugenau.app.App;
-import schaugenau.gui.GuiAdapter;
-import schaugenau.state.survey.ChoiceItem;
-import schaugenau.state.survey.DecisionItem;
-import schaugenau.state.survey.LikertScalaItem;
-import schaugenau.state.survey.SurveyItem;
-
 /**
  * Distributed under the MIT License. (See accompanying file LICENSE or copy at
  * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
@@ -28,19 +22,18 @@ public class SurveyOperations {
 	/* Select table */
 	protected String table;
 
-	/* querystring */
-	private static String queryString;
-
-	/* accessing database */
-	private static Access dbaccess = null;
+	/* sessions rarely change, so they are cached and refreshed in background */
+	protected static final int catalogueRefreshMinutes = 10;
+	private static volatile SurveyCatalogue catalogue;
+	private static ScheduledExecutorService refresher;
 
 	/* logging */
 	private static Logger logger = Logger.getLogger(SurveyOperations.class);
 
 	/* constructor */
 	public SurveyOperations() {
-		dbaccess = new Access();
 		table = "surveyitems";
+		prefetch();
 	}
 
 	/* language */
@@ -58,11 +51,12 @@ public class SurveyOperations {
 	 * Method to save new surveyItems in database
 	 */
 	public void saveSurveyItem() {
+		Access dbaccess = new Access();
 		try {
 			logger.info("Storing surveyItem into database");
 			PreparedStatement psmnt = null;
 			dbaccess.createConnection();
-			psmnt = dbaccess.con.prepareStatement("INSERT INTO " + table + "(Type, QuestionEN, QuestionDE, "
+			psmnt = dbaccess.prepare("INSERT INTO " + table + "(Type, QuestionEN, QuestionDE, "
 					+ "AnswerM1EN, AnswerM2EN, AnswerM3EN, " + "AnswerM1DE, AnswerM2DE, AnswerM3DE, "
 					+ "AnswerLikertLeftEN, AnswerLikertRightEN, AnswerLikertLeftDE, "
 					+ "AnswerLikertRightDE, SessionID, OrderPriority)" + "values(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
@@ -89,10 +83,11 @@ public class SurveyOperations {
 			} else {
 				System.out.println("Upload failed");
 			}
-			dbaccess.con.close();
 		} catch (ClassNotFoundException | SQLException e) {
 			logger.fatal("SurveyOperations.saveSurveyItem collapsed!");
 			e.printStackTrace();
+		} finally {
+			dbaccess.closeConnection();
 		}
 	}
 
@@ -101,126 +96,79 @@ public class SurveyOperations {
 	 */
 	public int getSessionCount() throws SQLException, ClassNotFoundException {
 		int sessionCount;
-		dbaccess.createConnection();
-		queryString = "SELECT SessionID from " + table + " ORDER BY SessionID DESC LIMIT 1;";
-		dbaccess.rs = dbaccess.st.executeQuery(queryString);
-		dbaccess.rs.next();
-		sessionCount = dbaccess.rs.getInt("SessionID");
+		Access dbaccess = new Access();
+		try {
+			dbaccess.createConnection();
+			PreparedStatement psmnt = dbaccess
+					.prepare("SELECT SessionID from " + table + " ORDER BY SessionID DESC LIMIT 1");
+			dbaccess.rs = psmnt.executeQuery();
+			dbaccess.rs.next();
+			sessionCount = dbaccess.rs.getInt("SessionID");
+		} finally {
+			dbaccess.closeConnection();
+		}
 		return sessionCount;
 	}
 
 	/*
-	 * Method to load one Session from the database
+	 * Method to load all sessions from the database, blocks until done
 	 */
-	public List<SurveyItem> getSession(int session, App app, GuiAdapter guiAdapter) {
-		List<SurveyItem> resultList = new LinkedList<SurveyItem>();
-		List<String> answers = new LinkedList<String>();
-		LikertScalaItem likertScalaItem = null;
-		ChoiceItem choiceItem = null;
-		DecisionItem decisionItem = null;
+	public SurveyCatalogue loadCatalogue() throws SQLException {
+		long start = System.nanoTime();
+		SurveyCatalogue loaded = Repositories.getSurveys().loadCatalogue();
+		catalogue = loaded;
+		logger.info("Loaded survey catalogue with " + loaded.getSessionIDs().size() + " sessions and " + loaded.size()
+				+ " items in " + (System.nanoTime() - start) / 1000000 + "ms");
+		return loaded;
+	}
 
-		try {
-			dbaccess.createConnection();
-			queryString = "SELECT Type, QuestionEN, QuestionDE, " + "AnswerM1EN, AnswerM2EN, AnswerM3EN, "
-					+ "AnswerM1DE, AnswerM2DE, AnswerM3DE, "
-					+ "AnswerLikertLeftEN, AnswerLikertRightEN, AnswerLikertLeftDE, "
-					+ "AnswerLikertRightDE, SessionID, OrderPriority, Pkey FROM " + table + " WHERE SessionID = '"
-					+ session + "' ORDER BY OrderPriority ASC";
-			PreparedStatement psmnt = dbaccess.con.prepareStatement(queryString);
-			ResultSet rs = psmnt.executeQuery();
-			while (rs.next()) {
-
-				boolean likertScala = false;
-				boolean choice = false;
-				boolean decision = false;
-				String question = null;
-				String answerM1 = null;
-				String answerM2 = null;
-				String answerM3 = null;
-				String answerLikertLeft = null;
-				String answerLikertRight = null;
-
-				String type = rs.getString(1);
-				String QuestionEN = rs.getString(2);
-				String QuestionDE = rs.getString(3);
-				String AnswerM1EN = rs.getString(4);
-				String AnswerM2EN = rs.getString(5);
-				String AnswerM3EN = rs.getString(6);
-				String AnswerM1DE = rs.getString(7);
-				String AnswerM2DE = rs.getString(8);
-				String AnswerM3DE = rs.getString(9);
-				String AnswerLikertLeftEN = rs.getString(10);
-				String AnswerLikertRightEN = rs.getString(11);
-				String AnswerLikertLeftDE = rs.getString(12);
-				String AnswerLikertRightDE = rs.getString(13);
-				int ItemID = rs.getInt(16);
-
-				if (getLanguage() == "english") {
-					question = QuestionEN;
-					answerM1 = AnswerM1EN;
-					answerM2 = AnswerM2EN;
-					answerM3 = AnswerM3EN;
-					answerLikertLeft = AnswerLikertLeftEN;
-					answerLikertRight = AnswerLikertRightEN;
-				} else {
-					question = QuestionDE;
-					answerM1 = AnswerM1DE;
-					answerM2 = AnswerM2DE;
-					answerM3 = AnswerM3DE;
-					answerLikertLeft = AnswerLikertLeftDE;
-					answerLikertRight = AnswerLikertRightDE;
-				}
+	/*
+	 * Method to get the cached sessions without waiting, null if not loaded yet
+	 */
+	public SurveyCatalogue getCatalogue() {
+		prefetch();
+		return catalogue;
+	}
 
-				if (type.equals("likert")) {
-					likertScala = true;
-					likertScalaItem = new LikertScalaItem(app, guiAdapter, "Likert", question, answerLikertLeft,
-							answerLikertRight, ItemID);
-				} else if (type.equals("choice")) {
-					choice = true;
-					answers.clear();
-					if (answerM1 != null) {
-						answers.add(answerM1);
-					}
-					if (answerM2 != null) {
-						answers.add(answerM2);
-					}
-					if (answerM3 != null) {
-						answers.add(answerM3);
-					}
-					choiceItem = new ChoiceItem(app, guiAdapter, "Choice", question, answers, ItemID);
-				} else if (type.equals("decision")) {
-					decision = true;
-					decisionItem = new DecisionItem(app, guiAdapter, "Decision", question, ItemID);
+	/*
+	 * Method to start loading and periodic refreshing of sessions in background
+	 */
+	public void prefetch() {
+		synchronized (SurveyOperations.class) {
+			if (refresher != null) {
+				return;
+			}
+			refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "SurveyCatalogueRefresher");
+					thread.setDaemon(true);
+					return thread;
 				}
+			});
+		}
 
-				if (likertScala) {
-					resultList.add(likertScalaItem);
-				} else if (choice) {
-					resultList.add(choiceItem);
-				} else if (decision) {
-					resultList.add(decisionItem);
+		/* failed refresh keeps old catalogue, loading is tried again next time */
+		refresher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					loadCatalogue();
+				} catch (SQLException | RuntimeException e) {
+					logger.warn("Could not refresh survey catalogue: " + e.getMessage());
 				}
 			}
-
-		} catch (ClassNotFoundException | SQLException e) {
-			e.printStackTrace();
-		}
-		return resultList;
+		}, 0, catalogueRefreshMinutes, TimeUnit.MINUTES);
 	}
 
 	/*
 	 * Method to save result in the database
 	 */
-	public void saveResult(String gamestyle, int score, int itemID, int choice, int participant) {
+	public void saveResult(String gamestyle, int score, int itemID, int choice, long participant) {
 		try {
-			dbaccess.createConnection();
-			queryString = "INSERT INTO surveyresults SET" + " Gamestyle = '" + gamestyle + "'," + " Score = '" + score
-					+ "'," + " ItemID = '" + itemID + "'," + " Choice = '" + choice + "'," + " Participant = '"
-					+ participant + "'";
-			dbaccess.st.executeUpdate(queryString);
-			dbaccess.con.close();
-		} catch (ClassNotFoundException | SQLException e) {
-			logger.fatal("ScoreOperations.saveScore() collapsed!");
+			Repositories.getSurveys().saveResult(new SurveyResult(gamestyle, score, itemID, choice, participant));
+		} catch (SQLException e) {
+			logger.fatal("SurveyOperations.saveResult() collapsed!");
 			e.printStackTrace();
 		}
 	}
@@ -0,0 +1,23 @@
+package schaugenau.database;
+
+import java.sql.SQLException;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Storage of survey items and results, implemented by database server and
+ * local file.
+ *
+ * @author agent
+ *
+ */
+
+public interface SurveyRepository {
+
+	/* all survey sessions */
+	public SurveyCatalogue loadCatalogue() throws SQLException;
+
+	/* store answer to one item */
+	public void saveResult(SurveyResult result) throws SQLException;
+}
@@ -0,0 +1,58 @@
+package schaugenau.database;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Answer to one survey item. Participant is the key of the score of the
+ * player.
+ *
+ * @author agent
+ *
+ */
+
+public class SurveyResult {
+
+	/** fields **/
+	protected final String gamestyle;
+	protected final int score;
+	protected final int itemID;
+	protected final int choice;
+	protected final long participant;
+
+	/** methods **/
+
+	/* constructor */
+	public SurveyResult(String gamestyle, int score, int itemID, int choice, long participant) {
+		this.gamestyle = gamestyle;
+		this.score = score;
+		this.itemID = itemID;
+		this.choice = choice;
+		this.participant = participant;
+	}
+
+	/* copy with other participant */
+	public SurveyResult withParticipant(long participant) {
+		return new SurveyResult(gamestyle, score, itemID, choice, participant);
+	}
+
+	public String getGamestyle() {
+		return gamestyle;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public int getItemID() {
+		return itemID;
+	}
+
+	public int getChoice() {
+		return choice;
+	}
+
+	public long getParticipant() {
+		return participant;
+	}
+}
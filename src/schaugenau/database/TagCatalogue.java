@@ -0,0 +1,90 @@
+package schaugenau.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * In-process catalogue of all distinct picture tags, one per language. Tags
+ * are fetched with a single aggregate query and reused until they expire or
+ * are invalidated, e.g. after new pictures were imported.
+ *
+ * @author agent
+ *
+ */
+
+public class TagCatalogue {
+
+	/** fields **/
+	protected final String table;
+	protected final long refreshIntervalMillis;
+	protected final Map<String, Tags> tagsByColumn;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(TagCatalogue.class);
+
+	/** methods **/
+
+	/* constructor */
+	public TagCatalogue(String table, long refreshIntervalMillis) {
+		this.table = table;
+		this.refreshIntervalMillis = refreshIntervalMillis;
+		this.tagsByColumn = new ConcurrentHashMap<String, Tags>();
+	}
+
+	/* get distinct tags of column, queries database only if cached tags expired */
+	public List<String> getTags(Access dbaccess, String tagColumn) throws SQLException {
+		Tags tags = tagsByColumn.get(tagColumn);
+		if (tags == null || System.currentTimeMillis() - tags.loaded > refreshIntervalMillis) {
+			tags = load(dbaccess, tagColumn);
+			tagsByColumn.put(tagColumn, tags);
+		}
+		return tags.tags;
+	}
+
+	/* forget all cached tags, next request fetches them again */
+	public void invalidate() {
+		tagsByColumn.clear();
+	}
+
+	/* fetch distinct tags with one query */
+	protected Tags load(Access dbaccess, String tagColumn) throws SQLException {
+		long start = System.nanoTime();
+		PreparedStatement psmnt = dbaccess
+				.prepare("SELECT " + tagColumn + " FROM " + table + " GROUP BY " + tagColumn);
+		List<String> tags = new ArrayList<String>();
+		dbaccess.rs = psmnt.executeQuery();
+		while (dbaccess.rs.next()) {
+			String tag = dbaccess.rs.getString(1);
+			if (tag != null) {
+				tags.add(tag);
+			}
+		}
+		logger.debug("Loaded " + tags.size() + " tags of " + tagColumn + " in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		return new Tags(Collections.unmodifiableList(tags), System.currentTimeMillis());
+	}
+
+	/** inner classes **/
+
+	/* immutable tags with time of loading */
+	protected static class Tags {
+
+		protected final List<String> tags;
+		protected final long loaded;
+
+		protected Tags(List<String> tags, long loaded) {
+			this.tags = tags;
+			this.loaded = loaded;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package schaugenau.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * @author agent
+ *
+ */
+
+public class TestScoreJournal {
+
+	/*
+	 * Main class for testing the score journal without database
+	 *
+	 * A write which fails after half of a batch must not leave bytes which
+	 * hide later scores from replication, neither before nor after a restart.
+	 * Neither must a checkpoint which could not be reset when the journal was
+	 * compacted.
+	 *
+	 */
+
+	public static void main(String[] args) throws IOException {
+		File directory = Files.createTempDirectory("scoreJournal").toFile();
+		File journalFile = new File(directory, "scores.journal");
+		File checkpointFile = new File(directory, "scores.checkpoint");
+		boolean passed = true;
+
+		/* first run, database is down so nothing is replicated */
+		RecordingOperations offline = new RecordingOperations(false);
+		TornJournal journal = new TornJournal(journalFile, checkpointFile, offline);
+		journal.append(record("A", 10));
+		journal.flush();
+		journal.tearNextWrite = true;
+		journal.append(record("B", 20));
+		journal.flush();
+		journal.append(record("C", 30));
+		journal.flush();
+		journal.append(new ScoreRecord(0, null, 40, null, 0, 0, 0, 0, 0));
+		journal.append(record("D", 50));
+		journal.flush();
+		journal.shutdown();
+
+		/* second run, database is up again */
+		RecordingOperations online = new RecordingOperations(true);
+		ScoreJournal restarted = new ScoreJournal(journalFile, checkpointFile, online);
+		CompletableFuture<Long> key = restarted.append(record("E", 60));
+		restarted.shutdown();
+		List<String> names = new ArrayList<String>();
+		for (ScoreRecord record : online.inserted) {
+			names.add(record.getName());
+		}
+		passed &= check("all scores are replicated in order after restart, got " + names,
+				names.toString().equals("[A, B, C, D, E]"));
+		passed &= check("key of new score is the one of database", key.getNow(-1L) == 5);
+		passed &= check("journal is compacted", journalFile.length() == 0);
+
+		/* first run, checkpoint cannot be reset when replicated journal is compacted */
+		RecordingOperations flaky = new RecordingOperations(true);
+		TornJournal failing = new TornJournal(journalFile, checkpointFile, flaky);
+		failing.failResetCheckpoint = true;
+		failing.append(record("F", 70));
+		failing.flush();
+		failing.replicate();
+		flaky.online = false;
+		failing.append(record("G", 80));
+		failing.append(record("H", 90));
+		failing.flush();
+		failing.shutdown();
+
+		/* second run */
+		RecordingOperations recovered = new RecordingOperations(true);
+		new ScoreJournal(journalFile, checkpointFile, recovered).shutdown();
+		names.clear();
+		for (ScoreRecord record : recovered.inserted) {
+			names.add(record.getName());
+		}
+		passed &= check("scores after failed compaction are replicated after restart, got " + names,
+				names.toString().equals("[G, H]"));
+
+		journalFile.delete();
+		checkpointFile.delete();
+		directory.delete();
+		System.out.println(passed ? "All tests passed" : "Tests failed");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/* score of name */
+	protected static ScoreRecord record(String name, int score) {
+		return new ScoreRecord(System.currentTimeMillis(), "A", score, name, 60, 2, 1.5, 5, 1);
+	}
+
+	/* print result of check */
+	protected static boolean check(String description, boolean result) {
+		System.out.println((result ? "passed: " : "FAILED: ") + description);
+		return result;
+	}
+
+	/* journal whose next write fails after half of the bytes */
+	protected static class TornJournal extends ScoreJournal {
+
+		protected volatile boolean tearNextWrite = false;
+		protected volatile boolean failResetCheckpoint = false;
+
+		public TornJournal(File journalFile, File checkpointFile, ScoreOperations target) {
+			super(journalFile, checkpointFile, target);
+		}
+
+		@Override
+		protected void write(ByteBuffer buffer) throws IOException {
+			if (tearNextWrite) {
+				tearNextWrite = false;
+				ByteBuffer half = buffer.duplicate();
+				half.limit(buffer.position() + buffer.remaining() / 2);
+				channel.write(half);
+				throw new IOException("Simulated full disk");
+			}
+			super.write(buffer);
+		}
+
+		@Override
+		protected void saveCheckpoint() throws IOException {
+			if (failResetCheckpoint && checkpoint == 0) {
+				throw new IOException("Simulated failure of checkpoint");
+			}
+			super.saveCheckpoint();
+		}
+	}
+
+	/* score operations which remember inserted scores instead of using database */
+	protected static class RecordingOperations extends ScoreOperations {
+
+		protected volatile boolean online;
+		protected final List<ScoreRecord> inserted = new ArrayList<ScoreRecord>();
+
+		public RecordingOperations(boolean online) {
+			this.online = online;
+		}
+
+		@Override
+		protected long[] insertScores(List<ScoreRecord> records) throws SQLException {
+			if (!online) {
+				throw new SQLException("Simulated offline database");
+			}
+			long[] keys = new long[records.size()];
+			for (int i = 0; i < keys.length; i++) {
+				inserted.add(records.get(i));
+				keys[i] = inserted.size();
+			}
+			return keys;
+		}
+	}
+}
@@ -1,11 +1,6 @@
 package schaugenau.state.game;
 
 import java.util.LinkedList;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import com.jme3.collision.CollisionResults;
 import com.jme3.math.ColorRGBA;
@@ -26,6 +21,7 @@ import schaugenau.core.AnimNode;
 import schaugenau.core.FadableState;
 import schaugenau.core.SoundManager.Sound;
 import schaugenau.core.StaticEntity;
+import schaugenau.core.UploadQueue;
 import schaugenau.database.PictureOperations;
 import schaugenau.font.Font;
 import schaugenau.font.Text;
@@ -92,6 +88,7 @@ public class GameState extends FadableState {
 	protected final float waitBeforeButterflyHides = 1.0f;
 	protected final float waitBeforePicturesAppear = 0.0f;
 	protected final float durationPictureSelection = 9.0f;
+	protected final float pictureUploadBudget = 4.0f; // milliseconds per frame
 	protected final float waitBeforePickablesSpawnAfterPicturesAppear = 10.0f;
 	protected final float pictureModeFocusAreaWidth = 0.45f;
 	protected final float pictureModeTimeIndicatorWidth = 5;
@@ -163,13 +160,11 @@ public class GameState extends FadableState {
 	protected boolean leftPictureChosen;
 	protected boolean pictureModeFinished;
 	protected boolean pictureModeEndActionsHaveBeenDone;
-	protected ExecutorService pictureService;
-	protected Callable<Picture> callableRightPicture;
-	protected Callable<Picture> callableLeftPicture;
-	protected Future<Picture> futureRightPicture;
-	protected Future<Picture> futureLeftPicture;
+	protected boolean picturesRequested;
+	protected Picture preparedRightPicture;
+	protected Picture preparedLeftPicture;
+	protected UploadQueue uploadQueue;
 	protected int pictureModeHintTextIndex;
-	protected ExecutorService pictureInformationService;
 	protected static int staticCorrectPictureID;
 	protected static boolean staticCorrectPictureWasChosen;
 	protected StaticEntity pictureModeTimeIndicator;
@@ -296,9 +291,8 @@ public class GameState extends FadableState {
 		/* imageLoader */
 		imageLoader = new ImageLoader(app);
 
-		/* create thread pool for pictures */
-		pictureService = Executors.newFixedThreadPool(2);
-		pictureInformationService = Executors.newFixedThreadPool(2);
+		/* upload of pictures to GPU before they appear */
+		uploadQueue = new UploadQueue(app.getRenderManager(), pictureUploadBudget);
 
 		/* debugging stuff */
 		if (debugging) {
@@ -398,6 +392,9 @@ public class GameState extends FadableState {
 			/* raise probability for spiderweb to appear */
 			freqRaiseSpiderweb += tpf * freqRaiseSpiderwebPerSecond;
 
+			/* prepare pictures of next picture mode */
+			preparePictures();
+
 			/* INNER STATE MACHINE */
 
 			/* switch inner states */
@@ -415,35 +412,10 @@ public class GameState extends FadableState {
 						durationUntilPictureMode = schaugenau.utilities.Helper
 								.getValueWithDeviation(timeBetweenPictures, deviationOfTimeBetweenPictures);
 
-						/* do picture instanciation in separate threads */
+						/* pictures are prepared in following frames, see preparePictures() */
 						rightPictureIsCorrect = Math.random() < 0.5;
-
-						callableRightPicture = new Callable<Picture>() {
-							@Override
-							public Picture call() {
-								return new Picture(app, guiAdapter, true, rightPictureIsCorrect, imageLoader);
-							}
-						};
-						callableLeftPicture = new Callable<Picture>() {
-							@Override
-							public Picture call() {
-								return new Picture(app, guiAdapter, false, !rightPictureIsCorrect, imageLoader);
-							}
-						};
-
-						/* kill futures if still running */
-						if (futureRightPicture != null) {
-							futureRightPicture.cancel(true);
-							futureRightPicture = null;
-						}
-						if (futureLeftPicture != null) {
-							futureLeftPicture.cancel(true);
-							futureLeftPicture = null;
-						}
-
-						/* start threads */
-						futureRightPicture = pictureService.submit(callableRightPicture);
-						futureLeftPicture = pictureService.submit(callableLeftPicture);
+						discardPreparedPictures();
+						picturesRequested = true;
 
 						/* set next state */
 						innerStateTime = 0;
@@ -497,11 +469,11 @@ public class GameState extends FadableState {
 							rightPicture = null;
 						}
 
-						try {
-							rightPicture = futureRightPicture.get();
-						} catch (InterruptedException | ExecutionException e) {
+						rightPicture = preparedRightPicture;
+						preparedRightPicture = null;
+						if (rightPicture == null) {
 
-							/* then do the work now */
+							/* not prepared in time, then do the work now */
 							rightPicture = new Picture(app, guiAdapter, true, rightPictureIsCorrect, imageLoader);
 						}
 
@@ -511,13 +483,14 @@ public class GameState extends FadableState {
 							leftPicture = null;
 						}
 
-						try {
-							leftPicture = futureLeftPicture.get();
-						} catch (InterruptedException | ExecutionException e) {
+						leftPicture = preparedLeftPicture;
+						preparedLeftPicture = null;
+						if (leftPicture == null) {
 
-							/* then do the work now */
+							/* not prepared in time, then do the work now */
 							leftPicture = new Picture(app, guiAdapter, false, !rightPictureIsCorrect, imageLoader);
 						}
+						picturesRequested = false;
 
 						/* start loading next images during picture mode */
 						imageLoader.loadNextImages();
@@ -590,16 +563,11 @@ public class GameState extends FadableState {
 							}
 							staticCorrectPictureWasChosen = correctPictureWasChosen;
 
-							/* do it in a thread */
-							pictureInformationService.submit(new Runnable() {
-								@Override
-								public void run() {
-									pictureOperation.incrementUsedAsCorrect(staticCorrectPictureID);
-									if (staticCorrectPictureWasChosen) {
-										pictureOperation.incrementChosenAsCorrect(staticCorrectPictureID);
-									}
-								}
-							});
+							/* only queued, written in background by batch */
+							pictureOperation.incrementUsedAsCorrect(staticCorrectPictureID);
+							if (staticCorrectPictureWasChosen) {
+								pictureOperation.incrementChosenAsCorrect(staticCorrectPictureID);
+							}
 
 						}
 					}
@@ -785,6 +753,8 @@ public class GameState extends FadableState {
 			rightPicture.detach();
 			rightPicture = null;
 		}
+		discardPreparedPictures();
+		picturesRequested = false;
 
 		/* butterfly */
 		hideButterfly = false;
@@ -849,12 +819,34 @@ public class GameState extends FadableState {
 
 		/* shut down thread pools */
 		imageLoader.shutdownNow();
-		pictureService.shutdownNow();
-		pictureInformationService.shutdownNow();
+		uploadQueue.clear();
 
 		super.stop();
 	}
 
+	/* create pictures on render thread, one per frame, as soon as images are decoded */
+	protected void preparePictures() {
+		if (picturesRequested && imageLoader.isReady()) {
+			if (preparedRightPicture == null) {
+				preparedRightPicture = new Picture(app, guiAdapter, true, rightPictureIsCorrect, imageLoader);
+				uploadQueue.enqueue(preparedRightPicture.getNode());
+			} else if (preparedLeftPicture == null) {
+				preparedLeftPicture = new Picture(app, guiAdapter, false, !rightPictureIsCorrect, imageLoader);
+				uploadQueue.enqueue(preparedLeftPicture.getNode());
+			}
+		}
+
+		/* upload textures of prepared pictures within budget */
+		uploadQueue.update();
+	}
+
+	/* forget pictures which were prepared but not shown */
+	protected void discardPreparedPictures() {
+		uploadQueue.clear();
+		preparedRightPicture = null;
+		preparedLeftPicture = null;
+	}
+
 	/* prepare and load highscore state */
 	protected void prepareAndLoadHighscoreState() {
 
@@ -0,0 +1,324 @@
+package schaugenau.state.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Gaze segments with their sidecar index. The index of a segment holds one
+ * fixed-width entry per frame (image ID, offset, length, date, session), so
+ * records of an image are found without reading the segment. Segments are
+ * mapped read-only and records are read straight from their offset. A
+ * missing or outdated index is completed by scanning its segment.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeArchive {
+
+	/** defines **/
+	public static final String indexPostfix = ".idx";
+	public static final int indexMagic = 0x53474749;
+	public static final int indexVersion = 1;
+	public static final int indexHeaderLength = 8;
+	public static final int entryLength = 4 + 8 + 4 + 8 + 8;
+
+	/** fields **/
+	protected final File directory;
+
+	/* month -> segment */
+	protected final Map<String, Segment> segments;
+
+	/* image ID -> entries of all segments, oldest month first */
+	protected final Map<Integer, List<Entry>> entries;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(GazeArchive.class);
+
+	/** methods **/
+
+	/* constructor, reads indexes of all segments of directory */
+	public GazeArchive(File directory) throws IOException {
+		this.directory = directory;
+		this.segments = new TreeMap<String, Segment>();
+		this.entries = new HashMap<Integer, List<Entry>>();
+		refresh();
+	}
+
+	/* read indexes again, picks up records appended meanwhile */
+	public synchronized void refresh() throws IOException {
+		long start = System.nanoTime();
+		segments.clear();
+		entries.clear();
+		int count = 0;
+		for (File file : GazeDataReader.listSegments(directory)) {
+			String name = file.getName();
+			String month = name.substring(GazeDataReader.segmentTitle.length(),
+					name.length() - GazeDataReader.segmentPostfix.length());
+			Segment segment = new Segment(month, file, readIndex(file));
+			segments.put(month, segment);
+			for (Entry entry : segment.entries) {
+				List<Entry> ofImage = entries.get(entry.imageID);
+				if (ofImage == null) {
+					ofImage = new ArrayList<Entry>();
+					entries.put(entry.imageID, ofImage);
+				}
+				ofImage.add(entry);
+				count++;
+			}
+		}
+		logger.debug("Indexed " + count + " gaze records in " + segments.size() + " segments in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/* months of segments, oldest first */
+	public synchronized List<String> getMonths() {
+		return new ArrayList<String>(segments.keySet());
+	}
+
+	/* entries of image, oldest month first */
+	public synchronized List<Entry> find(int imageID) {
+		List<Entry> ofImage = entries.get(imageID);
+		return ofImage == null ? Collections.<Entry> emptyList() : Collections.unmodifiableList(ofImage);
+	}
+
+	/* entries of image in month like yyyy-MM */
+	public synchronized List<Entry> find(int imageID, String month) {
+		List<Entry> ofMonth = new ArrayList<Entry>();
+		for (Entry entry : find(imageID)) {
+			if (entry.segment.month.equals(month)) {
+				ofMonth.add(entry);
+			}
+		}
+		return ofMonth;
+	}
+
+	/* read record of entry from mapped segment */
+	public synchronized GazeRecord read(Entry entry) throws IOException {
+		MappedByteBuffer buffer = entry.segment.map();
+		int position = (int) entry.offset;
+		if (buffer.getInt(position) != entry.length) {
+			throw new IOException("Index does not fit " + entry.segment.file.getName() + " at byte " + entry.offset);
+		}
+		byte[] payload = new byte[entry.length];
+		ByteBuffer frame = buffer.duplicate();
+		frame.position(position + 4);
+		frame.get(payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		if (crc.getValue() != buffer.getLong(position + 4 + entry.length)) {
+			throw new IOException("Damaged frame in " + entry.segment.file.getName() + " at byte " + entry.offset);
+		}
+		return GazeRecord.read(new DataInputStream(new ByteArrayInputStream(payload)));
+	}
+
+	/* read records of image */
+	public List<GazeRecord> readAll(int imageID) throws IOException {
+		List<GazeRecord> records = new ArrayList<GazeRecord>();
+		for (Entry entry : find(imageID)) {
+			records.add(read(entry));
+		}
+		return records;
+	}
+
+	/* file of index of segment */
+	public static File getIndexFile(File segment) {
+		return new File(segment.getPath() + indexPostfix);
+	}
+
+	/* entries of segment, entries behind end of segment are dropped and frames missing in index scanned */
+	public static List<Entry> readIndex(File segment) throws IOException {
+		List<Entry> indexed = new ArrayList<Entry>();
+		long length = segment.length();
+		File index = getIndexFile(segment);
+		long end = 4;
+		if (index.exists()) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+			try {
+				if (in.readInt() == indexMagic && in.readInt() == indexVersion) {
+					while (true) {
+						Entry entry = new Entry(null, in.readInt(), in.readLong(), in.readInt(), in.readLong(),
+								in.readLong());
+						if (entry.offset != end || entry.getEnd() > length) {
+							break;
+						}
+						indexed.add(entry);
+						end = entry.getEnd();
+					}
+				}
+			} catch (EOFException e) {
+				/* end of index */
+			} finally {
+				in.close();
+			}
+		}
+
+		/* scan frames which are not indexed */
+		if (end < length) {
+			int scanned = 0;
+			GazeDataReader reader = new GazeDataReader(segment, end);
+			try {
+				long offset = reader.getOffset();
+				GazeRecord record;
+				while ((record = reader.next()) != null) {
+					indexed.add(new Entry(null, record.getImageID(), offset, (int) (reader.getOffset() - offset - 12),
+							record.getDate(), record.getSession()));
+					offset = reader.getOffset();
+					scanned++;
+				}
+			} finally {
+				reader.close();
+			}
+			if (scanned > 0) {
+				logger.info("Scanned " + scanned + " gaze records of " + segment.getName() + " missing in index");
+			}
+		}
+		return indexed;
+	}
+
+	/* write whole index of segment */
+	public static void writeIndex(File segment, List<Entry> indexed) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(getIndexFile(segment))));
+		try {
+			out.writeInt(indexMagic);
+			out.writeInt(indexVersion);
+			for (Entry entry : indexed) {
+				entry.write(out);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/* information about records of image, arguments are directory of segments and image ID */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: GazeArchive <directory of segments> <image ID>");
+			return;
+		}
+		GazeArchive archive = new GazeArchive(new File(args[0]));
+		for (Entry entry : archive.find(Integer.parseInt(args[1]))) {
+			GazeRecord record = archive.read(entry);
+			System.out.println(entry.getMonth() + " session " + entry.getSession() + ": "
+					+ record.getSamples().size() + " samples, " + record.getPresentationTime() + "s presented");
+		}
+	}
+
+	/** inner classes **/
+
+	/* one indexed frame */
+	public static class Entry {
+
+		protected final Segment segment;
+		protected final int imageID;
+		protected final long offset;
+		protected final int length;
+		protected final long date;
+		protected final long session;
+
+		protected Entry(Segment segment, int imageID, long offset, int length, long date, long session) {
+			this.segment = segment;
+			this.imageID = imageID;
+			this.offset = offset;
+			this.length = length;
+			this.date = date;
+			this.session = session;
+		}
+
+		/* write as entry of index */
+		protected void write(DataOutputStream out) throws IOException {
+			out.writeInt(imageID);
+			out.writeLong(offset);
+			out.writeInt(length);
+			out.writeLong(date);
+			out.writeLong(session);
+		}
+
+		/* offset behind frame */
+		protected long getEnd() {
+			return offset + 4 + length + 8;
+		}
+
+		public int getImageID() {
+			return imageID;
+		}
+
+		/* offset of frame in segment */
+		public long getOffset() {
+			return offset;
+		}
+
+		public long getDate() {
+			return date;
+		}
+
+		public long getSession() {
+			return session;
+		}
+
+		/* month of segment */
+		public String getMonth() {
+			return segment == null ? null : segment.month;
+		}
+	}
+
+	/* segment of one month, mapped when first read */
+	protected static class Segment {
+
+		protected final String month;
+		protected final File file;
+		protected final List<Entry> entries;
+		protected MappedByteBuffer buffer;
+
+		protected Segment(String month, File file, List<Entry> indexed) {
+			this.month = month;
+			this.file = file;
+			this.entries = new ArrayList<Entry>(indexed.size());
+			for (Entry entry : indexed) {
+				entries.add(new Entry(this, entry.imageID, entry.offset, entry.length, entry.date, entry.session));
+			}
+		}
+
+		/* map segment up to end of last indexed frame */
+		protected MappedByteBuffer map() throws IOException {
+			if (buffer == null) {
+				long end = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).getEnd();
+				if (end > Integer.MAX_VALUE) {
+					throw new IOException(file.getName() + " is too large to be mapped");
+				}
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				try {
+					buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, end);
+				} finally {
+					raf.close();
+				}
+			}
+			return buffer;
+		}
+	}
+}
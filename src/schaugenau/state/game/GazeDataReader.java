@@ -0,0 +1,217 @@
+package schaugenau.state.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Reads gaze segments written by the gaze data writer frame by frame. A torn
+ * or damaged frame ends the segment. Run as program it exports segments into
+ * the text files of the former gaze data output, replacing files of earlier
+ * exports.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeDataReader {
+
+	/** defines **/
+	public static final int magic = 0x5347475A;
+	public static final int maxFrameLength = 64 * 1024 * 1024;
+	public static final String segmentTitle = "Gaze.";
+	public static final String segmentPostfix = ".bin";
+	protected static final String textFileTitle = "Image";
+
+	/** fields **/
+	protected final File segment;
+	protected final DataInputStream in;
+	protected long offset;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(GazeDataReader.class);
+
+	/** methods **/
+
+	/* constructor, opens segment */
+	public GazeDataReader(File segment) throws IOException {
+		this(segment, 4);
+	}
+
+	/* constructor, opens segment and skips to frame at offset */
+	public GazeDataReader(File segment, long offset) throws IOException {
+		this.segment = segment;
+		this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+		this.offset = 0;
+		try {
+			if (in.readInt() != magic) {
+				in.close();
+				throw new IOException(segment.getPath() + " is no gaze segment");
+			}
+		} catch (EOFException e) {
+			in.close();
+			throw new IOException(segment.getPath() + " is no gaze segment");
+		}
+		this.offset = 4;
+		while (this.offset < offset) {
+			long skipped = in.skip(offset - this.offset);
+			if (skipped <= 0) {
+				break;
+			}
+			this.offset += skipped;
+		}
+	}
+
+	/* next record, null at end of segment */
+	public GazeRecord next() throws IOException {
+		try {
+			int length = in.readInt();
+			if (length < 0 || length > maxFrameLength) {
+				logger.warn("Damaged frame at byte " + offset + " of " + segment.getPath());
+				return null;
+			}
+			byte[] payload = new byte[length];
+			in.readFully(payload);
+			long checksum = in.readLong();
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			if (crc.getValue() != checksum) {
+				logger.warn("Damaged frame at byte " + offset + " of " + segment.getPath());
+				return null;
+			}
+			GazeRecord record = GazeRecord.read(new DataInputStream(new ByteArrayInputStream(payload)));
+			offset += 4 + length + 8;
+			return record;
+		} catch (EOFException e) {
+
+			/* end of segment or torn frame */
+			return null;
+		}
+	}
+
+	/* offset behind last frame which was read */
+	public long getOffset() {
+		return offset;
+	}
+
+	/* close segment */
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/* read all records of segment */
+	public static List<GazeRecord> readAll(File segment) throws IOException {
+		List<GazeRecord> records = new ArrayList<GazeRecord>();
+		GazeDataReader reader = new GazeDataReader(segment);
+		try {
+			GazeRecord record;
+			while ((record = reader.next()) != null) {
+				records.add(record);
+			}
+		} finally {
+			reader.close();
+		}
+		return records;
+	}
+
+	/* length of intact frames of segment */
+	public static long getValidLength(File segment) throws IOException {
+		GazeDataReader reader = new GazeDataReader(segment);
+		try {
+			while (reader.next() != null) {
+				/* skip */
+			}
+			return reader.getOffset();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/* segments of directory, sorted by name and thereby by month */
+	public static List<File> listSegments(File directory) {
+		List<File> segments = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return segments;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			if (file.isFile() && file.getName().startsWith(segmentTitle) && file.getName().endsWith(segmentPostfix)) {
+				segments.add(file);
+			}
+		}
+		return segments;
+	}
+
+	/* write records of segment into text files per image and month, returns count of records */
+	public static int exportText(File segment, File directory) throws IOException {
+		return exportText(segment, directory, new HashSet<String>());
+	}
+
+	/* export segment, text files not in written names of this run are replaced and then added */
+	public static int exportText(File segment, File directory, Set<String> written) throws IOException {
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		int exported = 0;
+		Map<String, PrintWriter> writers = new HashMap<String, PrintWriter>();
+		GazeDataReader reader = new GazeDataReader(segment);
+		try {
+			GazeRecord record;
+			while ((record = reader.next()) != null) {
+				String fileName = textFileTitle + String.format("%04d", record.getImageID()) + "."
+						+ record.getMonth() + ".txt";
+				PrintWriter writer = writers.get(fileName);
+				if (writer == null) {
+					writer = new PrintWriter(
+							new BufferedWriter(new FileWriter(new File(directory, fileName), !written.add(fileName))));
+					writers.put(fileName, writer);
+				}
+				record.writeText(writer);
+				exported++;
+			}
+		} finally {
+			reader.close();
+			for (PrintWriter writer : writers.values()) {
+				writer.close();
+			}
+		}
+		logger.info("Exported " + exported + " gaze records of " + segment.getPath() + " into "
+				+ writers.size() + " text files");
+		return exported;
+	}
+
+	/* text export, arguments are segment or directory of segments and output directory */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: GazeDataReader <segment.bin | directory> <output directory>");
+			return;
+		}
+		File source = new File(args[0]);
+		List<File> segments = source.isDirectory() ? listSegments(source) : Arrays.asList(source);
+		Set<String> written = new HashSet<String>();
+		for (File segment : segments) {
+			exportText(segment, new File(args[1]), written);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package schaugenau.state.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Persists gaze records without touching the disk on the render thread.
+ * Records are handed over through a lock-free queue, one writer thread
+ * appends them to the segment of their month and its index.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeDataWriter {
+
+	/** defines **/
+	public static final String directory = "gazeData/";
+	protected static final long idleNanos = TimeUnit.SECONDS.toNanos(1);
+	protected static final long shutdownMillis = 3000;
+
+	/** fields **/
+
+	/* session of this run of the application, set when application starts */
+	private static volatile long session = System.currentTimeMillis();
+
+	private static final ConcurrentLinkedQueue<GazeRecord> queue = new ConcurrentLinkedQueue<GazeRecord>();
+	private static volatile boolean running = true;
+	private static final Thread thread;
+
+	/* only used by writer thread */
+	private static GazeSegmentWriter segment = null;
+
+	/* statistics */
+	private static final AtomicLong written = new AtomicLong();
+	private static final AtomicLong writtenBytes = new AtomicLong();
+	private static final AtomicLong failures = new AtomicLong();
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(GazeDataWriter.class);
+
+	static {
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "GazeDataWriter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** methods **/
+
+	/* start new session, called when application starts */
+	public static void start() {
+		session = System.currentTimeMillis();
+		logger.info("Gaze data session " + session);
+	}
+
+	/* session of this run */
+	public static long getSession() {
+		return session;
+	}
+
+	/* hand record over to writer thread */
+	public static void submit(GazeRecord record) {
+		if (!running) {
+			failures.incrementAndGet();
+			logger.warn("Gaze data writer is stopped, dropping record of image " + record.getImageID());
+			return;
+		}
+		queue.offer(record);
+		LockSupport.unpark(thread);
+	}
+
+	/* write queued records, then stop writer thread */
+	public static void shutdown() {
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(shutdownMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (thread.isAlive()) {
+			logger.warn("Gaze data writer did not finish within " + shutdownMillis + "ms, " + queue.size()
+					+ " records pending");
+		}
+		logger.info(getStats());
+	}
+
+	/* get statistics as text */
+	public static String getStats() {
+		return "GazeDataWriter: " + written.get() + " records with " + writtenBytes.get() + " bytes written, "
+				+ failures.get() + " failures";
+	}
+
+	/* write records until stopped and queue is empty */
+	protected static void writeLoop() {
+		while (running || !queue.isEmpty()) {
+			GazeRecord record = queue.poll();
+			if (record != null) {
+				write(record);
+				continue;
+			}
+
+			/* queue is drained, hand buffered frames over to operating system */
+			flush();
+			if (running) {
+				LockSupport.parkNanos(GazeDataWriter.class, idleNanos);
+			}
+		}
+		close();
+	}
+
+	/* append record to segment of its month */
+	protected static void write(GazeRecord record) {
+		try {
+			String month = record.getMonth();
+			if (segment == null || !month.equals(segment.getMonth())) {
+				close();
+				segment = new GazeSegmentWriter(new File(directory), month);
+			}
+			long offset = segment.append(record);
+			written.incrementAndGet();
+			writtenBytes.addAndGet(segment.getPosition() - offset);
+		} catch (IOException e) {
+			failures.incrementAndGet();
+			logger.error("Could not write gaze data of image " + record.getImageID(), e);
+
+			/* reopen segment for next record, which cuts off a torn frame */
+			close();
+		}
+	}
+
+	/* flush segment */
+	protected static void flush() {
+		if (segment == null) {
+			return;
+		}
+		try {
+			segment.flush();
+		} catch (IOException e) {
+			failures.incrementAndGet();
+			logger.error("Could not flush gaze segment of " + segment.getMonth(), e);
+			close();
+		}
+	}
+
+	/* close segment */
+	protected static void close() {
+		if (segment == null) {
+			return;
+		}
+		try {
+			segment.close();
+		} catch (IOException e) {
+			logger.error("Could not close gaze segment of " + segment.getMonth(), e);
+		}
+		segment = null;
+	}
+}
@@ -0,0 +1,143 @@
+package schaugenau.state.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Folds heatmaps of rounds into the mapped heatmap of their image on a
+ * background thread, so the render thread does not touch the disk. Recently
+ * used heatmaps are kept mapped, others are written and closed.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeHeatmaps {
+
+	/** defines **/
+	public static final String directory = "gazeData/heatmaps/";
+	protected static final int maxOpenHeatmaps = 64;
+	protected static final long shutdownMillis = 3000;
+
+	/** fields **/
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "GazeHeatmaps");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/* image ID -> mapped heatmap, least recently used first, only used by executor */
+	private static final Map<Integer, MappedHeatmap> heatmaps = new LinkedHashMap<Integer, MappedHeatmap>(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, MappedHeatmap> eldest) {
+			if (size() > maxOpenHeatmaps) {
+				close(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/* statistics */
+	private static final AtomicLong rounds = new AtomicLong();
+	private static final AtomicLong failures = new AtomicLong();
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(GazeHeatmaps.class);
+
+	/** methods **/
+
+	/* file of heatmap of image */
+	public static File getFile(int ID) {
+		return new File(directory + "Image" + String.format("%04d", ID) + ".heatmap");
+	}
+
+	/* hand heatmap of round over, it must not be changed afterwards */
+	public static void submit(final int ID, final HeatmapBuffer round) {
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					fold(ID, round);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			failures.incrementAndGet();
+			logger.warn("Gaze heatmaps are stopped, dropping heatmap of image " + ID);
+		}
+	}
+
+	/* fold queued heatmaps, then write and close all */
+	public static void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(shutdownMillis, TimeUnit.MILLISECONDS)) {
+				logger.warn("Gaze heatmaps did not finish within " + shutdownMillis + "ms");
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		for (MappedHeatmap heatmap : heatmaps.values()) {
+			close(heatmap);
+		}
+		heatmaps.clear();
+		logger.info(getStats());
+	}
+
+	/* get statistics as text */
+	public static String getStats() {
+		return "GazeHeatmaps: " + rounds.get() + " rounds folded, " + failures.get() + " failures";
+	}
+
+	/* add round to mapped heatmap of image */
+	protected static void fold(int ID, HeatmapBuffer round) {
+		try {
+			MappedHeatmap heatmap = heatmaps.get(ID);
+			if (heatmap == null || heatmap.getWidth() != round.getWidth()
+					|| heatmap.getHeight() != round.getHeight()) {
+				if (heatmap != null) {
+					close(heatmap);
+				}
+				heatmap = MappedHeatmap.open(getFile(ID), round.getWidth(), round.getHeight(),
+						HeatmapBuffer.cellSize);
+				heatmaps.put(ID, heatmap);
+			}
+			heatmap.add(round);
+			rounds.incrementAndGet();
+		} catch (IOException | RuntimeException e) {
+			failures.incrementAndGet();
+			logger.error("Could not add heatmap of image " + ID, e);
+		}
+	}
+
+	/* write and close heatmap */
+	protected static void close(MappedHeatmap heatmap) {
+		try {
+			heatmap.force();
+			heatmap.close();
+		} catch (IOException e) {
+			logger.error("Could not close heatmap", e);
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package schaugenau.state.game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Gaze data of one image in one round: header fields and samples. Written
+ * binary into gaze segments and exported into the text format of gaze files.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeRecord {
+
+	/** defines **/
+	protected static final byte version = 1;
+
+	/** fields **/
+	protected final long session;
+	protected final int imageID;
+	protected final long date;
+	protected final int displayWidth;
+	protected final int displayHeight;
+	protected final float screenCovered;
+	protected final float presentationTime;
+	protected final boolean displayedAsCorrect;
+	protected final boolean chosen;
+	protected final GazeSampleBuffer samples;
+
+	/** methods **/
+
+	/* constructor, samples belong to record afterwards */
+	public GazeRecord(long session, int imageID, long date, int displayWidth, int displayHeight,
+			float screenCovered, float presentationTime, boolean displayedAsCorrect, boolean chosen,
+			GazeSampleBuffer samples) {
+		this.session = session;
+		this.imageID = imageID;
+		this.date = date;
+		this.displayWidth = displayWidth;
+		this.displayHeight = displayHeight;
+		this.screenCovered = screenCovered;
+		this.presentationTime = presentationTime;
+		this.displayedAsCorrect = displayedAsCorrect;
+		this.chosen = chosen;
+		this.samples = samples;
+	}
+
+	public long getSession() {
+		return session;
+	}
+
+	public int getImageID() {
+		return imageID;
+	}
+
+	public long getDate() {
+		return date;
+	}
+
+	public int getDisplayWidth() {
+		return displayWidth;
+	}
+
+	public int getDisplayHeight() {
+		return displayHeight;
+	}
+
+	/* percentage of screen covered by image */
+	public float getScreenCovered() {
+		return screenCovered;
+	}
+
+	public float getPresentationTime() {
+		return presentationTime;
+	}
+
+	public boolean isDisplayedAsCorrect() {
+		return displayedAsCorrect;
+	}
+
+	public boolean isChosen() {
+		return chosen;
+	}
+
+	public GazeSampleBuffer getSamples() {
+		return samples;
+	}
+
+	/* month of record like yyyy-MM */
+	public String getMonth() {
+		return new SimpleDateFormat("yyyy-MM").format(new Date(date));
+	}
+
+	/* write fields and samples */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeByte(version);
+		out.writeLong(session);
+		out.writeInt(imageID);
+		out.writeLong(date);
+		out.writeInt(displayWidth);
+		out.writeInt(displayHeight);
+		out.writeFloat(screenCovered);
+		out.writeFloat(presentationTime);
+		out.writeBoolean(displayedAsCorrect);
+		out.writeBoolean(chosen);
+		int count = samples.size();
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			out.writeInt(samples.x[i]);
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeInt(samples.y[i]);
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeFloat(samples.time[i]);
+		}
+	}
+
+	/* read record as written by write */
+	public static GazeRecord read(DataInputStream in) throws IOException {
+		byte recordVersion = in.readByte();
+		if (recordVersion != version) {
+			throw new IOException("Unknown version " + recordVersion + " of gaze record");
+		}
+		long session = in.readLong();
+		int imageID = in.readInt();
+		long date = in.readLong();
+		int displayWidth = in.readInt();
+		int displayHeight = in.readInt();
+		float screenCovered = in.readFloat();
+		float presentationTime = in.readFloat();
+		boolean displayedAsCorrect = in.readBoolean();
+		boolean chosen = in.readBoolean();
+		int count = in.readInt();
+		if (count < 0) {
+			throw new IOException("Negative count of gaze samples");
+		}
+		GazeSampleBuffer samples = new GazeSampleBuffer(count);
+		for (int i = 0; i < count; i++) {
+			samples.x[i] = in.readInt();
+		}
+		for (int i = 0; i < count; i++) {
+			samples.y[i] = in.readInt();
+		}
+		for (int i = 0; i < count; i++) {
+			samples.time[i] = in.readFloat();
+		}
+		samples.size = count;
+		return new GazeRecord(session, imageID, date, displayWidth, displayHeight, screenCovered, presentationTime,
+				displayedAsCorrect, chosen, samples);
+	}
+
+	/* write in text format of gaze files */
+	public void writeText(PrintWriter writer) {
+
+		/* format for floats */
+		DecimalFormat format = new DecimalFormat();
+		DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
+		formatSymbols.setDecimalSeparator('.');
+		format.setDecimalFormatSymbols(formatSymbols);
+
+		/* date */
+		writer.println(new SimpleDateFormat("dd-MM-yyyy_HH-mm-ssZ").format(new Date(date)));
+
+		/* screen resolution */
+		writer.println("Display resolution: " + displayWidth + "x" + displayHeight);
+
+		/* screen covered by image */
+		format.applyPattern("#.##");
+		writer.println("Screen covered by image: " + format.format(screenCovered) + "%");
+
+		/* time image was presented to player */
+		format.applyPattern("#.####");
+		writer.println("Seconds of presentation: " + format.format(presentationTime));
+
+		/* displayed as correct or incorrect image */
+		writer.println("Image displayed as: " + (displayedAsCorrect ? "CORRECT" : "INCORRECT"));
+		if (chosen) {
+			writer.println("Image was chosen by user");
+		} else {
+			writer.println("Image was not chosen by user");
+		}
+
+		/* raw gaze data */
+		writer.println("Following: 'X; Y; Seconds since start of gaze'");
+		samples.write(writer);
+		writer.println();
+	}
+}
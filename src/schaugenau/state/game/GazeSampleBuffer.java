@@ -0,0 +1,135 @@
+package schaugenau.state.game;
+
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ * 
+ * Gaze samples on an image, stored column by column in primitive arrays.
+ * Adding a sample does not create any object, text is only produced when
+ * the samples are written.
+ * 
+ * @author agent
+ *
+ */
+
+public class GazeSampleBuffer {
+
+	/** defines **/
+	protected static final int initialCapacity = 2048;
+
+	/** fields **/
+	protected int[] x;
+	protected int[] y;
+	protected float[] time;
+	protected int size;
+
+	/** methods **/
+
+	/* constructor */
+	public GazeSampleBuffer() {
+		this(initialCapacity);
+	}
+
+	/* constructor with capacity */
+	public GazeSampleBuffer(int capacity) {
+		this.x = new int[Math.max(1, capacity)];
+		this.y = new int[x.length];
+		this.time = new float[x.length];
+		this.size = 0;
+	}
+
+	/* add sample, arrays only grow if presentation is longer than expected */
+	public void add(int sampleX, int sampleY, float sampleTime) {
+		if (size == x.length) {
+			grow();
+		}
+		x[size] = sampleX;
+		y[size] = sampleY;
+		time[size] = sampleTime;
+		size++;
+	}
+
+	/* forget samples, keeps arrays */
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getX(int index) {
+		return x[index];
+	}
+
+	public int getY(int index) {
+		return y[index];
+	}
+
+	public float getTime(int index) {
+		return time[index];
+	}
+
+	/* copy with capacity of size */
+	public GazeSampleBuffer copy() {
+		GazeSampleBuffer copy = new GazeSampleBuffer(size);
+		System.arraycopy(x, 0, copy.x, 0, size);
+		System.arraycopy(y, 0, copy.y, 0, size);
+		System.arraycopy(time, 0, copy.time, 0, size);
+		copy.size = size;
+		return copy;
+	}
+
+	/* write samples as lines of 'X; Y; Seconds since start of gaze' */
+	public void write(PrintWriter writer) {
+		DecimalFormat format = new DecimalFormat("#.#####");
+		DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
+		formatSymbols.setDecimalSeparator('.');
+		format.setDecimalFormatSymbols(formatSymbols);
+
+		StringBuilder line = new StringBuilder(32);
+		for (int i = 0; i < size; i++) {
+			line.setLength(0);
+			appendPadded(line, x[i]);
+			line.append("; ");
+			appendPadded(line, y[i]);
+			line.append("; ");
+			line.append(format.format(time[i]));
+			writer.println(line);
+		}
+	}
+
+	/* append number with at least four digits like %04d */
+	protected static void appendPadded(StringBuilder builder, int value) {
+		int digits = 1000;
+		if (value < 0) {
+
+			/* sign takes place of one digit */
+			builder.append('-');
+			value = -value;
+			digits = 100;
+		}
+		for (; digits > 1 && value < digits; digits /= 10) {
+			builder.append('0');
+		}
+		builder.append(value);
+	}
+
+	/* double capacity */
+	protected void grow() {
+		int capacity = x.length * 2;
+		int[] grownX = new int[capacity];
+		int[] grownY = new int[capacity];
+		float[] grownTime = new float[capacity];
+		System.arraycopy(x, 0, grownX, 0, size);
+		System.arraycopy(y, 0, grownY, 0, size);
+		System.arraycopy(time, 0, grownTime, 0, size);
+		x = grownX;
+		y = grownY;
+		time = grownTime;
+	}
+}
@@ -0,0 +1,134 @@
+package schaugenau.state.game;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Appends gaze records as frames (length, payload, CRC32) to the segment of
+ * one month and an entry per frame to its sidecar index. On opening, a torn
+ * frame at the end of the segment is cut off and the index is brought in
+ * line with the segment.
+ *
+ * @author agent
+ *
+ */
+
+public class GazeSegmentWriter {
+
+	/** fields **/
+	protected final File segment;
+	protected final String month;
+	protected final DataOutputStream out;
+	protected final DataOutputStream indexOut;
+	protected final ByteArrayOutputStream payload;
+	protected long position;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(GazeSegmentWriter.class);
+
+	/** methods **/
+
+	/* constructor, opens segment of month in directory */
+	public GazeSegmentWriter(File directory, String month) throws IOException {
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		this.segment = getSegment(directory, month);
+		this.month = month;
+		this.payload = new ByteArrayOutputStream(64 * 1024);
+
+		if (segment.length() >= 4) {
+
+			/* end of last intact frame */
+			List<GazeArchive.Entry> indexed = GazeArchive.readIndex(segment);
+			long end = indexed.isEmpty() ? 4 : indexed.get(indexed.size() - 1).getEnd();
+			if (end < segment.length()) {
+				logger.warn("Gaze segment " + segment.getPath() + " has " + (segment.length() - end)
+						+ " broken bytes at end, truncating");
+				RandomAccessFile file = new RandomAccessFile(segment, "rw");
+				try {
+					file.setLength(end);
+				} finally {
+					file.close();
+				}
+			}
+			File index = GazeArchive.getIndexFile(segment);
+			if (index.length() != GazeArchive.indexHeaderLength + (long) GazeArchive.entryLength * indexed.size()) {
+				GazeArchive.writeIndex(segment, indexed);
+			}
+			this.position = end;
+			this.out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(segment, true), 64 * 1024));
+		} else {
+			GazeArchive.writeIndex(segment, Collections.<GazeArchive.Entry> emptyList());
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment), 64 * 1024));
+			out.writeInt(GazeDataReader.magic);
+			this.position = 4;
+		}
+		this.indexOut = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(GazeArchive.getIndexFile(segment), true)));
+	}
+
+	/* file of segment of month */
+	public static File getSegment(File directory, String month) {
+		return new File(directory, GazeDataReader.segmentTitle + month + GazeDataReader.segmentPostfix);
+	}
+
+	public String getMonth() {
+		return month;
+	}
+
+	/* append record, returns offset of its frame */
+	public long append(GazeRecord record) throws IOException {
+		payload.reset();
+		record.write(new DataOutputStream(payload));
+		if (payload.size() > GazeDataReader.maxFrameLength) {
+			throw new IOException("Gaze record of " + payload.size() + " bytes is too large");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload.toByteArray());
+		long offset = position;
+		out.writeInt(payload.size());
+		payload.writeTo(out);
+		out.writeLong(crc.getValue());
+		position += 4 + payload.size() + 8;
+
+		/* entry follows frame, a missing entry is scanned when segment is opened again */
+		new GazeArchive.Entry(null, record.getImageID(), offset, payload.size(), record.getDate(),
+				record.getSession()).write(indexOut);
+		return offset;
+	}
+
+	/* length of segment including buffered frames */
+	public long getPosition() {
+		return position;
+	}
+
+	/* flush segment, then index */
+	public void flush() throws IOException {
+		out.flush();
+		indexOut.flush();
+	}
+
+	/* close segment and index */
+	public void close() throws IOException {
+		try {
+			out.close();
+		} finally {
+			indexOut.close();
+		}
+	}
+}
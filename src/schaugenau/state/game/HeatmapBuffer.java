@@ -0,0 +1,55 @@
+package schaugenau.state.game;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Downsampled gaze heatmap of an image during one round. Every sample adds
+ * its frame time to the cell under it, so cells hold seconds of gaze. Size
+ * follows texture resolution, one cell covers square of image pixels.
+ *
+ * @author agent
+ *
+ */
+
+public class HeatmapBuffer {
+
+	/** defines **/
+	public static final int cellSize = 16;
+
+	/** fields **/
+	protected final int width;
+	protected final int height;
+	protected final float[] cells;
+
+	/** methods **/
+
+	/* constructor, resolution of image in pixels */
+	public HeatmapBuffer(int imageWidth, int imageHeight) {
+		this.width = Math.max(1, (imageWidth + cellSize - 1) / cellSize);
+		this.height = Math.max(1, (imageHeight + cellSize - 1) / cellSize);
+		this.cells = new float[width * height];
+	}
+
+	/* add seconds at image pixel */
+	public void add(int x, int y, float seconds) {
+		int cellX = Math.max(0, Math.min(width - 1, x / cellSize));
+		int cellY = Math.max(0, Math.min(height - 1, y / cellSize));
+		cells[cellY * width + cellX] += seconds;
+	}
+
+	/* width in cells */
+	public int getWidth() {
+		return width;
+	}
+
+	/* height in cells */
+	public int getHeight() {
+		return height;
+	}
+
+	/* value of cell */
+	public float get(int x, int y) {
+		return cells[y * width + x];
+	}
+}
@@ -1,40 +1,80 @@
 package schaugenau.state.game;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JOptionPane;
 
+import org.apache.log4j.Logger;
+
 import com.jme3.app.Application;
 import com.jme3.asset.plugins.FileLocator;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.plugins.AWTLoader;
+
+import jme3tools.converters.MipMapGenerator;
 
 import schaugenau.database.PictureOperations;
+import schaugenau.database.PicturePair;
 
 /**
  * Distributed under the MIT License. (See accompanying file LICENSE or copy at
  * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
- * 
- * Image loader.
- * 
+ *
+ * Image loader. Keeps some picture pairs of future rounds prefetched, so
+ * picture mode does not have to wait for the database. Images are decoded
+ * in memory, writing them to the images folder is only a fallback. Decoding
+ * and mip generation happen on worker threads, so render thread only has to
+ * upload the finished textures.
+ *
  * @author Raphael Menges
  *
  */
 
 public class ImageLoader {
 
+	private static Logger logger = Logger.getLogger(ImageLoader.class);
+
+	/** enumerations **/
+	public enum ImageSource {
+		MEMORY, FILE
+	}
+
 	/** defines **/
 	protected final String pathToImages = "images/";
 	protected final String prefixCorrectImage = "Correct";
 	protected final String prefixIncorrectImage = "Incorrect";
 	protected final String postfixImage = "png";
+	protected final int prefetchDepth = 3;
+	protected final ImageSource imageSource = ImageSource.MEMORY; // ImageSource.FILE;
 
 	/** fields **/
 	protected Application app;
 	protected ExecutorService service;
 
-	protected int correctPictureID;
-	protected int incorrectPictureID;
+	protected volatile int correctPictureID;
+	protected volatile int incorrectPictureID;
+	protected volatile String currentTag;
+	protected volatile Texture correctTexture;
+	protected volatile Texture incorrectTexture;
+	protected volatile boolean ready;
+	protected AWTLoader imageDecoder;
+
+	/* prefetched pairs of upcoming rounds */
+	protected LinkedBlockingQueue<PicturePair> prefetchQueue;
+	protected AtomicBoolean refilling;
+
+	/* metrics */
+	protected AtomicLong takenCount;
+	protected AtomicLong starvedCount;
 
 	/* database */
 	protected PictureOperations pictureOperation;
@@ -47,54 +87,180 @@ public class ImageLoader {
 		/* defaults */
 		correctPictureID = -1;
 		incorrectPictureID = -1;
+		currentTag = null;
 
 		/* database */
 		pictureOperation = new PictureOperations();
 
-		/* clean up images folder, maybe some old are left */
-		File folder = new File(pathToImages);
-		File[] listOfFiles = folder.listFiles();
+		this.app = app;
+		if (imageSource == ImageSource.FILE) {
 
-		/* folder there? */
-		if (!folder.exists()) {
-			JOptionPane.showMessageDialog(null,
-					"No 'images' folder found, please create one in the same folder as the .jar");
-		}
+			/* clean up images folder, maybe some old are left */
+			File folder = new File(pathToImages);
+			File[] listOfFiles = folder.listFiles();
 
-		/* delete all files in it */
-		for (File file : listOfFiles) {
-			file.delete();
-		}
+			/* folder there? */
+			if (!folder.exists()) {
+				JOptionPane.showMessageDialog(null,
+						"No 'images' folder found, please create one in the same folder as the .jar");
+			}
 
-		/* add folder to asset manager */
-		this.app = app;
-		this.app.getAssetManager().registerLocator(pathToImages, FileLocator.class);
+			/* delete all files in it */
+			for (File file : listOfFiles) {
+				file.delete();
+			}
+
+			/* add folder to asset manager */
+			this.app.getAssetManager().registerLocator(pathToImages, FileLocator.class);
+		} else {
+			imageDecoder = new AWTLoader();
+		}
 
-		/* create thread pool */
+		/* create thread pool, one for installing and one for refilling */
 		service = Executors.newFixedThreadPool(2);
+
+		/* prefetching */
+		prefetchQueue = new LinkedBlockingQueue<PicturePair>(prefetchDepth);
+		refilling = new AtomicBoolean(false);
+		takenCount = new AtomicLong();
+		starvedCount = new AtomicLong();
+		requestRefill();
 	}
 
 	/* load next images */
 	public void loadNextImages() {
+		ready = false;
 		deleteCurrentImages();
 
+		/* take prefetched pair if available */
+		final PicturePair prefetched = prefetchQueue.poll();
+		takenCount.incrementAndGet();
+		if (prefetched == null) {
+			starvedCount.incrementAndGet();
+		}
+		logger.debug("Prefetch queue depth: " + prefetchQueue.size() + ", starved: " + starvedCount.get() + " of "
+				+ takenCount.get());
+
 		/* do it in a thread */
 		service.submit(new Runnable() {
 			@Override
 			public void run() {
+				boolean installed = false;
 				try {
-					pictureOperation.loadPictures();
+					PicturePair pair = prefetched;
+					if (pair == null) {
+						pair = pictureOperation.loadPicturePair();
+					}
+					install(pair);
+					installed = true;
 				} catch (Exception e) {
-					e.printStackTrace();
+					logger.error("Could not load images of next round, showing placeholders", e);
+				} finally {
+
+					/* pictures are still prepared off the render thread, with placeholders */
+					if (!installed) {
+						clear();
+						ready = true;
+					}
+				}
+			}
+		});
+
+		requestRefill();
+	}
+
+	/* make pair the current one */
+	protected void install(PicturePair pair) throws IOException {
+		if (pair == null) {
+
+			/* nothing loaded, pictures will show placeholder */
+			clear();
+			ready = true;
+			return;
+		}
+		if (imageSource == ImageSource.FILE) {
+			PictureOperations.writePicture(
+					new File(pathToImages + prefixCorrectImage + pair.getCorrectID() + "." + postfixImage),
+					pair.getCorrectImage());
+			PictureOperations.writePicture(
+					new File(pathToImages + prefixIncorrectImage + pair.getIncorrectID() + "." + postfixImage),
+					pair.getIncorrectImage());
+		} else {
+			correctTexture = decode(pair.getCorrectImage());
+			incorrectTexture = decode(pair.getIncorrectImage());
+		}
+		currentTag = pair.getCorrectTag();
+		correctPictureID = pair.getCorrectID();
+		incorrectPictureID = pair.getIncorrectID();
+		ready = true;
+	}
+
+	/* forget current pair, pictures will show placeholder */
+	protected void clear() {
+		currentTag = null;
+		correctTexture = null;
+		incorrectTexture = null;
+		correctPictureID = -1;
+		incorrectPictureID = -1;
+	}
+
+	/* decode encoded image into texture, null if not readable */
+	protected Texture decode(byte[] data) throws IOException {
+		if (data == null || data.length == 0) {
+			return null;
+		}
+		Image image = imageDecoder.load(new ByteArrayInputStream(data), false);
+		if (image == null) {
+			return null;
+		}
+
+		/* generate mips here and not on render thread */
+		Texture2D texture = new Texture2D(image);
+		try {
+			long start = System.nanoTime();
+			MipMapGenerator.generateMipMaps(image);
+			texture.setMinFilter(Texture.MinFilter.Trilinear);
+			logger.debug("Generated mips of " + image.getWidth() + "x" + image.getHeight() + " image in "
+					+ (System.nanoTime() - start) / 1000000 + "ms");
+		} catch (Exception e) {
+
+			/* format not supported by generator, go without mips */
+			logger.warn("Could not generate mips: " + e.getMessage());
+			texture.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+		}
+		return texture;
+	}
+
+	/* fill prefetch queue in background, if not already done */
+	protected void requestRefill() {
+		if (!refilling.compareAndSet(false, true)) {
+			return;
+		}
+		service.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (prefetchQueue.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+						PicturePair pair = pictureOperation.loadPicturePair();
+						if (pair == null) {
+
+							/* database not reachable, try again with next request */
+							break;
+						}
+						prefetchQueue.offer(pair);
+					}
+				} finally {
+					refilling.set(false);
 				}
-				correctPictureID = pictureOperation.getCorPictID();
-				incorrectPictureID = pictureOperation.getIncorPictID();
 			}
 		});
 	}
 
 	/* delete last images */
 	private void deleteCurrentImages() {
+		if (imageSource != ImageSource.FILE) {
+			return;
+		}
 
 		/* images can be deleted safely */
 		File file = new File(pathToImages + prefixCorrectImage + correctPictureID + "." + postfixImage);
@@ -111,6 +277,7 @@ public class ImageLoader {
 	public void shutdownNow() {
 		deleteCurrentImages();
 		service.shutdownNow();
+		prefetchQueue.clear();
 	}
 
 	/* get id of correct image */
@@ -125,10 +292,40 @@ public class ImageLoader {
 
 	/* get tag */
 	public String getCurrentTag() {
-		String tag = PictureOperations.getCorPictTag();
+		String tag = currentTag;
 		return tag == null ? "no tag found" : tag;
 	}
 
+	/* whether images of current round are installed */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/* get texture of correct image, null if not in memory */
+	public Texture getCurrentCorrectTexture() {
+		return correctTexture;
+	}
+
+	/* get texture of incorrect image, null if not in memory */
+	public Texture getCurrentIncorrectTexture() {
+		return incorrectTexture;
+	}
+
+	/* get where images come from */
+	public ImageSource getImageSource() {
+		return imageSource;
+	}
+
+	/* get count of prefetched pairs */
+	public int getQueueDepth() {
+		return prefetchQueue.size();
+	}
+
+	/* get how often no prefetched pair was available */
+	public long getStarvationCount() {
+		return starvedCount.get();
+	}
+
 	/* getter */
 	public String getPrefixCorrectImage() {
 		return prefixCorrectImage;
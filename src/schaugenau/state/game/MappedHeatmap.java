@@ -0,0 +1,219 @@
+package schaugenau.state.game;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Distributed under the MIT License. (See accompanying file LICENSE or copy at
+ * https://github.com/raphaelmenges/schaugenau/blob/master/src/LICENSE)
+ *
+ * Accumulated gaze heatmap of one image as memory-mapped file: a header of
+ * magic, version, size in cells, cell size and count of rounds, followed by
+ * the float cells. Rounds are added in place, any process can map the file
+ * read-only and get the current heatmap without reprocessing gaze files.
+ * When an image is shown in another size, its heatmap is kept under a name
+ * with its size and picked up again when that size comes back.
+ *
+ * @author agent
+ *
+ */
+
+public class MappedHeatmap {
+
+	/** defines **/
+	public static final int magic = 0x5347484D;
+	public static final int version = 1;
+	public static final int headerLength = 32;
+	protected static final int roundsPosition = 24;
+
+	/** fields **/
+	protected final File file;
+	protected final RandomAccessFile raf;
+	protected final MappedByteBuffer buffer;
+	protected final int width;
+	protected final int height;
+	protected final int cellSize;
+
+	/* logging */
+	private static Logger logger = Logger.getLogger(MappedHeatmap.class);
+
+	/** methods **/
+
+	/* constructor, maps file */
+	protected MappedHeatmap(File file, RandomAccessFile raf, MappedByteBuffer buffer) {
+		this.file = file;
+		this.raf = raf;
+		this.buffer = buffer;
+		this.width = buffer.getInt(8);
+		this.height = buffer.getInt(12);
+		this.cellSize = buffer.getInt(16);
+	}
+
+	/* open heatmap for adding rounds, one of other size is kept and one of this size continued or created */
+	public static MappedHeatmap open(File file, int width, int height, int cellSize) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		if (file.length() > 0 && !matches(file, width, height, cellSize)) {
+			keep(file);
+			File stored = getSizedFile(file, width, height);
+			if (stored.exists() && matches(stored, width, height, cellSize)) {
+				Files.move(stored.toPath(), file.toPath());
+				logger.info("Continuing heatmap " + stored.getName() + " of " + width + "x" + height + " cells");
+			}
+		}
+		long length = headerLength + 4L * width * height;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			if (raf.length() != length) {
+				raf.setLength(length);
+				raf.seek(0);
+				raf.writeInt(magic);
+				raf.writeInt(version);
+				raf.writeInt(width);
+				raf.writeInt(height);
+				raf.writeInt(cellSize);
+			}
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+			return new MappedHeatmap(file, raf, buffer);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/* whether file is heatmap of this version and size */
+	protected static boolean matches(File file, int width, int height, int cellSize) throws IOException {
+		if (file.length() != headerLength + 4L * width * height) {
+			return false;
+		}
+		int[] header = readHeader(file);
+		return header != null && header[0] == width && header[1] == height && header[2] == cellSize;
+	}
+
+	/* width, height and cell size of heatmap, null if file is no heatmap of this version */
+	protected static int[] readHeader(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != magic || in.readInt() != version) {
+				return null;
+			}
+			int[] header = new int[] { in.readInt(), in.readInt(), in.readInt() };
+			return file.length() == headerLength + 4L * header[0] * header[1] ? header : null;
+		} catch (EOFException e) {
+			return null;
+		} finally {
+			in.close();
+		}
+	}
+
+	/* file of heatmap of other size, like Image0001.40x30.heatmap */
+	protected static File getSizedFile(File file, int width, int height) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		String title = dot < 0 ? name : name.substring(0, dot);
+		String postfix = dot < 0 ? "" : name.substring(dot);
+		return new File(file.getParentFile(), title + "." + width + "x" + height + postfix);
+	}
+
+	/* move heatmap which does not fit aside, so none of its rounds is lost */
+	protected static void keep(File file) throws IOException {
+		int[] header = readHeader(file);
+		File kept = header != null ? getSizedFile(file, header[0], header[1]) : new File(file.getPath() + ".damaged");
+		String path = kept.getPath();
+		for (int i = 2; kept.exists(); i++) {
+			kept = new File(path + "." + i);
+		}
+		Files.move(file.toPath(), kept.toPath());
+		logger.warn("Heatmap " + file.getName() + " does not fit image, kept as " + kept.getName());
+	}
+
+	/* map heatmap read-only */
+	public static MappedHeatmap openReadOnly(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() < headerLength) {
+				throw new IOException(file.getPath() + " is no heatmap");
+			}
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (buffer.getInt(0) != magic || buffer.getInt(4) != version
+					|| raf.length() != headerLength + 4L * buffer.getInt(8) * buffer.getInt(12)) {
+				throw new IOException(file.getPath() + " is no heatmap of this version");
+			}
+			return new MappedHeatmap(file, raf, buffer);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/* add heatmap of round, which must have same size */
+	public void add(HeatmapBuffer round) {
+		if (round.getWidth() != width || round.getHeight() != height) {
+			throw new IllegalArgumentException("Heatmap of " + round.getWidth() + "x" + round.getHeight()
+					+ " cells does not fit " + file.getName());
+		}
+		for (int i = 0; i < round.cells.length; i++) {
+			if (round.cells[i] != 0) {
+				int position = headerLength + 4 * i;
+				buffer.putFloat(position, buffer.getFloat(position) + round.cells[i]);
+			}
+		}
+		buffer.putLong(roundsPosition, buffer.getLong(roundsPosition) + 1);
+	}
+
+	/* width in cells */
+	public int getWidth() {
+		return width;
+	}
+
+	/* height in cells */
+	public int getHeight() {
+		return height;
+	}
+
+	/* cell size in image pixels */
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/* count of added rounds */
+	public long getRounds() {
+		return buffer.getLong(roundsPosition);
+	}
+
+	/* seconds of gaze in cell */
+	public float get(int x, int y) {
+		return buffer.getFloat(headerLength + 4 * (y * width + x));
+	}
+
+	/* copy of all cells, row by row */
+	public float[] getCells() {
+		float[] cells = new float[width * height];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = buffer.getFloat(headerLength + 4 * i);
+		}
+		return cells;
+	}
+
+	/* write changes to disk */
+	public void force() {
+		buffer.force();
+	}
+
+	/* close file, mapping is released by garbage collection */
+	public void close() throws IOException {
+		raf.close();
+	}
+}
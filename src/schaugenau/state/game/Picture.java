@@ -1,23 +1,13 @@
 package schaugenau.state.game;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.DateFormat;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.LinkedList;
-import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
+import com.jme3.texture.Texture;
 
 import schaugenau.app.App;
 import schaugenau.core.SoundManager.Sound;
@@ -65,9 +55,6 @@ public class Picture extends GuiElement {
 	protected final ColorRGBA incorrectColor = new ColorRGBA(0, 0, 0, 0);
 	protected final float focusSpeed = 2.0f;
 
-	protected final String gazeDataPath = "gazeData/";
-	protected final String gazeDataFileTitle = "Image";
-
 	protected final Vector3f glowPosition = new Vector3f(0, 0, -1);
 	protected final float glowMaxScale = 1.5f;
 	protected final ColorRGBA glowColor = new ColorRGBA(1, 1, 0.6f, 0.5f);
@@ -81,9 +68,8 @@ public class Picture extends GuiElement {
 	protected boolean isRightPicture;
 	protected boolean isCorrectPicture;
 	protected float focus;
-	protected PrintWriter gazeData;
-	protected PrintWriter gazeDataBackup;
-	protected List<String> gazeDataOutput;
+	protected GazeSampleBuffer gazeSamples;
+	protected HeatmapBuffer heatmap;
 	protected Vector2f textureResolution;
 	protected boolean imageLoaded;
 	protected float gazeTime;
@@ -106,7 +92,7 @@ public class Picture extends GuiElement {
 		this.time = 0;
 		this.isRightPicture = isRightPicture;
 		this.isCorrectPicture = isCorrectPicture;
-		this.gazeDataOutput = new LinkedList<String>();
+		this.gazeSamples = new GazeSampleBuffer();
 		this.gazeTime = 0;
 		this.presentationTime = 0;
 		this.glowScale = 1;
@@ -118,12 +104,22 @@ public class Picture extends GuiElement {
 		this.ID = isCorrectPicture ? imageLoader.getCurrentCorrectID() : imageLoader.getCurrentIncorrectID();
 
 		/* test whether image is there and load it */
-		File file = new File(imageLoader.getPathToImages() + name + ID + "." + imageLoader.getPostfixImage());
-		if (file.exists() && file.length() > 0) {
-			entity = new StaticEntity(app, "Picture", "Plane", "Unshaded", name + ID, "", true,
-					imageLoader.getPostfixImage(), true, true, false, false);
-			this.imageLoaded = true;
+		if (imageLoader.getImageSource() == ImageLoader.ImageSource.MEMORY) {
+			Texture texture = isCorrectPicture ? imageLoader.getCurrentCorrectTexture()
+					: imageLoader.getCurrentIncorrectTexture();
+			if (texture != null) {
+				entity = new StaticEntity(app, "Picture", "Plane", "Unshaded", texture, true, true, true, false);
+				this.imageLoaded = true;
+			}
 		} else {
+			File file = new File(imageLoader.getPathToImages() + name + ID + "." + imageLoader.getPostfixImage());
+			if (file.exists() && file.length() > 0) {
+				entity = new StaticEntity(app, "Picture", "Plane", "Unshaded", name + ID, "", true,
+						imageLoader.getPostfixImage(), true, true, false, false);
+				this.imageLoaded = true;
+			}
+		}
+		if (entity == null) {
 			entity = new StaticEntity(app, "Picture", "Plane", "Unshaded", "ImageNotFound", true, "png", true, true,
 					false, false);
 			this.imageLoaded = false;
@@ -134,6 +130,7 @@ public class Picture extends GuiElement {
 		this.textureResolution = entity.getSizeOfTexture();
 		float x = textureResolution.x;
 		float y = textureResolution.y;
+		this.heatmap = new HeatmapBuffer((int) x, (int) y);
 
 		/* scale entity to fit into view */
 		if (x > y) {
@@ -331,14 +328,9 @@ public class Picture extends GuiElement {
 			int absoluteGazeX = (int) (relativeGazeX * xResolution);
 			int absoluteGazeY = (int) (relativeGazeY * yResolution);
 
-			/* data formatter */
-			DecimalFormat format = new DecimalFormat("#.#####");
-			DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
-			formatSymbols.setDecimalSeparator('.');
-			format.setDecimalFormatSymbols(formatSymbols);
-
-			gazeDataOutput.add("" + String.format("%04d", absoluteGazeX) + "; " + String.format("%04d", absoluteGazeY)
-					+ "; " + format.format(gazeTime));
+			/* only primitives are stored, formatting happens when saved */
+			gazeSamples.add(absoluteGazeX, absoluteGazeY, gazeTime);
+			heatmap.add(absoluteGazeX, absoluteGazeY, tpf);
 
 			gazeTime += tpf;
 
@@ -351,71 +343,18 @@ public class Picture extends GuiElement {
 	/* save gaze data of image */
 	protected void saveGazeDataOfImage() {
 
-		/* path to file */
-		DateFormat fileDateFormat = new SimpleDateFormat("yyyy-MM");
-		Date fileDate = new Date();
-		String path = gazeDataPath + gazeDataFileTitle;
-		String fileName = String.format("%04d", ID) + "." + fileDateFormat.format(fileDate) + ".txt";
-
-		/* format for floats */
-		DecimalFormat format = new DecimalFormat();
-		DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
-		formatSymbols.setDecimalSeparator('.');
-		format.setDecimalFormatSymbols(formatSymbols);
-
-		/* open file */
-		try {
-			gazeData = new PrintWriter(new BufferedWriter(new FileWriter(path + fileName, true)));
-
-			/* date */
-			DateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy_HH-mm-ssZ");
-			Date gazeDate = new Date();
-			gazeData.println(dateFormat.format(gazeDate));
-
-			/* screen resolution */
-			gazeData.println("Display resolution: " + (int) this.app.getWindowResolution().x + "x"
-					+ (int) this.app.getWindowResolution().y);
-
-			/* screen covered by image */
-			float wholeArea = guiAdapter.getWidth() * guiAdapter.getHeight();
-			float imageArea = entity.getLocalScale().x * entity.getLocalScale().y * showScale;
-			float screenCoveredByImage = 100.0f * imageArea / wholeArea;
-
-			format.applyPattern("#.##");
-			gazeData.println("Screen covered by image: " + format.format(screenCoveredByImage) + "%");
-
-			/* time image was presented to player */
-			format.applyPattern("#.####");
-			gazeData.println("Seconds of presentation: " + format.format(presentationTime));
-
-			/* displayed as correct or incorrect image */
-			String displayedAs;
-			if (this.isCorrectPicture) {
-				displayedAs = "CORRECT";
-			} else {
-				displayedAs = "INCORRECT";
-			}
-			gazeData.println("Image displayed as: " + displayedAs);
-			if (this.wasChosen) {
-				gazeData.println("Image was chosen by user");
-			} else {
-				gazeData.println("Image was not chosen by user");
-			}
-
-			/* output raw gaze data */
-			gazeData.println("Following: 'X; Y; Seconds since start of gaze'");
-			for (String output : gazeDataOutput) {
-				gazeData.println(output);
-			}
-
-			gazeData.println();
-			gazeData.flush();
-			gazeData.close();
+		/* screen covered by image */
+		float wholeArea = guiAdapter.getWidth() * guiAdapter.getHeight();
+		float imageArea = entity.getLocalScale().x * entity.getLocalScale().y * showScale;
+		float screenCoveredByImage = 100.0f * imageArea / wholeArea;
 
-		} catch (IOException e) {
-			logger.error(path + fileName + " not found!", e);
-		}
+		/* writer thread formats and stores record */
+		GazeDataWriter.submit(new GazeRecord(GazeDataWriter.getSession(), ID, System.currentTimeMillis(),
+				(int) this.app.getWindowResolution().x, (int) this.app.getWindowResolution().y, screenCoveredByImage,
+				presentationTime, isCorrectPicture, wasChosen, gazeSamples.copy()));
 
+		/* heatmap of round is folded into heatmap of image */
+		GazeHeatmaps.submit(ID, heatmap);
 	}
 
 	public int getID() {
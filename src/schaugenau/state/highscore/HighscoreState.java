@@ -18,7 +18,7 @@ import schaugenau.core.FadableState;
 import schaugenau.core.SimpleWorldBackground;
 import schaugenau.core.SoundManager.Sound;
 import schaugenau.core.StaticEntity;
-import schaugenau.database.ScoreOperations;
+import schaugenau.database.DataService;
 import schaugenau.font.Font;
 import schaugenau.font.Text;
 import schaugenau.font.TextBox;
@@ -111,7 +111,7 @@ public class HighscoreState extends FadableState {
 	/** fields **/
 
 	/* database */
-	protected ScoreOperations scoreOperations;
+	protected DataService dataService;
 
 	/* screens */
 	protected SimpleWorldBackground background;
@@ -177,7 +177,7 @@ public class HighscoreState extends FadableState {
 		super(app, name, debugging);
 
 		/* database */
-		scoreOperations = new ScoreOperations();
+		dataService = new DataService();
 
 		/* title bar */
 		this.titleBar = new GuiDecoration(this.app, this.guiAdapter, "TitleBar");
@@ -530,7 +530,7 @@ public class HighscoreState extends FadableState {
 						badLanguageWasDetected = false;
 
 						/* name is ok, send data to database */
-						scoreOperations.saveScore(this.app.getCurrentGameStyleString(), this.app.getCurrentScore(),
+						dataService.saveScore(this.app.getCurrentGameStyleString(), this.app.getCurrentScore(),
 								name, this.app.getCurrentPlayedMiliSeconds(), this.app.getCurrentMaxMultiplicator(),
 								this.app.getCurrentAvMultiplicator(), this.app.getCurrentCorrectPictures(),
 								this.app.getCurrentIncorrectPictures());
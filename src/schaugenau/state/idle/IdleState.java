@@ -1,6 +1,8 @@
 package schaugenau.state.idle;
 
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.Vector3f;
@@ -11,7 +13,8 @@ import schaugenau.core.AnimEntity;
 import schaugenau.core.FadableState;
 import schaugenau.core.SimpleWorldBackground;
 import schaugenau.core.StaticEntity;
-import schaugenau.database.ScoreOperations;
+import schaugenau.database.DataService;
+import schaugenau.database.HighscoreEntry;
 import schaugenau.font.Font;
 import schaugenau.font.Text;
 import schaugenau.font.Text.Alignment;
@@ -121,8 +124,8 @@ public class IdleState extends FadableState {
 	protected final float durationUntilResetFromInstructions = 60;
 	protected final String dbAliasForEmpty = "empty";
 
-	/* score operations */
-	protected final ScoreOperations scoreOperations;
+	/* database calls, never on render thread */
+	protected final DataService dataService;
 
 	/** fields **/
 
@@ -132,7 +135,10 @@ public class IdleState extends FadableState {
 	protected Text hourlyHighscoreHeadText;
 	protected StaticEntity hourlyScoreBackground;
 	protected Text hourlySeparator;
+	protected Text hourlyPlaceholder;
 	protected StaticEntity hourlyScoreHeadBackground;
+	protected CompletableFuture<List<HighscoreEntry>> hourlyBestRequest;
+	protected CompletableFuture<Integer> hourlyRankRequest;
 
 	/* all-time highscore */
 	protected Node allTimeHighscore;
@@ -140,7 +146,10 @@ public class IdleState extends FadableState {
 	protected Text allTimeHighscoreHeadText;
 	protected StaticEntity allTimeScoreBackground;
 	protected Text allTimeSeparator;
+	protected Text allTimePlaceholder;
 	protected StaticEntity allTimeScoreHeadBackground;
+	protected CompletableFuture<List<HighscoreEntry>> allTimeBestRequest;
+	protected CompletableFuture<Integer> allTimeRankRequest;
 
 	/* credits */
 	protected Node credits;
@@ -198,7 +207,7 @@ public class IdleState extends FadableState {
 		super(app, name, debugging);
 
 		/* database */
-		scoreOperations = new ScoreOperations();
+		dataService = new DataService();
 
 		/* dayly score */
 		this.hourlyHighscore = new Node("DaylyHighscoreRoot");
@@ -218,6 +227,11 @@ public class IdleState extends FadableState {
 		this.hourlySeparator = new Text(this.app.getSecondaryGuiFont(), schaugenau.font.Text.Alignment.CENTER,
 				separatorContent);
 
+		this.hourlyPlaceholder = new Text(this.app.getSecondaryGuiFont(), schaugenau.font.Text.Alignment.CENTER,
+				separatorContent);
+		this.hourlyPlaceholder.scale(highscoreListTextScale);
+		this.hourlyPlaceholder.setLocalTranslation(0, highscoreListUpperStartPosition, 0);
+
 		this.hourlyScoreHeadBackground = new StaticEntity(this.app, "HourlyScoreHeadBackground", "ScoreHeadBackground",
 				"Unshaded", "LaGa", false, "png", true, true, false, false);
 		this.hourlyScoreHeadBackground.setLocalTranslation(this.highscoreHeadPosition.x,
@@ -243,6 +257,11 @@ public class IdleState extends FadableState {
 		this.allTimeSeparator = new Text(this.app.getSecondaryGuiFont(), schaugenau.font.Text.Alignment.CENTER,
 				separatorContent);
 
+		this.allTimePlaceholder = new Text(this.app.getSecondaryGuiFont(), schaugenau.font.Text.Alignment.CENTER,
+				separatorContent);
+		this.allTimePlaceholder.scale(highscoreListTextScale);
+		this.allTimePlaceholder.setLocalTranslation(0, highscoreListUpperStartPosition, 0);
+
 		this.allTimeScoreHeadBackground = new StaticEntity(this.app, "AllTimeScoreHeadBackground",
 				"ScoreHeadBackground", "Unshaded", "LaGa", false, "png", true, true, false, false);
 		this.allTimeScoreHeadBackground.setLocalTranslation(this.highscoreHeadPosition.x,
@@ -384,6 +403,10 @@ public class IdleState extends FadableState {
 		this.hourlyScoreBackground.setColorParameter(animatedScoreBackgroundColor);
 		this.allTimeScoreBackground.setColorParameter(animatedScoreBackgroundColor);
 
+		/* show highscore lists as soon as they arrive */
+		updateHighscoreList(false);
+		updateHighscoreList(true);
+
 		/* go out of idle */
 		if (buzzerPressed && this.state != InnerIdleState.INSTRUCTIONS) {
 
@@ -695,47 +718,63 @@ public class IdleState extends FadableState {
 		super.stop();
 	}
 
+	/* request highscore list, placeholder is shown until it arrives */
 	protected void prepareHighscoreList(Node root, boolean allTime) {
 
 		/* clean it before everything else */
 		root.detachAllChildren();
+		(allTime ? this.allTimePlaceholder : this.hourlyPlaceholder).attachTo(root);
+
+		/* get last player's rank */
+		CompletableFuture<Integer> rankRequest = CompletableFuture.completedFuture(-1);
+		if (app.isLastGameFinished()) {
+			rankRequest = allTime ? dataService.queryHighscoreRank(app.getCurrentScore(), null)
+					: dataService.queryHighscoreRankOfHours(app.getCurrentScore(), null, highscoreHourInterval);
+		}
+
+		/* names and scores of best players come with one request */
+		if (allTime) {
+			this.allTimeBestRequest = dataService.loadBestEntries(highscoreLength);
+			this.allTimeRankRequest = rankRequest;
+		} else {
+			this.hourlyBestRequest = dataService.loadBestEntriesOfHours(highscoreLength, highscoreHourInterval);
+			this.hourlyRankRequest = rankRequest;
+		}
+
+	}
 
-		/* get names and scores of best players */
-		String[] bestPlayers = {};
-		int[] bestScores = {};
-
-		/* get last player's score */
-		boolean highlightLastPlayer = app.isLastGameFinished();
-		int lastPlayerAllTimeRank = -1;
-		int lastPlayerHourlyRank = -1;
-		if (highlightLastPlayer) {
-			lastPlayerAllTimeRank = scoreOperations.queryHighscoreRank(app.getCurrentScore(), null);
-			lastPlayerHourlyRank = scoreOperations.queryHighscoreRankOfHours(app.getCurrentScore(), null,
-					highscoreHourInterval);
+	/* visualize requested highscore list, if everything arrived */
+	protected void updateHighscoreList(boolean allTime) {
+		CompletableFuture<List<HighscoreEntry>> bestRequest = allTime ? this.allTimeBestRequest
+				: this.hourlyBestRequest;
+		CompletableFuture<Integer> rankRequest = allTime ? this.allTimeRankRequest : this.hourlyRankRequest;
+		if (bestRequest == null || !bestRequest.isDone() || !rankRequest.isDone()) {
+			return;
 		}
 
-		/* choose which scores to load */
+		/* requests are completed with fallback on failure */
+		List<HighscoreEntry> best = bestRequest.join();
+		int rank = rankRequest.join();
 		if (allTime) {
-			bestPlayers = scoreOperations.loadBestScorers(highscoreLength);
-			bestScores = scoreOperations.loadBestScores(highscoreLength);
-			visualizeHighscores(root, bestPlayers, bestScores, highlightLastPlayer, lastPlayerAllTimeRank,
+			this.allTimeBestRequest = null;
+			this.allTimeHighscoreList.detachAllChildren();
+			visualizeHighscores(this.allTimeHighscoreList, best, app.isLastGameFinished(), rank,
 					this.app.getCurrentPlayersName(), this.app.getCurrentScore(), this.allTimeScoreBackground,
 					this.allTimeSeparator);
 		} else {
-			bestPlayers = scoreOperations.loadBestScorersOfHours(highscoreLength, highscoreHourInterval);
-			bestScores = scoreOperations.loadBestScoresOfHours(highscoreLength, highscoreHourInterval);
-			visualizeHighscores(root, bestPlayers, bestScores, highlightLastPlayer, lastPlayerHourlyRank,
+			this.hourlyBestRequest = null;
+			this.hourlyHighscoreList.detachAllChildren();
+			visualizeHighscores(this.hourlyHighscoreList, best, app.isLastGameFinished(), rank,
 					this.app.getCurrentPlayersName(), this.app.getCurrentScore(), this.hourlyScoreBackground,
 					this.hourlySeparator);
 		}
-
 	}
 
-	protected void visualizeHighscores(Node root, String[] bestPlayers, int[] bestScores, boolean highlightLastPlayer,
+	protected void visualizeHighscores(Node root, List<HighscoreEntry> best, boolean highlightLastPlayer,
 			int lastPlayersRank, String lastPlayersName, int lastPlayersScore, StaticEntity highlightingBackground,
 			Text separator) {
 
-		/* get best and create visual texts from strings and integers */
+		/* get best and create visual texts from entries */
 		for (int i = 0; i <= highscoreLength; i++) {
 
 			/* get font */
@@ -754,9 +793,12 @@ public class IdleState extends FadableState {
 
 			if (i < highscoreLength) {
 
-				/* just use the the given arrays */
-				player = bestPlayers[i];
-				score = bestScores[i];
+				/* just use the the given entries, list may be shorter */
+				if (i >= best.size()) {
+					break;
+				}
+				player = best.get(i).getName();
+				score = best.get(i).getScore();
 				rank = i + 1;
 				yPosition = highscoreListUpperStartPosition - i * highscoreListRowHeight;
 
@@ -1,9 +1,9 @@
 package schaugenau.state.survey;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
@@ -12,7 +12,9 @@ import schaugenau.app.App;
 import schaugenau.app.App.Language;
 import schaugenau.core.FadableState;
 import schaugenau.core.SimpleWorldBackground;
-import schaugenau.database.ScoreOperations;
+import schaugenau.database.DataService;
+import schaugenau.database.SurveyCatalogue;
+import schaugenau.database.SurveyItemDefinition;
 import schaugenau.database.SurveyOperations;
 import schaugenau.font.TextBox;
 import schaugenau.gui.IconButton;
@@ -54,9 +56,13 @@ public class SurveyState extends FadableState {
 	protected SurveyItem previousItem;
 	protected float itemAnimationTime;
 
+	/* survey data, items are created when it arrived */
+	protected CompletableFuture<SurveyCatalogue> catalogueRequest;
+	protected boolean english;
+
 	/* other */
 	protected SurveyOperations surveyOperations;
-	protected ScoreOperations scoreOperations;
+	protected DataService dataService;
 	protected Random rand;
 	protected SimpleWorldBackground background;
 
@@ -80,7 +86,7 @@ public class SurveyState extends FadableState {
 
 		/* database stuff */
 		surveyOperations = new SurveyOperations();
-		scoreOperations = new ScoreOperations();
+		dataService = new DataService();
 		/* other */
 		background = new SimpleWorldBackground(this.app, false);
 		background.attachTo(rootNode);
@@ -93,6 +99,17 @@ public class SurveyState extends FadableState {
 	public boolean update(float tpf, boolean buzzerPressed) {
 		boolean hasDetachedItself = super.update(tpf, buzzerPressed);
 
+		/* wait for survey data, welcome screen is shown meanwhile */
+		if (items == null) {
+			if (!catalogueRequest.isDone()) {
+				if (!paused) {
+					this.background.update(tpf);
+				}
+				return hasDetachedItself;
+			}
+			items = this.fetchSurveyItems(catalogueRequest.join(), english);
+		}
+
 		/* no items ? */
 		if (items.isEmpty()) {
 			this.app.loadIdleState();
@@ -134,11 +151,9 @@ public class SurveyState extends FadableState {
 				int result = currentItem.update(tpf);
 				if (result != -1) {
 
-					/* save results */
-					/* save results */
-					int newestScore = scoreOperations.getMaxPkey();
-					surveyOperations.saveResult(app.getCurrentGameStyleString(), app.getCurrentScore(),
-							currentItem.getId(), result, newestScore);
+					/* save results in background */
+					dataService.saveSurveyResult(app.getCurrentGameStyleString(), app.getCurrentScore(),
+							currentItem.getId(), result);
 
 					/* next items, if possible */
 					if (!nextItem()) {
@@ -190,8 +205,12 @@ public class SurveyState extends FadableState {
 	protected void attach() {
 		super.attach();
 
-		/* fetch items from database */
-		items = this.fetchSurveyItems(this.app.getLanguage() == Language.ENGLISH);
+		/* request items, cached sessions are there at once */
+		english = this.app.getLanguage() == Language.ENGLISH;
+		SurveyCatalogue catalogue = surveyOperations.getCatalogue();
+		catalogueRequest = catalogue != null ? CompletableFuture.completedFuture(catalogue)
+				: dataService.loadSurveyCatalogue();
+		items = null;
 
 		/* say hello */
 		guiAdapter.attachChild(welcomeNode);
@@ -209,8 +228,10 @@ public class SurveyState extends FadableState {
 		super.detach();
 
 		/* detach survey items */
-		for (SurveyItem item : items) {
-			item.detach();
+		if (items != null) {
+			for (SurveyItem item : items) {
+				item.detach();
+			}
 		}
 
 	}
@@ -223,8 +244,8 @@ public class SurveyState extends FadableState {
 		/* nothing to do */
 	}
 
-	/* fetch items from database */
-	protected List<SurveyItem> fetchSurveyItems(boolean english) {
+	/* create items of random session, never waits for database */
+	protected List<SurveyItem> fetchSurveyItems(SurveyCatalogue catalogue, boolean english) {
 
 		/* create empty list */
 		List<SurveyItem> items = new LinkedList<>();
@@ -236,13 +257,11 @@ public class SurveyState extends FadableState {
 			SurveyOperations.setLanguage("german");
 		}
 
-		/* try to get items */
-		try {
-			int count = surveyOperations.getSessionCount();
-			int session = this.rand.nextInt(count) + 1;
-			items = surveyOperations.getSession(session, this.app, this.guiAdapter);
-		} catch (ClassNotFoundException | SQLException e) {
-			e.printStackTrace();
+		/* no survey if sessions could not be loaded */
+		if (catalogue != null && !catalogue.getSessionIDs().isEmpty()) {
+			List<Integer> sessionIDs = catalogue.getSessionIDs();
+			int session = sessionIDs.get(this.rand.nextInt(sessionIDs.size()));
+			items = this.createItems(catalogue.getSession(session), english);
 		}
 
 		/* attach all items an place them on the right side */
@@ -255,6 +274,24 @@ public class SurveyState extends FadableState {
 		return items;
 	}
 
+	/* create gui of items, unknown types are left out */
+	protected List<SurveyItem> createItems(List<SurveyItemDefinition> definitions, boolean english) {
+		List<SurveyItem> items = new LinkedList<>();
+		for (SurveyItemDefinition definition : definitions) {
+			String question = definition.getQuestion(english);
+			if (definition.getType().equals("likert")) {
+				items.add(new LikertScalaItem(this.app, this.guiAdapter, "Likert", question,
+						definition.getLikertLeft(english), definition.getLikertRight(english), definition.getId()));
+			} else if (definition.getType().equals("choice")) {
+				items.add(new ChoiceItem(this.app, this.guiAdapter, "Choice", question,
+						new LinkedList<String>(definition.getAnswers(english)), definition.getId()));
+			} else if (definition.getType().equals("decision")) {
+				items.add(new DecisionItem(this.app, this.guiAdapter, "Decision", question, definition.getId()));
+			}
+		}
+		return items;
+	}
+
 	/* attach next items if possible */
 	protected boolean nextItem() {
 